@@ -0,0 +1,247 @@
+package io.github.kayr.ezyquery.arrow;
+
+import io.github.kayr.ezyquery.sql.ColumnReader;
+import io.github.kayr.ezyquery.sql.JdbcUtils;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+
+/**
+ * One column of the result set, its arrow type and how a value is copied from the result set into
+ * its vector. Values are read with the typed JDBC getters so primitives are not boxed.
+ */
+abstract class ArrowColumn {
+
+  private static final int MAX_DECIMAL_PRECISION = 38;
+
+  final Field field;
+
+  private ArrowColumn(String name, ArrowType type) {
+    this.field = new Field(name, FieldType.nullable(type), null);
+  }
+
+  /** Copies the value of the current row, the vector is the one created for {@link #field}. */
+  abstract void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException;
+
+  /**
+   * @param type the type of the ezy-query field, Object when the sql type should decide
+   */
+  static ArrowColumn of(ResultSetMetaData metaData, int column, Class<?> type) {
+    String name = JdbcUtils.getColumnLabel(metaData, column);
+    if (type == Object.class) type = JdbcUtils.javaType(JdbcUtils.getColumnType(metaData, column));
+
+    if (type == Long.class || type == long.class) return bigInt(name);
+    if (type == Integer.class || type == int.class) return integer(name);
+    if (type == Short.class || type == short.class) return smallInt(name);
+    if (type == Byte.class || type == byte.class) return tinyInt(name);
+    if (type == Double.class || type == double.class) return float8(name);
+    if (type == Float.class || type == float.class) return float4(name);
+    if (type == Boolean.class || type == boolean.class) return bool(name);
+    if (type == BigDecimal.class) {
+      int precision = JdbcUtils.getPrecision(metaData, column);
+      int scale = JdbcUtils.getScale(metaData, column);
+      // drivers report 0 or huge precisions for unconstrained numerics
+      if (precision > 0 && precision <= MAX_DECIMAL_PRECISION && scale >= 0 && scale <= precision) {
+        return decimal(name, precision, scale);
+      }
+    }
+    if (type == LocalDate.class || type == java.sql.Date.class) return date(name);
+    if (type == LocalDateTime.class
+        || type == java.sql.Timestamp.class
+        || type == java.util.Date.class) {
+      return timestamp(name);
+    }
+    if (type == OffsetDateTime.class) return timestampUtc(name);
+    if (type == LocalTime.class || type == java.sql.Time.class) return time(name);
+    if (type == byte[].class) return binary(name);
+    return text(name, type);
+  }
+
+  private static ArrowColumn bigInt(String name) {
+    return new ArrowColumn(name, new ArrowType.Int(64, true)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        long value = rs.getLong(column);
+        if (rs.wasNull()) ((BigIntVector) vector).setNull(row);
+        else ((BigIntVector) vector).setSafe(row, value);
+      }
+    };
+  }
+
+  private static ArrowColumn integer(String name) {
+    return new ArrowColumn(name, new ArrowType.Int(32, true)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        int value = rs.getInt(column);
+        if (rs.wasNull()) ((IntVector) vector).setNull(row);
+        else ((IntVector) vector).setSafe(row, value);
+      }
+    };
+  }
+
+  private static ArrowColumn smallInt(String name) {
+    return new ArrowColumn(name, new ArrowType.Int(16, true)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        short value = rs.getShort(column);
+        if (rs.wasNull()) ((SmallIntVector) vector).setNull(row);
+        else ((SmallIntVector) vector).setSafe(row, value);
+      }
+    };
+  }
+
+  private static ArrowColumn tinyInt(String name) {
+    return new ArrowColumn(name, new ArrowType.Int(8, true)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        byte value = rs.getByte(column);
+        if (rs.wasNull()) ((TinyIntVector) vector).setNull(row);
+        else ((TinyIntVector) vector).setSafe(row, value);
+      }
+    };
+  }
+
+  private static ArrowColumn float8(String name) {
+    return new ArrowColumn(name, new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        double value = rs.getDouble(column);
+        if (rs.wasNull()) ((Float8Vector) vector).setNull(row);
+        else ((Float8Vector) vector).setSafe(row, value);
+      }
+    };
+  }
+
+  private static ArrowColumn float4(String name) {
+    return new ArrowColumn(name, new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        float value = rs.getFloat(column);
+        if (rs.wasNull()) ((Float4Vector) vector).setNull(row);
+        else ((Float4Vector) vector).setSafe(row, value);
+      }
+    };
+  }
+
+  private static ArrowColumn bool(String name) {
+    return new ArrowColumn(name, ArrowType.Bool.INSTANCE) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        boolean value = rs.getBoolean(column);
+        if (rs.wasNull()) ((BitVector) vector).setNull(row);
+        else ((BitVector) vector).setSafe(row, value ? 1 : 0);
+      }
+    };
+  }
+
+  private static ArrowColumn decimal(String name, int precision, int scale) {
+    return new ArrowColumn(name, new ArrowType.Decimal(precision, scale, 128)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        BigDecimal value = rs.getBigDecimal(column);
+        if (value == null) ((DecimalVector) vector).setNull(row);
+        else ((DecimalVector) vector).setSafe(row, value.setScale(scale, RoundingMode.HALF_UP));
+      }
+    };
+  }
+
+  private static ArrowColumn date(String name) {
+    ColumnReader<?> reader = ColumnReader.forType(LocalDate.class);
+    return new ArrowColumn(name, new ArrowType.Date(DateUnit.DAY)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        LocalDate value = (LocalDate) reader.read(rs, column);
+        if (value == null) ((DateDayVector) vector).setNull(row);
+        else ((DateDayVector) vector).setSafe(row, (int) value.toEpochDay());
+      }
+    };
+  }
+
+  private static ArrowColumn timestamp(String name) {
+    ColumnReader<?> reader = ColumnReader.forType(LocalDateTime.class);
+    return new ArrowColumn(
+        name, new ArrowType.Timestamp(org.apache.arrow.vector.types.TimeUnit.MICROSECOND, null)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        LocalDateTime value = (LocalDateTime) reader.read(rs, column);
+        if (value == null) ((TimeStampMicroVector) vector).setNull(row);
+        else ((TimeStampMicroVector) vector).setSafe(row, micros(value.toInstant(ZoneOffset.UTC)));
+      }
+    };
+  }
+
+  private static ArrowColumn timestampUtc(String name) {
+    ColumnReader<?> reader = ColumnReader.forType(OffsetDateTime.class);
+    return new ArrowColumn(
+        name, new ArrowType.Timestamp(org.apache.arrow.vector.types.TimeUnit.MICROSECOND, "UTC")) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        OffsetDateTime value = (OffsetDateTime) reader.read(rs, column);
+        if (value == null) ((TimeStampMicroTZVector) vector).setNull(row);
+        else ((TimeStampMicroTZVector) vector).setSafe(row, micros(value.toInstant()));
+      }
+    };
+  }
+
+  private static ArrowColumn time(String name) {
+    ColumnReader<?> reader = ColumnReader.forType(LocalTime.class);
+    return new ArrowColumn(
+        name, new ArrowType.Time(org.apache.arrow.vector.types.TimeUnit.MICROSECOND, 64)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        LocalTime value = (LocalTime) reader.read(rs, column);
+        if (value == null) ((TimeMicroVector) vector).setNull(row);
+        else ((TimeMicroVector) vector).setSafe(row, value.toNanoOfDay() / 1_000);
+      }
+    };
+  }
+
+  private static ArrowColumn binary(String name) {
+    return new ArrowColumn(name, ArrowType.Binary.INSTANCE) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        byte[] value = rs.getBytes(column);
+        if (value == null) ((VarBinaryVector) vector).setNull(row);
+        else ((VarBinaryVector) vector).setSafe(row, value);
+      }
+    };
+  }
+
+  /** Strings and anything without a better arrow type, written as its text. */
+  private static ArrowColumn text(String name, Class<?> type) {
+    ColumnReader<?> reader = ColumnReader.forType(type);
+    return new ArrowColumn(name, ArrowType.Utf8.INSTANCE) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        Object value = reader.read(rs, column);
+        if (value == null) {
+          ((VarCharVector) vector).setNull(row);
+          return;
+        }
+        String text =
+            value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+        ((VarCharVector) vector).setSafe(row, text.getBytes(StandardCharsets.UTF_8));
+      }
+    };
+  }
+
+  private static long micros(java.time.Instant instant) {
+    return TimeUnit.SECONDS.toMicros(instant.getEpochSecond())
+        + TimeUnit.NANOSECONDS.toMicros(instant.getNano());
+  }
+}
@@ -0,0 +1,162 @@
+package io.github.kayr.ezyquery.arrow;
+
+import io.github.kayr.ezyquery.EzySql;
+import io.github.kayr.ezyquery.api.UnCaughtException;
+import io.github.kayr.ezyquery.sql.JdbcUtils;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.NonNull;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider.MapDictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.ArrowWriter;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Writes the rows of a query to Apache Arrow IPC in record batches. The schema comes from the
+ * ezy-query field types, or the sql types for untyped fields. The vectors are allocated off heap
+ * once and reused for every batch so memory stays at one batch whatever the number of rows.
+ *
+ * <pre>{@code
+ * try (OutputStream out = Files.newOutputStream(Paths.get("orders.arrow"))) {
+ *   ArrowExport.of(ezySql.from(Orders.QUERY).noLimit()).batchSize(10_000).writeFile(out);
+ * }
+ * }</pre>
+ */
+public class ArrowExport {
+
+  private final EzySql.CriteriaBuilder<?> rows;
+  private int batchSize = 4096;
+  private BufferAllocator allocator = null;
+
+  private ArrowExport(EzySql.CriteriaBuilder<?> rows) {
+    this.rows = rows;
+  }
+
+  public static ArrowExport of(@NonNull EzySql.CriteriaBuilder<?> rows) {
+    return new ArrowExport(rows);
+  }
+
+  /** The number of rows in each record batch. */
+  public ArrowExport batchSize(int batchSize) {
+    if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be greater than 0");
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  /** By default a new allocator is created and closed for every export. */
+  public ArrowExport allocator(@NonNull BufferAllocator allocator) {
+    this.allocator = allocator;
+    return this;
+  }
+
+  /**
+   * The random access file format e.g for {@code .arrow} files read by DuckDB or pyarrow. The
+   * stream is not closed.
+   *
+   * @return the number of rows written
+   */
+  public long writeFile(@NonNull OutputStream out) {
+    return write(Channels.newChannel(out), true);
+  }
+
+  /**
+   * The streaming format, for sending over the network or piping to another process. The stream is
+   * not closed.
+   *
+   * @return the number of rows written
+   */
+  public long writeStream(@NonNull OutputStream out) {
+    return write(Channels.newChannel(out), false);
+  }
+
+  private long write(WritableByteChannel channel, boolean fileFormat) {
+    return rows.query(
+        batchSize,
+        rs -> {
+          if (allocator != null) return write(rs, channel, fileFormat, allocator);
+          try (BufferAllocator ownAllocator = new RootAllocator()) {
+            return write(rs, channel, fileFormat, ownAllocator);
+          }
+        });
+  }
+
+  private long write(
+      ResultSet rs, WritableByteChannel channel, boolean fileFormat, BufferAllocator allocator) {
+    List<ArrowColumn> columns = columns(rs);
+    List<Field> fields = new ArrayList<>(columns.size());
+    for (ArrowColumn column : columns) {
+      fields.add(column.field);
+    }
+
+    try (VectorSchemaRoot root = VectorSchemaRoot.create(new Schema(fields), allocator);
+        ArrowWriter writer =
+            fileFormat
+                ? new ArrowFileWriter(root, new MapDictionaryProvider(), channel)
+                : new ArrowStreamWriter(root, new MapDictionaryProvider(), channel)) {
+      List<FieldVector> vectors = root.getFieldVectors();
+      root.allocateNew();
+      writer.start();
+
+      long total = 0;
+      int row = 0;
+      while (rs.next()) {
+        for (int i = 0; i < columns.size(); i++) {
+          columns.get(i).copy(rs, i + 1, vectors.get(i), row);
+        }
+        total++;
+        if (++row == batchSize) {
+          writeBatch(root, writer, row);
+          row = 0;
+        }
+      }
+      // a final batch even when empty so that readers get the schema and an empty result
+      if (row > 0 || total == 0) writeBatch(root, writer, row);
+
+      writer.end();
+      return total;
+    } catch (IOException | SQLException e) {
+      throw new UnCaughtException("Error writing arrow batches", e);
+    }
+  }
+
+  /** Writes the rows and clears the vectors for the next batch, keeping their buffers. */
+  private static void writeBatch(VectorSchemaRoot root, ArrowWriter writer, int rowCount)
+      throws IOException {
+    root.setRowCount(rowCount);
+    writer.writeBatch();
+    for (FieldVector vector : root.getFieldVectors()) {
+      vector.reset();
+    }
+  }
+
+  private List<ArrowColumn> columns(ResultSet rs) {
+    Map<String, Class<?>> typesByAlias = new HashMap<>();
+    for (io.github.kayr.ezyquery.api.Field<?> field : rows.getFields()) {
+      typesByAlias.put(field.getAlias(), field.getDataType());
+    }
+
+    ResultSetMetaData metaData = JdbcUtils.getMetaData(rs);
+    int count = JdbcUtils.getColumnCount(metaData);
+    List<ArrowColumn> columns = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      Class<?> type = typesByAlias.get(JdbcUtils.getColumnLabel(metaData, i));
+      columns.add(ArrowColumn.of(metaData, i, type == null ? Object.class : type));
+    }
+    return columns;
+  }
+}
@@ -0,0 +1,146 @@
+package io.github.kayr.ezyquery.arrow
+
+import io.github.kayr.ezyquery.EzyQueryWithResult
+import io.github.kayr.ezyquery.EzySql
+import io.github.kayr.ezyquery.api.EzyCriteria
+import io.github.kayr.ezyquery.api.Field
+import io.github.kayr.ezyquery.api.SqlBuilder
+import io.github.kayr.ezyquery.parser.QueryAndParams
+import io.github.kayr.ezyquery.parser.SqlParts
+import org.apache.arrow.memory.RootAllocator
+import org.apache.arrow.vector.ipc.ArrowFileReader
+import org.apache.arrow.vector.ipc.ArrowStreamReader
+import org.apache.arrow.vector.types.pojo.ArrowType
+import org.apache.arrow.vector.util.ByteArrayReadableSeekableByteChannel
+import org.h2.jdbcx.JdbcDataSource
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.time.LocalDate
+import java.time.LocalDateTime
+
+class ArrowExportTest extends Specification {
+
+    static Field<Long> ID = Field.of('id', 'id', Long)
+    static Field<Object> NAME = Field.of('name', 'name', Object)
+    static Field<Object> AMOUNT = Field.of('amount', 'amount', Object)
+    static Field<Object> PAID = Field.of('paid', 'paid', Object)
+    static Field<Object> DAY = Field.of('day', 'day', Object)
+    static Field<Object> CREATED = Field.of('created', 'created', Object)
+
+    static EzyQueryWithResult<Map> PAYMENTS = new EzyQueryWithResult<Map>() {
+        QueryAndParams query(EzyCriteria criteria) { SqlBuilder.buildSql(this, criteria) }
+
+        List<Field<?>> fields() { [ID, NAME, AMOUNT, PAID, DAY, CREATED] }
+
+        SqlParts schema() { SqlParts.of('payments') }
+
+        Class<Map> resultClass() { Map }
+    }
+
+    @Shared
+    EzySql ezySql
+
+    void setupSpec() {
+        def ds = new JdbcDataSource()
+        ds.setURL('jdbc:h2:mem:arrow;DB_CLOSE_DELAY=-1')
+        ezySql = EzySql.withDataSource(ds)
+        ezySql.zql.executeUpdate('CREATE TABLE payments (id INT, name VARCHAR(20), amount DECIMAL(10, 2), ' +
+                'paid BOOLEAN, day DATE, created TIMESTAMP)')
+        (1..10).each {
+            ezySql.zql.executeUpdate('INSERT INTO payments VALUES (?, ?, ?, ?, ?, ?)',
+                    it, "p$it".toString(), new BigDecimal("$it.25"), it % 2 == 0,
+                    LocalDate.of(2024, 1, it), LocalDateTime.of(2024, 1, it, 10, 30))
+        }
+        ezySql.zql.executeUpdate('INSERT INTO payments VALUES (11, NULL, NULL, NULL, NULL, NULL)')
+    }
+
+    void cleanupSpec() {
+        ezySql.zql.executeUpdate('DROP TABLE payments')
+    }
+
+    def 'test write the stream format in batches'() {
+        given:
+        def out = new ByteArrayOutputStream()
+
+        when:
+        def written = ArrowExport.of(ezySql.from(PAYMENTS).noLimit().orderBy(ID.asc())).batchSize(4).writeStream(out)
+        def batches = read(new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), allocator))
+
+        then:
+        written == 11
+        batches*.size() == [4, 4, 3]
+
+        def rows = batches.flatten()
+        rows[0] == [id: 1L, name: 'p1', amount: new BigDecimal('1.25'), paid: false,
+                    day: 19723, created: LocalDateTime.of(2024, 1, 1, 10, 30)]
+        rows[10] == [id: 11L, name: null, amount: null, paid: null, day: null, created: null]
+    }
+
+    def 'test the schema comes from the field and sql types'() {
+        given:
+        def out = new ByteArrayOutputStream()
+
+        when:
+        ArrowExport.of(ezySql.from(PAYMENTS).noLimit()).writeFile(out)
+        def reader = new ArrowFileReader(new ByteArrayReadableSeekableByteChannel(out.toByteArray()), allocator)
+        def fields = reader.vectorSchemaRoot.schema.fields
+
+        then:
+        fields*.name == ['id', 'name', 'amount', 'paid', 'day', 'created']
+        fields[0].type == new ArrowType.Int(64, true) // the field type wins over the INT column
+        fields[1].type == ArrowType.Utf8.INSTANCE
+        fields[2].type == new ArrowType.Decimal(10, 2, 128)
+        fields[3].type == ArrowType.Bool.INSTANCE
+        fields[4].type instanceof ArrowType.Date
+        fields[5].type instanceof ArrowType.Timestamp
+        read(reader).flatten().size() == 11
+    }
+
+    def 'test an empty result still has the schema'() {
+        given:
+        def out = new ByteArrayOutputStream()
+
+        when:
+        def written = ArrowExport.of(ezySql.from(PAYMENTS).where(ID.gt(100))).writeStream(out)
+        def reader = new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), allocator)
+
+        then:
+        written == 0
+        reader.vectorSchemaRoot.schema.fields.size() == 6
+        read(reader).flatten() == []
+    }
+
+    def 'test batch size must be positive'() {
+        when:
+        ArrowExport.of(ezySql.from(PAYMENTS)).batchSize(0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    RootAllocator allocator = new RootAllocator()
+
+    void cleanup() {
+        allocator.close()
+    }
+
+    static List<List<Map>> read(reader) {
+        def batches = []
+        try {
+            while (reader.loadNextBatch()) {
+                def root = reader.vectorSchemaRoot
+                batches << (0..<root.rowCount).collect { i ->
+                    root.fieldVectors.collectEntries { [it.name, convert(it.getObject(i))] }
+                }
+            }
+        } finally {
+            reader.close()
+        }
+        batches.findAll { !it.isEmpty() }
+    }
+
+    static Object convert(value) {
+        value instanceof org.apache.arrow.vector.util.Text ? value.toString() : value
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.kayr.ezyquery.gen;
+
+import static io.github.kayr.ezyquery.gen.walkers.TableRefFinder.normalize;
+
+import io.github.kayr.ezyquery.util.Elf;
+import java.util.*;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.*;
+
+/**
+ * Finds the fields that are plain columns of a table with an index on that column. Indexes are
+ * configured as {@code index.<table>=col1,col2} where each column leads an index.
+ */
+class IndexedFieldsGen {
+
+  private static final String PREFIX = "index.";
+
+  private final PlainSelect plainSelect;
+  private final List<EzyQueryFieldSpec> fieldList;
+  private final Properties config;
+
+  IndexedFieldsGen(PlainSelect plainSelect, List<EzyQueryFieldSpec> fieldList, Properties config) {
+    this.plainSelect = plainSelect;
+    this.fieldList = fieldList;
+    this.config = config;
+  }
+
+  /** Returns empty when none of the tables of the query has index metadata. */
+  Optional<Set<String>> build() {
+    Map<String, String> tablesByName = tablesByName();
+
+    boolean hasMetadata = false;
+    for (String table : tablesByName.values()) {
+      hasMetadata |= config.getProperty(PREFIX + table) != null;
+    }
+    if (!hasMetadata) return Optional.empty();
+
+    Set<String> indexed = new TreeSet<>();
+    List<SelectItem<?>> selectItems = plainSelect.getSelectItems();
+    for (int i = 0; i < fieldList.size(); i++) {
+      Expression expression = selectItems.get(i).getExpression();
+      if (expression instanceof Column && isIndexed((Column) expression, tablesByName)) {
+        indexed.add(fieldList.get(i).getAlias());
+      }
+    }
+    return Optional.of(indexed);
+  }
+
+  private boolean isIndexed(Column column, Map<String, String> tablesByName) {
+    String table;
+    Table qualifier = column.getTable();
+    if (qualifier == null || qualifier.getName() == null) {
+      // an unqualified column can only be resolved when there is one table
+      if (tablesByName.size() != 1 || !Elf.isEmpty(plainSelect.getJoins())) return false;
+      table = tablesByName.values().iterator().next();
+    } else {
+      table = tablesByName.get(normalize(qualifier.getName()));
+    }
+    if (table == null) return false;
+
+    return indexedColumns(table).contains(normalize(column.getColumnName()));
+  }
+
+  private Set<String> indexedColumns(String table) {
+    String columns = config.getProperty(PREFIX + table);
+    if (columns == null) return Collections.emptySet();
+
+    Set<String> result = new HashSet<>();
+    for (String column : columns.split(",")) {
+      if (!column.trim().isEmpty()) result.add(normalize(column.trim()));
+    }
+    return result;
+  }
+
+  /** The tables in the FROM and JOINs by the name they are referenced with. */
+  private Map<String, String> tablesByName() {
+    Set<String> cteNames = new HashSet<>();
+    for (WithItem withItem :
+        Optional.ofNullable(plainSelect.getWithItemsList()).orElse(Collections.emptyList())) {
+      cteNames.add(normalize(withItem.getAlias().getName()));
+    }
+
+    List<FromItem> items = new ArrayList<>();
+    items.add(plainSelect.getFromItem());
+    for (Join join : Optional.ofNullable(plainSelect.getJoins()).orElse(Collections.emptyList())) {
+      items.add(join.getRightItem());
+    }
+
+    Map<String, String> tables = new HashMap<>();
+    for (FromItem item : items) {
+      if (!(item instanceof Table)) continue;
+
+      String table = normalize(((Table) item).getName());
+      if (cteNames.contains(table)) continue;
+
+      String name = item.getAlias() == null ? table : normalize(item.getAlias().getName());
+      tables.put(name, table);
+    }
+    return tables;
+  }
+}
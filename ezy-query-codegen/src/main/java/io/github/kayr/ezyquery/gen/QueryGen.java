@@ -10,6 +10,7 @@ import com.squareup.javapoet.*;
 import io.github.kayr.ezyquery.EzyQueryWithResult;
 import io.github.kayr.ezyquery.api.*;
 import io.github.kayr.ezyquery.gen.walkers.DynamicQueriesFinder;
+import io.github.kayr.ezyquery.gen.walkers.TableRefFinder;
 import io.github.kayr.ezyquery.gen.walkers.WalkContext;
 import io.github.kayr.ezyquery.parser.QueryAndParams;
 import io.github.kayr.ezyquery.parser.SqlParts;
@@ -130,6 +131,7 @@ public class QueryGen {
                     .build())
             .addMethod(methodFields())
             .addMethod(methodResultClass(resultClassName))
+            .addMethod(methodTables(plainSelect))
             .addType(resultClass);
 
     if (!params.isEmpty()) {
@@ -146,6 +148,18 @@ public class QueryGen {
       finalClassBuilder.addMethod(withMethodAndParts.getOne());
     }
 
+    Optional<Set<String>> indexedFields =
+        new IndexedFieldsGen(plainSelect, fieldList, config).build();
+    if (indexedFields.isPresent()) {
+      finalClassBuilder.addMethod(methodIndexedFields(indexedFields.get()));
+    }
+
+    Optional<CodeBlock> schemaGraph = new SchemaGraphGen(plainSelect, fieldList, config).build();
+    if (schemaGraph.isPresent()) {
+      finalClassBuilder.addField(fieldSchemaGraph(schemaGraph.get()));
+      finalClassBuilder.addMethod(methodSchemaGraph());
+    }
+
     for (TypeSpec nestedQueryClass : nestedQueryClasses) {
       finalClassBuilder.addType(nestedQueryClass);
     }
@@ -285,6 +299,19 @@ public class QueryGen {
         .build();
   }
 
+  private static MethodSpec methodSchemaGraph() {
+    return publicMethod("schemaGraph", paramType(Optional.class, SchemaGraph.class), Override.class)
+        .addStatement("return Optional.of(this.schemaGraph)")
+        .build();
+  }
+
+  /** schemaGraph field */
+  private static FieldSpec fieldSchemaGraph(CodeBlock initializer) {
+    return FieldSpec.builder(SchemaGraph.class, "schemaGraph", Modifier.PRIVATE, Modifier.FINAL)
+        .initializer(initializer)
+        .build();
+  }
+
   private static MethodSpec methodFields() {
     return publicMethod("fields", typeListOfFields(), Override.class)
         .addStatement("return this.fields")
@@ -298,6 +325,52 @@ public class QueryGen {
         .build();
   }
 
+  private static MethodSpec methodTables(PlainSelect plainSelect) {
+    /*
+    @Override
+    public List<String> tables() {
+        return Arrays.asList("customers", "orders");
+    }
+     */
+    Set<String> tables = new TreeSet<>(TableRefFinder.find(plainSelect).getTableNames());
+    List<WithItem> withItems =
+        Optional.ofNullable(plainSelect.getWithItemsList()).orElse(Collections.emptyList());
+    for (WithItem withItem : withItems) {
+      tables.remove(TableRefFinder.normalize(withItem.getAlias().getName()));
+    }
+
+    List<CodeBlock> names = new ArrayList<>();
+    for (String table : tables) {
+      names.add(CodeBlock.of("$S", table));
+    }
+    return publicMethod("tables", paramType(List.class, String.class), Override.class)
+        .addStatement("return $T.asList($L)", Arrays.class, CodeBlock.join(names, ", "))
+        .build();
+  }
+
+  private static MethodSpec methodIndexedFields(Set<String> fields) {
+    /*
+    @Override
+    public Optional<Set<String>> indexedFields() {
+        return Optional.of(new HashSet<>(Arrays.asList("id", "name")));
+    }
+     */
+    List<CodeBlock> names = new ArrayList<>();
+    for (String field : fields) {
+      names.add(CodeBlock.of("$S", field));
+    }
+    return publicMethod(
+            "indexedFields",
+            paramType(Optional.class, paramType(Set.class, String.class)),
+            Override.class)
+        .addStatement(
+            "return Optional.of(new $T<>($T.asList($L)))",
+            HashSet.class,
+            Arrays.class,
+            CodeBlock.join(names, ", "))
+        .build();
+  }
+
   private static MethodSpec methodQueryMethod() {
 
     return publicMethod("query", QueryAndParams.class)
@@ -373,11 +446,18 @@ public class QueryGen {
               .addSuperinterface(CriteriaHolder.class)
               .addFields(allFields)
               .addField(fieldAllFields())
-              .addMethod(methodConstructor())
+              .addField(fieldCriteriaParam())
+              .addMethod(
+                  method(modifiers(Modifier.PRIVATE), "<init>", TypeName.VOID)
+                      .addStatement("init()")
+                      // built once so its field index and fragment cache are reused
+                      .addStatement(
+                          "criteriaParam = $T.of($S, fields)", NamedCriteriaParam.class, paramName)
+                      .build())
               .addMethod(methodInit(allFields, fieldAllFields()))
               .addMethod(
                   publicMethod("getName", NamedCriteriaParam.class, Override.class)
-                      .addStatement("return $T.of($S, fields)", NamedCriteriaParam.class, paramName)
+                      .addStatement("return criteriaParam")
                       .build())
               .build();
 
@@ -502,6 +582,13 @@ public class QueryGen {
         .build();
   }
 
+  /** criteriaParam field of nested criteria classes */
+  private static FieldSpec fieldCriteriaParam() {
+    return FieldSpec.builder(
+            NamedCriteriaParam.class, "criteriaParam", Modifier.PRIVATE, Modifier.FINAL)
+        .build();
+  }
+
   /** List<Field<?>> */
   private static ParameterizedTypeName typeListOfFields() {
     return paramType(List.class, paramType(Field.class, WildcardTypeName.subtypeOf(Object.class)));
@@ -537,7 +624,7 @@ public class QueryGen {
     return Pair.of(schemaField, sqlParts);
   }
 
-  private static CodeBlock.Builder buildSqlParts(SqlParts sqlParts) {
+  static CodeBlock.Builder buildSqlParts(SqlParts sqlParts) {
     CodeBlock.Builder schemaBuilder = CodeBlock.builder();
     schemaBuilder.add("$T.of(", SqlParts.class);
     schemaBuilder.add("\n$>$>");
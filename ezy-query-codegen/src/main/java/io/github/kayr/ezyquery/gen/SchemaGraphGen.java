@@ -0,0 +1,266 @@
+package io.github.kayr.ezyquery.gen;
+
+import static io.github.kayr.ezyquery.gen.walkers.TableRefFinder.normalize;
+
+import com.squareup.javapoet.CodeBlock;
+import io.github.kayr.ezyquery.api.SchemaGraph;
+import io.github.kayr.ezyquery.gen.walkers.TableRefFinder;
+import io.github.kayr.ezyquery.parser.SqlParts;
+import io.github.kayr.ezyquery.util.Elf;
+import java.util.*;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.*;
+
+/**
+ * Generates the {@link SchemaGraph} of a query. A LEFT JOIN is marked optional when it matches at
+ * most one row, which is the case when the ON clause covers
+ *
+ * <ul>
+ *   <li>the unique key of the joined table configured as {@code unique.<table>=col1,col2}
+ *   <li>or the GROUP BY columns of a joined sub-select
+ * </ul>
+ */
+class SchemaGraphGen {
+
+  private final PlainSelect plainSelect;
+  private final List<EzyQueryFieldSpec> fieldList;
+  private final Properties config;
+  private final Set<String> cteNames = new LinkedHashSet<>();
+
+  SchemaGraphGen(PlainSelect plainSelect, List<EzyQueryFieldSpec> fieldList, Properties config) {
+    this.plainSelect = plainSelect;
+    this.fieldList = fieldList;
+    this.config = config;
+    for (WithItem withItem : withItems()) {
+      cteNames.add(normalize(withItem.getAlias().getName()));
+    }
+  }
+
+  /** Returns empty when none of the joins can be left out, the graph would be of no use. */
+  Optional<CodeBlock> build() {
+
+    List<Join> joins = Optional.ofNullable(plainSelect.getJoins()).orElse(Collections.emptyList());
+
+    CodeBlock.Builder joinCode = CodeBlock.builder();
+    boolean hasOptionalJoin = false;
+    for (int i = 0; i < joins.size(); i++) {
+      Join join = joins.get(i);
+      String name = nodeName(join.getRightItem());
+      boolean optional = name != null && isToOneLeftJoin(join, name);
+      hasOptionalJoin |= optional;
+
+      if (name == null) name = "#join" + i;
+
+      Set<String> requires = new TreeSet<>(fromItemRequires(join.getRightItem()));
+      for (Expression on : onExpressions(join)) {
+        requires.addAll(requires(on));
+      }
+      if (!Elf.isEmpty(join.getUsingColumns())) requires.add(SchemaGraph.ALL);
+      requires.remove(name);
+
+      joinCode
+          .add(".join($S, $L, ", name, optional)
+          .add(QueryGen.buildSqlParts(SqlParts.of(join.toString())).build())
+          .add(args(requires))
+          .add(")\n");
+    }
+
+    if (!hasOptionalJoin) {
+      return Optional.empty();
+    }
+
+    FromItem fromItem = plainSelect.getFromItem();
+    String fromName = Optional.ofNullable(nodeName(fromItem)).orElse("#from");
+
+    CodeBlock.Builder code = CodeBlock.builder().add("$T.builder()\n$>$>", SchemaGraph.class);
+    code.add(".from($S, ", fromName)
+        .add(QueryGen.buildSqlParts(SqlParts.of(fromItem.toString())).build())
+        .add(args(new TreeSet<>(fromItemRequires(fromItem))))
+        .add(")\n");
+
+    code.add(joinCode.build());
+
+    for (WithItem withItem : withItems()) {
+      String name = normalize(withItem.getAlias().getName());
+      Set<String> requires = new TreeSet<>(cteRefs(TableRefFinder.find(withItem.getSelect())));
+      requires.remove(name);
+      code.add(".with($S", name).add(args(requires)).add(")\n");
+    }
+
+    List<SelectItem<?>> selectItems = plainSelect.getSelectItems();
+    for (int i = 0; i < fieldList.size(); i++) {
+      Set<String> requires = requires(selectItems.get(i).getExpression());
+      code.add(".field($S", fieldList.get(i).getAlias()).add(args(requires)).add(")\n");
+    }
+
+    Set<String> whereRequires = requires(plainSelect.getWhere());
+    if (!whereRequires.isEmpty()) {
+      code.add(".where($L)\n", names(whereRequires));
+    }
+
+    Set<String> orderByRequires = new TreeSet<>();
+    for (OrderByElement orderBy : orderByElements()) {
+      orderByRequires.addAll(requires(orderBy.getExpression()));
+    }
+    if (!orderByRequires.isEmpty()) {
+      code.add(".orderBy($L)\n", names(orderByRequires));
+    }
+
+    code.add(".build()$<$<");
+    return Optional.of(code.build());
+  }
+
+  private List<WithItem> withItems() {
+    return Optional.ofNullable(plainSelect.getWithItemsList()).orElse(Collections.emptyList());
+  }
+
+  private List<OrderByElement> orderByElements() {
+    return Optional.ofNullable(plainSelect.getOrderByElements()).orElse(Collections.emptyList());
+  }
+
+  private static Collection<Expression> onExpressions(Join join) {
+    return Optional.ofNullable(join.getOnExpressions()).orElse(Collections.emptyList());
+  }
+
+  private static String nodeName(FromItem item) {
+    if (item.getAlias() != null) return normalize(item.getAlias().getName());
+    if (item instanceof Table) return normalize(((Table) item).getName());
+    return null;
+  }
+
+  private boolean isToOneLeftJoin(Join join, String name) {
+    if (!join.isLeft() || join.isNatural()) return false;
+
+    Set<String> keys = new HashSet<>();
+    for (Expression on : onExpressions(join)) {
+      collectEquatedColumns(on, name, keys);
+    }
+    if (keys.isEmpty()) return false;
+
+    Set<String> uniqueKey = uniqueKey(join.getRightItem());
+    return !uniqueKey.isEmpty() && keys.containsAll(uniqueKey);
+  }
+
+  private Set<String> uniqueKey(FromItem item) {
+    if (item instanceof Table) {
+      String columns = config.getProperty("unique." + normalize(((Table) item).getName()));
+      if (columns == null) return Collections.emptySet();
+
+      Set<String> key = new HashSet<>();
+      for (String column : columns.split(",")) {
+        if (!column.trim().isEmpty()) key.add(normalize(column.trim()));
+      }
+      return key;
+    }
+
+    if (item instanceof ParenthesedSelect) {
+      Select select = ((ParenthesedSelect) item).getSelect();
+      if (select instanceof PlainSelect) return groupByKey((PlainSelect) select);
+    }
+
+    return Collections.emptySet();
+  }
+
+  /** The output names of the GROUP BY columns, empty if any of them is not a plain column. */
+  private static Set<String> groupByKey(PlainSelect select) {
+    GroupByElement groupBy = select.getGroupBy();
+    if (groupBy == null || groupBy.getGroupByExpressionList() == null) {
+      return Collections.emptySet();
+    }
+
+    Set<String> key = new HashSet<>();
+    for (Object expression : groupBy.getGroupByExpressionList()) {
+      if (!(expression instanceof Column)) return Collections.emptySet();
+      key.add(outputName(select, (Column) expression));
+    }
+    return key;
+  }
+
+  private static String outputName(PlainSelect select, Column column) {
+    String columnName = normalize(column.getColumnName());
+    for (SelectItem<?> item : select.getSelectItems()) {
+      Expression expression = item.getExpression();
+      if (expression instanceof Column
+          && normalize(((Column) expression).getColumnName()).equals(columnName)) {
+        return item.getAlias() == null ? columnName : normalize(item.getAlias().getName());
+      }
+    }
+    return columnName;
+  }
+
+  /** Collects columns of the joined table compared with '=' to values from other tables. */
+  private static void collectEquatedColumns(Expression expr, String name, Set<String> columns) {
+    if (expr instanceof Parenthesis) {
+      collectEquatedColumns(((Parenthesis) expr).getExpression(), name, columns);
+    } else if (expr instanceof AndExpression) {
+      AndExpression and = (AndExpression) expr;
+      collectEquatedColumns(and.getLeftExpression(), name, columns);
+      collectEquatedColumns(and.getRightExpression(), name, columns);
+    } else if (expr instanceof EqualsTo) {
+      EqualsTo equalsTo = (EqualsTo) expr;
+      addKeyColumn(equalsTo.getLeftExpression(), equalsTo.getRightExpression(), name, columns);
+      addKeyColumn(equalsTo.getRightExpression(), equalsTo.getLeftExpression(), name, columns);
+    }
+  }
+
+  private static void addKeyColumn(
+      Expression column, Expression other, String name, Set<String> columns) {
+    if (!(column instanceof Column)) return;
+
+    Table table = ((Column) column).getTable();
+    if (table == null || table.getName() == null || !normalize(table.getName()).equals(name)) {
+      return;
+    }
+
+    TableRefFinder otherRefs = TableRefFinder.find(other);
+    if (otherRefs.hasUnqualifiedColumns() || otherRefs.getQualifiers().contains(name)) return;
+
+    columns.add(normalize(((Column) column).getColumnName()));
+  }
+
+  private Set<String> fromItemRequires(FromItem item) {
+    if (item instanceof Table) {
+      String name = normalize(((Table) item).getName());
+      return cteNames.contains(name) ? Collections.singleton(name) : Collections.emptySet();
+    }
+    if (item instanceof ParenthesedSelect) {
+      return cteRefs(TableRefFinder.find((ParenthesedSelect) item));
+    }
+    return Collections.singleton(SchemaGraph.ALL);
+  }
+
+  private Set<String> requires(Expression expression) {
+    TableRefFinder refs = TableRefFinder.find(expression);
+    Set<String> requires = new TreeSet<>(refs.getQualifiers());
+    requires.addAll(cteRefs(refs));
+    if (refs.hasUnqualifiedColumns()) requires.add(SchemaGraph.ALL);
+    return requires;
+  }
+
+  private Set<String> cteRefs(TableRefFinder refs) {
+    Set<String> result = new TreeSet<>(refs.getTableNames());
+    result.retainAll(cteNames);
+    return result;
+  }
+
+  private static CodeBlock names(Set<String> names) {
+    List<CodeBlock> args = new ArrayList<>();
+    for (String name : names) {
+      args.add(CodeBlock.of("$S", name));
+    }
+    return CodeBlock.join(args, ", ");
+  }
+
+  private static CodeBlock args(Set<String> names) {
+    CodeBlock.Builder args = CodeBlock.builder();
+    for (String name : names) {
+      args.add(", $S", name);
+    }
+    return args.build();
+  }
+}
@@ -0,0 +1,68 @@
+package io.github.kayr.ezyquery.gen.walkers;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+
+/**
+ * Collects the table qualifiers of the columns in an expression e.g {@code o} in {@code o.id} and
+ * the tables of any sub-selects. Names are unquoted and lower-cased.
+ */
+public class TableRefFinder extends TablesNamesFinder {
+
+  private final Set<String> qualifiers = new LinkedHashSet<>();
+  private final Set<String> tables = new LinkedHashSet<>();
+  private boolean unqualified = false;
+
+  private TableRefFinder() {}
+
+  public static TableRefFinder find(Expression expression) {
+    TableRefFinder finder = new TableRefFinder();
+    if (expression != null) {
+      finder.getTables(expression);
+    }
+    return finder;
+  }
+
+  @Override
+  public void visit(Column column) {
+    Table table = column.getTable();
+    if (table == null || table.getName() == null) {
+      // boolean literals are parsed as columns
+      if (!isBooleanLiteral(column.getColumnName())) unqualified = true;
+    } else {
+      qualifiers.add(normalize(table.getName()));
+    }
+  }
+
+  @Override
+  public void visit(Table table) {
+    tables.add(normalize(table.getName()));
+  }
+
+  private static boolean isBooleanLiteral(String name) {
+    return name.equalsIgnoreCase("true") || name.equalsIgnoreCase("false");
+  }
+
+  public static String normalize(String name) {
+    return name.replaceAll("^[\"`\\[]|[\"`\\]]$", "").toLowerCase(Locale.ROOT);
+  }
+
+  public Set<String> getQualifiers() {
+    return Collections.unmodifiableSet(qualifiers);
+  }
+
+  public Set<String> getTableNames() {
+    return Collections.unmodifiableSet(tables);
+  }
+
+  /** Whether any column has no table qualifier, so we cannot tell which table it belongs to. */
+  public boolean hasUnqualifiedColumns() {
+    return unqualified;
+  }
+}
@@ -162,6 +162,78 @@ class QueryGenTest extends Specification {
         generated == expected
     }
 
+    def 'test emits schema graph when left joins can be left out'() {
+        def data = load('left-joins')
+        when:
+        def generated = generateCode(data.v1, data.v3)
+        def expected = data.v2.trim()
+
+        then:
+        generated == expected
+    }
+
+    def 'test does not emit schema graph for left joins that may match many rows'() {
+        def sql = '''SELECT o.id AS id, n.note AS note
+                     FROM orders o
+                     LEFT JOIN order_notes n ON n.order_id = o.id'''
+        when:
+        def generated = generateCode(sql)
+
+        then:
+        !generated.contains('SchemaGraph')
+    }
+
+    def 'test records the joins used by the default order by'() {
+        def sql = '''SELECT o.id AS id, s.status AS status
+                     FROM orders o
+                     LEFT JOIN (
+                        SELECT order_id, MAX(status) AS status FROM shipments GROUP BY order_id
+                     ) s ON s.order_id = o.id
+                     ORDER BY s.status'''
+        when:
+        def generated = generateCode(sql)
+
+        then:
+        generated.contains('.field("status", "s")')
+        generated.contains('.orderBy("s")')
+    }
+
+    def 'test emits the indexed fields when index metadata is configured'() {
+        def sql = '''SELECT o.id AS id, o.status AS status, c.name AS customerName, c.email AS email
+                     FROM orders o
+                     JOIN customers c ON c.id = o.customer_id'''
+        def config = new Properties()
+        config.setProperty('index.orders', 'id, status')
+        config.setProperty('index.customers', 'email')
+
+        when:
+        def generated = generateCode(sql, config)
+
+        then:
+        generated.contains('public Optional<Set<String>> indexedFields() {')
+        generated.contains('return Optional.of(new HashSet<>(Arrays.asList("email", "id", "status")));')
+    }
+
+    def 'test resolves unqualified columns when there is one table'() {
+        def sql = 'SELECT id, name FROM customers'
+        def config = new Properties()
+        config.setProperty('index.customers', 'id')
+
+        when:
+        def generated = generateCode(sql, config)
+
+        then:
+        generated.contains('return Optional.of(new HashSet<>(Arrays.asList("id")));')
+    }
+
+    def 'test does not emit indexed fields without index metadata'() {
+        when:
+        def generated = generateCode('SELECT id, name FROM customers')
+
+        then:
+        !generated.contains('indexedFields')
+    }
+
 
     private void copyToClipboard(String s) {
         Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(s), null);
@@ -2,11 +2,13 @@ package io.github.kayr.ezyquery;
 
 import io.github.kayr.ezyquery.api.EzyCriteria;
 import io.github.kayr.ezyquery.api.Field;
+import io.github.kayr.ezyquery.api.SchemaGraph;
 import io.github.kayr.ezyquery.parser.QueryAndParams;
 import io.github.kayr.ezyquery.parser.SqlParts;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface EzyQuery {
   QueryAndParams query(EzyCriteria params);
@@ -26,4 +28,25 @@ public interface EzyQuery {
   default Optional<SqlParts> orderByClause() {
     return Optional.empty();
   }
+
+  /** The join structure of the query, used to leave out joins that are not needed. */
+  default Optional<SchemaGraph> schemaGraph() {
+    return Optional.empty();
+  }
+
+  /**
+   * The lower-cased names of the tables the query reads from, used to invalidate cached results.
+   */
+  default List<String> tables() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * The aliases of the fields backed by an indexed column, sorting and filtering on them does not
+   * need a full scan. Empty when the query has no index metadata, see {@link
+   * io.github.kayr.ezyquery.api.IndexPolicy}.
+   */
+  default Optional<Set<String>> indexedFields() {
+    return Optional.empty();
+  }
 }
@@ -2,18 +2,38 @@ package io.github.kayr.ezyquery;
 
 import io.github.kayr.ezyquery.api.*;
 import io.github.kayr.ezyquery.api.cnd.ICond;
+import io.github.kayr.ezyquery.cache.QueryCache;
+import io.github.kayr.ezyquery.cache.QueryKey;
+import io.github.kayr.ezyquery.dialect.Dialect;
 import io.github.kayr.ezyquery.parser.QueryAndParams;
 import io.github.kayr.ezyquery.sql.ConnectionProvider;
+import io.github.kayr.ezyquery.sql.ExportFormat;
 import io.github.kayr.ezyquery.sql.Mappers;
+import io.github.kayr.ezyquery.sql.ResultSetExporter;
+import io.github.kayr.ezyquery.sql.RowCodec;
+import io.github.kayr.ezyquery.sql.TxOptions;
 import io.github.kayr.ezyquery.sql.Zql;
 import io.github.kayr.ezyquery.util.CoercionUtil;
+import io.github.kayr.ezyquery.util.SingleFlight;
+import io.github.kayr.ezyquery.util.SpillableList;
 import io.github.kayr.ezyquery.util.ThrowingFunction;
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 import lombok.NonNull;
 
@@ -24,10 +44,26 @@ import lombok.NonNull;
 @SuppressWarnings("LombokGetterMayBeUsed")
 public class EzySql {
 
-  @lombok.Getter private final Zql zql;
+  /** Rows the driver reads at a time when rows are streamed e.g exports. */
+  static final int STREAM_FETCH_SIZE = 1_000;
 
-  private EzySql(Zql zql) {
+  @lombok.Getter private final Zql zql;
+  @lombok.Getter private final Dialect dialect;
+  private final QueryCache cache;
+  private final SingleFlight<QueryKey, Object> inFlight;
+  private final IndexPolicy indexPolicy;
+
+  private EzySql(
+      Zql zql,
+      Dialect dialect,
+      QueryCache cache,
+      SingleFlight<QueryKey, Object> inFlight,
+      IndexPolicy indexPolicy) {
     this.zql = zql;
+    this.dialect = dialect;
+    this.cache = cache;
+    this.inFlight = inFlight;
+    this.indexPolicy = indexPolicy;
   }
 
   public static EzySql withProvider(ConnectionProvider connectionProvider) {
@@ -35,7 +71,7 @@ public class EzySql {
   }
 
   public static EzySql withZql(Zql zql) {
-    return new EzySql(zql);
+    return new EzySql(zql, Dialect.defaultDialect(), null, null, IndexPolicy.allow());
   }
 
   public static EzySql withDataSource(DataSource dataSource) {
@@ -46,38 +82,198 @@ public class EzySql {
     return withProvider(ConnectionProvider.of(connection));
   }
 
-  private <T> List<T> list(EzyQuery query, EzyCriteria params, Mappers.RowMapper<T> resultMapper) {
-    QueryAndParams queryAndParams = query.query(params);
-    return zql.rows(resultMapper, queryAndParams.getSql(), queryAndParams.getParams());
+  /** Returns a copy of this EzySql that generates sql for the given dialect. */
+  public EzySql withDialect(@NonNull Dialect dialect) {
+    return new EzySql(zql, dialect, cache, inFlight, indexPolicy);
+  }
+
+  /**
+   * Returns a copy of this EzySql that caches the results of list, one and count calls. Cached
+   * lists are unmodifiable.
+   */
+  public EzySql withCache(@NonNull QueryCache cache) {
+    return new EzySql(zql, dialect, cache, inFlight, indexPolicy);
+  }
+
+  /**
+   * Returns a copy of this EzySql where concurrent identical list, one and count calls share one
+   * database call and get the same result, shared lists are unmodifiable. Nothing is kept once the
+   * call completes.
+   */
+  public EzySql withCoalescing() {
+    return new EzySql(zql, dialect, cache, new SingleFlight<>(), indexPolicy);
+  }
+
+  /**
+   * Returns a copy of this EzySql that checks queries for sorts and filters on fields that are not
+   * indexed, see {@link EzyQuery#indexedFields()}. A policy set with {@link
+   * EzyCriteria#indexPolicy(IndexPolicy)} takes precedence.
+   */
+  public EzySql withIndexPolicy(@NonNull IndexPolicy indexPolicy) {
+    return new EzySql(zql, dialect, cache, inFlight, indexPolicy);
+  }
+
+  /**
+   * Runs the function with an EzySql that uses one connection for all its queries. The EzySql
+   * passed in does not cache or coalesce, its results may not be visible to other connections.
+   */
+  public <R> R withPinnedConnection(ThrowingFunction<EzySql, R> fn) {
+    return zql.withPinnedConnection(pinned -> fn.apply(pinnedTo(pinned)));
+  }
+
+  public <R> R inTransaction(ThrowingFunction<EzySql, R> fn) {
+    return inTransaction(TxOptions.defaults(), fn);
+  }
+
+  /**
+   * Runs the function in a transaction on one connection, see {@link Zql#inTransaction(TxOptions,
+   * ThrowingFunction)}.
+   *
+   * <pre>{@code
+   * ezySql.inTransaction(TxOptions.readOnly(), tx -> {
+   *   List<Offices.Result> offices = tx.from(Offices.QUERY).list();
+   *   Long count = tx.from(Employees.QUERY).count();
+   *   ...
+   * });
+   * }</pre>
+   */
+  public <R> R inTransaction(TxOptions options, ThrowingFunction<EzySql, R> fn) {
+    return zql.inTransaction(options, pinned -> fn.apply(pinnedTo(pinned)));
+  }
+
+  private EzySql pinnedTo(Zql pinned) {
+    return new EzySql(pinned, dialect, null, null, indexPolicy);
+  }
+
+  public Optional<QueryCache> getCache() {
+    return Optional.ofNullable(cache);
+  }
+
+  private boolean sharesResults() {
+    return cache != null || inFlight != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T execute(
+      EzyQuery query,
+      QueryAndParams queryAndParams,
+      String operation,
+      Object resultType,
+      Supplier<T> loader) {
+    // the key hashes the sql and params, only pay for it when results are shared
+    if (!sharesResults()) return loader.get();
+
+    QueryKey key = QueryKey.of(queryAndParams, operation, resultType);
+    if (cache != null) {
+      // the cache already collapses concurrent misses
+      return cache.get(key, query.tables(), loader);
+    }
+    return (T) inFlight.execute(key, loader::get);
+  }
+
+  private QueryAndParams toQuery(EzyQuery query, EzyCriteria criteria) {
+    EzyCriteria withSettings = criteria.dialect(dialect);
+    // a policy set on the criteria wins over this default
+    if (indexPolicy != IndexPolicy.allow() && !criteria.hasIndexPolicy()) {
+      withSettings = withSettings.indexPolicy(indexPolicy);
+    }
+    return query.query(withSettings);
+  }
+
+  private <T> List<T> list(
+      EzyQuery query,
+      EzyCriteria params,
+      Mappers.RowMapper<T> resultMapper,
+      Object resultType) {
+    QueryAndParams queryAndParams = toQuery(query, params);
+    if (!sharesResults()) {
+      return zql.rows(resultMapper, queryAndParams.getSql(), queryAndParams.getParams());
+    }
+    return execute(
+        query,
+        queryAndParams,
+        "list",
+        resultType,
+        () ->
+            Collections.unmodifiableList(
+                zql.rows(resultMapper, queryAndParams.getSql(), queryAndParams.getParams())));
   }
 
   private <T> Optional<T> mayBeOne(
-      EzyQuery query, EzyCriteria params, Mappers.RowMapper<T> resultMapper) {
-    QueryAndParams queryAndParams = query.query(params);
-    T one = zql.firstRow(resultMapper, queryAndParams.getSql(), queryAndParams.getParams());
+      EzyQuery query, EzyCriteria params, Mappers.RowMapper<T> resultMapper, Object resultType) {
+    QueryAndParams queryAndParams = toQuery(query, params);
+    T one =
+        execute(
+            query,
+            queryAndParams,
+            "one",
+            resultType,
+            () ->
+                zql.firstRow(resultMapper, queryAndParams.getSql(), queryAndParams.getParams()));
     return Optional.ofNullable(one);
   }
 
-  private <T> T one(EzyQuery query, EzyCriteria params, Mappers.RowMapper<T> resultMapper) {
-    return mayBeOne(query, params, resultMapper)
+  private <T> T one(
+      EzyQuery query, EzyCriteria params, Mappers.RowMapper<T> resultMapper, Object resultType) {
+    return mayBeOne(query, params, resultMapper, resultType)
         .orElseThrow(() -> new NoSuchElementException("No result found"));
   }
 
   private <T> Long count(EzyQuery query, EzyCriteria criteria) {
+    QueryAndParams queryAndParams = toQuery(query, criteria);
     Object one =
-        zql.one(Object.class, query.query(criteria).getSql(), query.query(criteria).getParams());
+        execute(
+            query,
+            queryAndParams,
+            "count",
+            Long.class,
+            () -> zql.one(Object.class, queryAndParams.getSql(), queryAndParams.getParams()));
     if (one == null) {
       return 0L;
     }
     return CoercionUtil.toLong(one);
   }
 
-  private <R> R query(
-      EzyQuery sql, EzyCriteria criteria, ThrowingFunction<ResultSet, R> rsConsumer) {
-    QueryAndParams queryAndParams = sql.query(criteria);
+  private Count countAtMost(EzyQuery query, EzyCriteria criteria, int cap) {
+    // one row past the cap tells exactly cap rows apart from more
+    int limit = cap == Integer.MAX_VALUE ? cap : cap + 1;
+    long count = count(query, criteria.countAtMost(limit));
+    return count > cap ? Count.atLeast(cap) : Count.exact(count);
+  }
+
+  private Count estimateCount(EzyQuery query, EzyCriteria criteria) {
+    QueryAndParams rows = SqlBuilder.buildCountSource(query, criteria.dialect(dialect).count());
+    Optional<Long> estimate = dialect.estimateCount(zql, rows);
+    if (estimate.isPresent()) {
+      return Count.estimate(estimate.get());
+    }
+    return Count.exact(count(query, criteria.count()));
+  }
+
+  <R> R query(EzyQuery sql, EzyCriteria criteria, ThrowingFunction<ResultSet, R> rsConsumer) {
+    QueryAndParams queryAndParams = toQuery(sql, criteria);
     return zql.query(queryAndParams.getSql(), queryAndParams.getParams(), rsConsumer);
   }
 
+  /** Like {@link #query} but the driver reads about {@code fetchSize} rows at a time. */
+  <R> R stream(
+      EzyQuery sql,
+      EzyCriteria criteria,
+      int fetchSize,
+      ThrowingFunction<ResultSet, R> rsConsumer) {
+    QueryAndParams queryAndParams = toQuery(sql, criteria);
+    int driverFetchSize = dialect.fetchSize(fetchSize);
+    if (!dialect.fetchesInTransaction()) {
+      return zql.query(
+          queryAndParams.getSql(), queryAndParams.getParams(), driverFetchSize, rsConsumer);
+    }
+    return zql.inTransaction(
+        TxOptions.readOnly(),
+        tx ->
+            tx.query(
+                queryAndParams.getSql(), queryAndParams.getParams(), driverFetchSize, rsConsumer));
+  }
+
   public <T> CriteriaBuilder<T> from(EzyQueryWithResult<T> q) {
     return new CriteriaBuilder<>(q, this);
   }
@@ -88,16 +284,34 @@ public class EzySql {
     private final EzyCriteria criteria;
     private final Mappers.RowMapper<T> resultsMapper;
 
+    /** Identifies the mapping of rows when caching, the result class or the custom mapper */
+    private final Object resultType;
+
     public CriteriaBuilder(EzyQueryWithResult<T> query, EzySql ezySql) {
-      this(query, ezySql, EzyCriteria.selectAll(), Mappers.toClass(query.resultClass()));
+      this(
+          query,
+          ezySql,
+          EzyCriteria.selectAll(),
+          Mappers.toClass(query.resultClass()),
+          query.resultClass());
     }
 
     public CriteriaBuilder(
         EzyQuery query, EzySql ezySql, EzyCriteria criteria, Mappers.RowMapper<T> mapper) {
+      this(query, ezySql, criteria, mapper, mapper);
+    }
+
+    private CriteriaBuilder(
+        EzyQuery query,
+        EzySql ezySql,
+        EzyCriteria criteria,
+        Mappers.RowMapper<T> mapper,
+        Object resultType) {
       this.query = query;
       this.ezySql = ezySql;
       this.criteria = criteria;
       this.resultsMapper = mapper;
+      this.resultType = resultType;
     }
 
     public CriteriaBuilder<T> select(Field<?> field, Field<?>... otherFields) {
@@ -134,6 +348,14 @@ public class EzySql {
       return withCriteria(criteria.limit(limit, offset));
     }
 
+    public CriteriaBuilder<T> useArrayParams() {
+      return withCriteria(criteria.useArrayParams());
+    }
+
+    public CriteriaBuilder<T> hint(String... hints) {
+      return withCriteria(criteria.hint(hints));
+    }
+
     public CriteriaBuilder<T> orderBy(String... orderBy) {
       return withCriteria(criteria.orderBy(orderBy));
     }
@@ -147,7 +369,7 @@ public class EzySql {
     }
 
     public List<T> list() {
-      return ezySql.list(query, criteria, resultsMapper);
+      return ezySql.list(query, criteria, resultsMapper, resultType);
     }
 
     public Long count() {
@@ -160,24 +382,171 @@ public class EzySql {
       return new EzySql.Result<>(count, list);
     }
 
+    /**
+     * Counts at most {@code cap} rows, the count is exact unless more than {@code cap} rows match.
+     * See {@link EzyCriteria#countAtMost(int)}
+     */
+    public Count countAtMost(int cap) {
+      return ezySql.countAtMost(query, criteria, cap);
+    }
+
+    /**
+     * Uses the query planner's row estimate, which does not scan the table. Falls back to an exact
+     * count when the dialect cannot estimate.
+     */
+    public Count estimateCount() {
+      return ezySql.estimateCount(query, criteria);
+    }
+
+    public EzySql.Result<T> listAndCountAtMost(int cap) {
+      List<T> list = list();
+      return new EzySql.Result<>(countAtMost(cap), list);
+    }
+
+    public EzySql.Result<T> listAndEstimateCount() {
+      List<T> list = list();
+      return new EzySql.Result<>(estimateCount(), list);
+    }
+
+    public CompletableFuture<List<T>> listAsync(@NonNull Executor executor) {
+      return CompletableFuture.supplyAsync(this::list, executor);
+    }
+
+    public CompletableFuture<Long> countAsync(@NonNull Executor executor) {
+      return CompletableFuture.supplyAsync(this::count, executor);
+    }
+
+    /** Runs the list and the count at the same time. */
+    public CompletableFuture<EzySql.Result<T>> listAndCountAsync(@NonNull Executor executor) {
+      return listAsync(executor)
+          .thenCombine(countAsync(executor), (list, count) -> new EzySql.Result<>(count, list));
+    }
+
     public Optional<T> mayBeOne() {
-      return ezySql.mayBeOne(query, criteria, resultsMapper);
+      return ezySql.mayBeOne(query, criteria, resultsMapper, resultType);
     }
 
     public T one() {
-      return ezySql.one(query, criteria, resultsMapper);
+      return ezySql.one(query, criteria, resultsMapper, resultType);
     }
 
     public <R> R query(ThrowingFunction<ResultSet, R> rsConsumer) {
       return ezySql.query(query, criteria, rsConsumer);
     }
 
+    /**
+     * Same as {@link #query(ThrowingFunction)} for reading many rows, the driver reads about {@code
+     * fetchSize} rows at a time instead of the whole result. On PostgreSQL the rows are read in a
+     * read-only transaction since its driver only uses a cursor with auto-commit off.
+     */
+    public <R> R query(int fetchSize, ThrowingFunction<ResultSet, R> rsConsumer) {
+      return ezySql.stream(query, criteria, fetchSize, rsConsumer);
+    }
+
+    /**
+     * Maps the rows one at a time as the consumer iterates them instead of reading them all into a
+     * list. The connection is held until the consumer returns, the iterator is not valid after.
+     */
+    public <R> R withRows(ThrowingFunction<Iterator<T>, R> rowsConsumer) {
+      return withRows(STREAM_FETCH_SIZE, rowsConsumer);
+    }
+
+    /**
+     * Same as {@link #withRows(ThrowingFunction)}, the driver reads about {@code fetchSize} rows at
+     * a time.
+     */
+    public <R> R withRows(int fetchSize, ThrowingFunction<Iterator<T>, R> rowsConsumer) {
+      return query(
+          fetchSize, rs -> rowsConsumer.apply(Mappers.resultSetToIterator(rs, resultsMapper)));
+    }
+
+    /**
+     * Lists the rows keeping only the first {@code inMemoryRows} on the heap, the rest are written
+     * to a memory mapped temp file and decoded on every {@link SpillableList#get(int)}. The list is
+     * not cached and must be closed to delete the file.
+     *
+     * <pre>{@code
+     * try (SpillableList<Orders.Result> orders =
+     *     ezySql.from(Orders.QUERY).noLimit()
+     *         .listSpillable(100_000, RowCodec.forClass(Orders.Result.class))) {
+     *   ...
+     * }
+     * }</pre>
+     */
+    public SpillableList<T> listSpillable(int inMemoryRows, @NonNull RowCodec<T> codec) {
+      return query(
+          STREAM_FETCH_SIZE,
+          rs -> Mappers.resultSetToSpillableList(rs, resultsMapper, inMemoryRows, codec));
+    }
+
+    /**
+     * Streams the rows to the writer as they are read, without mapping them to objects. Columns are
+     * written in the order they are selected and named by the field aliases. The writer is flushed
+     * but not closed.
+     *
+     * <pre>{@code
+     * long rows = ezySql.from(Orders.QUERY).noLimit().exportTo(writer, ExportFormat.CSV);
+     * }</pre>
+     *
+     * @return the number of rows written
+     */
+    public long exportTo(@NonNull Writer writer, @NonNull ExportFormat format) {
+      return query(
+          STREAM_FETCH_SIZE, rs -> ResultSetExporter.export(rs, query.fields(), writer, format));
+    }
+
+    /** Writes UTF-8 text, see {@link #exportTo(Writer, ExportFormat)} */
+    public long exportTo(@NonNull OutputStream out, @NonNull ExportFormat format) {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+      return exportTo(writer, format);
+    }
+
+    /**
+     * Reads all the matching rows by splitting the range of a numeric or date field into disjoint
+     * partitions that are read concurrently, each on its own connection. Rows where the field is
+     * null are read as one more partition.
+     *
+     * <p>The rows arrive in no particular order through a bounded queue, so slow consumers hold
+     * back the readers. Sorts are rejected, and so is a limit or offset, call {@link #noLimit()}
+     * first. The readers run on a bounded pool shared by all the scans.
+     *
+     * <p>Always use the stream with try-with-resources. A stream that is neither read to the end
+     * nor closed keeps its readers, and their connections, waiting on the queue.
+     *
+     * <pre>{@code
+     * try (Stream<Orders.Result> rows =
+     *     ezySql.from(Orders.QUERY).noLimit().parallelScan(Orders.ID, 8)) {
+     *   rows.forEach(writer::write);
+     * }
+     * }</pre>
+     */
+    public Stream<T> parallelScan(@NonNull Field<?> field, int partitions) {
+      return ParallelScan.start(ezySql, query, criteria, resultsMapper, field, partitions);
+    }
+
+    /** Same as {@link #parallelScan(Field, int)} with the readers run on the given executor. */
+    public Stream<T> parallelScan(
+        @NonNull Field<?> field, int partitions, @NonNull Executor executor) {
+      return ParallelScan.start(
+          ezySql, query, criteria, resultsMapper, field, partitions, executor);
+    }
+
+    /** Returns all the rows, see {@link EzyCriteria#noLimit()} */
+    public CriteriaBuilder<T> noLimit() {
+      return withCriteria(criteria.noLimit());
+    }
+
     public CriteriaBuilder<T> withCriteria(EzyCriteria criteria) {
-      return new CriteriaBuilder<>(query, ezySql, criteria, resultsMapper);
+      return new CriteriaBuilder<>(query, ezySql, criteria, resultsMapper, resultType);
     }
 
     public QueryAndParams getQuery() {
-      return query.query(criteria);
+      return ezySql.toQuery(query, criteria);
+    }
+
+    /** All the fields of the query, not just the selected ones. */
+    public List<Field<?>> getFields() {
+      return query.fields();
     }
   }
 
@@ -186,5 +555,61 @@ public class EzySql {
   public static class Result<T> {
     private final Long count;
     private final List<T> list;
+
+    /** False when the count is capped or estimated */
+    private final boolean exact;
+
+    public Result(Long count, List<T> list) {
+      this(count, list, true);
+    }
+
+    public Result(Count count, List<T> list) {
+      this(count.getValue(), list, count.isExact());
+    }
+  }
+
+  /** A row count that may be capped or estimated. */
+  @lombok.Getter
+  @lombok.EqualsAndHashCode
+  @lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+  public static class Count {
+
+    public enum Type {
+      EXACT,
+      AT_LEAST,
+      ESTIMATE
+    }
+
+    private final long value;
+    private final Type type;
+
+    public static Count exact(long value) {
+      return new Count(value, Type.EXACT);
+    }
+
+    public static Count atLeast(long value) {
+      return new Count(value, Type.AT_LEAST);
+    }
+
+    public static Count estimate(long value) {
+      return new Count(value, Type.ESTIMATE);
+    }
+
+    public boolean isExact() {
+      return type == Type.EXACT;
+    }
+
+    /** e.g {@code 42}, {@code 1000+} or {@code ~5000} */
+    @Override
+    public String toString() {
+      switch (type) {
+        case AT_LEAST:
+          return value + "+";
+        case ESTIMATE:
+          return "~" + value;
+        default:
+          return String.valueOf(value);
+      }
+    }
   }
 }
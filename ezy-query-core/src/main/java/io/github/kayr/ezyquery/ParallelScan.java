@@ -0,0 +1,309 @@
+package io.github.kayr.ezyquery;
+
+import io.github.kayr.ezyquery.api.EzyCriteria;
+import io.github.kayr.ezyquery.api.Field;
+import io.github.kayr.ezyquery.api.Sort;
+import io.github.kayr.ezyquery.api.UnCaughtException;
+import io.github.kayr.ezyquery.api.cnd.Cnd;
+import io.github.kayr.ezyquery.api.cnd.ICond;
+import io.github.kayr.ezyquery.sql.ColumnInfo;
+import io.github.kayr.ezyquery.sql.JdbcUtils;
+import io.github.kayr.ezyquery.sql.Mappers;
+import io.github.kayr.ezyquery.util.Elf;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/** See {@link EzySql.CriteriaBuilder#parallelScan(Field, int)} */
+class ParallelScan<T> implements Iterator<T>, AutoCloseable {
+
+  private static final int QUEUE_CAPACITY = 1024;
+  private static final Object NULL_ROW = new Object();
+  private static final Object DONE = new Object();
+  private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+  /** How often a reader waiting on a full queue checks whether the scan was closed. */
+  private static final long PUT_WAIT_MILLIS = 100;
+
+  private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final int tasks;
+  private volatile boolean closed = false;
+
+  private int finished = 0;
+  private Object next = null;
+
+  private ParallelScan(int tasks) {
+    this.tasks = tasks;
+  }
+
+  /** Runs the readers on a pool shared by all the scans, see {@link SharedReaders}. */
+  static <T> Stream<T> start(
+      EzySql ezySql,
+      EzyQuery query,
+      EzyCriteria criteria,
+      Mappers.RowMapper<T> mapper,
+      Field<?> field,
+      int partitions) {
+    return start(ezySql, query, criteria, mapper, field, partitions, SharedReaders.POOL);
+  }
+
+  static <T> Stream<T> start(
+      EzySql ezySql,
+      EzyQuery query,
+      EzyCriteria criteria,
+      Mappers.RowMapper<T> mapper,
+      Field<?> field,
+      int partitions,
+      Executor executor) {
+    if (partitions <= 0) throw new IllegalArgumentException("partitions must be greater than 0");
+    if (!Elf.isEmpty(criteria.getSorts())) {
+      throw new IllegalArgumentException(
+          "A parallel scan does not keep the order, remove the sorts");
+    }
+    if (criteria.getLimit() != null || criteria.getOffset() != 0) {
+      throw new IllegalArgumentException(
+          "A parallel scan reads all the rows, remove the limit and offset with noLimit()");
+    }
+
+    List<ICond> ranges = partitions(ezySql, query, criteria, field, partitions);
+
+    ParallelScan<T> scan = new ParallelScan<>(ranges.size());
+    for (ICond range : ranges) {
+      executor.execute(() -> scan.read(ezySql, query, criteria.where(range), mapper));
+    }
+
+    Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(scan, Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false).onClose(scan::close);
+  }
+
+  private void read(
+      EzySql ezySql, EzyQuery query, EzyCriteria criteria, Mappers.RowMapper<T> mapper) {
+    // closed before this partition got a thread
+    if (closed) return;
+    Object result = DONE;
+    try {
+      ezySql.query(
+          query,
+          criteria,
+          rs -> {
+            List<ColumnInfo> columns = JdbcUtils.getColumns(rs);
+            int rowIndex = 0;
+            while (!closed && JdbcUtils.next(rs)) {
+              T row = mapper.mapRow(rowIndex++, columns, rs);
+              put(row == null ? NULL_ROW : row);
+            }
+            return null;
+          });
+    } catch (Throwable e) {
+      result = new Failure(e);
+    }
+
+    try {
+      put(result);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for room in the queue until the scan is closed, the reader threads may be shared so
+   * they are not interrupted on close.
+   */
+  private void put(Object item) throws InterruptedException {
+    while (!closed) {
+      if (queue.offer(item, PUT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) return;
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (next == null && finished < tasks) {
+      Object item = take();
+      if (item == DONE) {
+        finished++;
+      } else if (item instanceof Failure) {
+        close();
+        throw new UnCaughtException("Error scanning partition", ((Failure) item).error);
+      } else {
+        next = item;
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    Object row = next;
+    next = null;
+    return row == NULL_ROW ? null : (T) row;
+  }
+
+  private Object take() {
+    try {
+      return queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new UnCaughtException("Interrupted while waiting for rows", e);
+    }
+  }
+
+  /**
+   * Stops the readers, rows already read are dropped. A reader stops after its current row, or
+   * does not start when its partition is still waiting for a thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    queue.clear();
+  }
+
+  /**
+   * Half open ranges {@code min <= field < bound} so that no row is read twice, the last range
+   * includes the max. Plus the rows where the field is null.
+   */
+  private static List<ICond> partitions(
+      EzySql ezySql, EzyQuery query, EzyCriteria criteria, Field<?> field, int partitions) {
+    List<ICond> ranges = new ArrayList<>();
+    ranges.add(Cnd.isNull(field));
+
+    Object min = bound(ezySql, query, criteria, field, Sort.DIR.ASC);
+    Object max = bound(ezySql, query, criteria, field, Sort.DIR.DESC);
+    if (min == null || max == null) return ranges;
+
+    List<Object> bounds = Scale.of(min).split(min, max, partitions);
+    for (int i = 0; i < bounds.size() - 1; i++) {
+      ranges.add(Cnd.andAll(Cnd.gte(field, bounds.get(i)), Cnd.lt(field, bounds.get(i + 1))));
+    }
+    // the max itself, or all rows when they have one value
+    ranges.add(Cnd.eq(field, max));
+    return ranges;
+  }
+
+  private static Object bound(
+      EzySql ezySql, EzyQuery query, EzyCriteria criteria, Field<?> field, Sort.DIR dir) {
+    // the field is added to any selected columns so it is read by its label
+    EzyCriteria boundCriteria =
+        criteria.getColumns().contains(field.getAlias())
+            ? criteria
+            : criteria.addSelect(field.getAlias());
+    boundCriteria =
+        boundCriteria.where(Cnd.isNotNull(field)).orderBy(Sort.by(field, dir)).limit(1, 0L);
+    return ezySql.query(
+        query, boundCriteria, rs -> rs.next() ? rs.getObject(field.getAlias()) : null);
+  }
+
+  /** Maps values of a type to numbers and back so that their range can be split. */
+  private static class Scale {
+    private final Function<Object, BigDecimal> toNumber;
+    private final Function<BigDecimal, Object> fromNumber;
+
+    private Scale(Function<Object, BigDecimal> toNumber, Function<BigDecimal, Object> fromNumber) {
+      this.toNumber = toNumber;
+      this.fromNumber = fromNumber;
+    }
+
+    static Scale of(Object value) {
+      if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        return new Scale(v -> BigDecimal.valueOf(((Number) v).longValue()), BigDecimal::intValue);
+      }
+      if (value instanceof Long) {
+        return new Scale(v -> BigDecimal.valueOf((Long) v), BigDecimal::longValue);
+      }
+      if (value instanceof BigInteger) {
+        return new Scale(v -> new BigDecimal((BigInteger) v), BigDecimal::toBigInteger);
+      }
+      if (value instanceof BigDecimal) {
+        return new Scale(v -> (BigDecimal) v, n -> n);
+      }
+      if (value instanceof Double || value instanceof Float) {
+        return new Scale(v -> BigDecimal.valueOf(((Number) v).doubleValue()), n -> n);
+      }
+      if (value instanceof java.sql.Date) {
+        return new Scale(
+            v -> BigDecimal.valueOf(((java.sql.Date) v).getTime()),
+            n -> new java.sql.Date(n.longValue()));
+      }
+      if (value instanceof Date) {
+        return new Scale(
+            v -> BigDecimal.valueOf(((Date) v).getTime()), n -> new Timestamp(n.longValue()));
+      }
+      if (value instanceof LocalDate) {
+        return new Scale(
+            v -> BigDecimal.valueOf(((LocalDate) v).toEpochDay()),
+            n -> LocalDate.ofEpochDay(n.longValue()));
+      }
+      if (value instanceof LocalDateTime) {
+        return new Scale(
+            v -> BigDecimal.valueOf(Timestamp.valueOf((LocalDateTime) v).getTime()),
+            n -> new Timestamp(n.longValue()).toLocalDateTime());
+      }
+      throw new IllegalArgumentException(
+          "Can not split the range of a " + value.getClass().getName() + " field");
+    }
+
+    /** Up to {@code partitions + 1} increasing bounds from min to max. */
+    List<Object> split(Object min, Object max, int partitions) {
+      BigDecimal start = toNumber.apply(min);
+      BigDecimal width = toNumber.apply(max).subtract(start);
+
+      List<Object> bounds = new ArrayList<>();
+      bounds.add(min);
+      for (int i = 1; i < partitions; i++) {
+        BigDecimal offset =
+            width
+                .multiply(BigDecimal.valueOf(i))
+                .divide(BigDecimal.valueOf(partitions), 10, RoundingMode.FLOOR);
+        Object bound = fromNumber.apply(start.add(offset));
+        // integral values round down, small ranges give fewer partitions
+        if (!bound.equals(bounds.get(bounds.size() - 1))) bounds.add(bound);
+      }
+      if (!max.equals(bounds.get(bounds.size() - 1))) bounds.add(max);
+      return bounds;
+    }
+  }
+
+  /**
+   * A bounded pool of daemon threads for the scans that are not given an executor. Partitions
+   * beyond the pool size wait for a free thread, the threads go away when there are no scans.
+   */
+  private static class SharedReaders {
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final ThreadPoolExecutor POOL =
+        new ThreadPoolExecutor(
+            THREADS,
+            THREADS,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            SharedReaders::newThread);
+
+    static {
+      POOL.allowCoreThreadTimeOut(true);
+    }
+
+    private static Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "ezy-parallel-scan-" + THREAD_IDS.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  private static class Failure {
+    private final Throwable error;
+
+    private Failure(Throwable error) {
+      this.error = error;
+    }
+  }
+}
@@ -2,11 +2,16 @@ package io.github.kayr.ezyquery.api;
 
 import static java.util.Collections.singletonList;
 
+import io.github.kayr.ezyquery.EzyQuery;
 import io.github.kayr.ezyquery.api.cnd.Cnd;
+import io.github.kayr.ezyquery.api.cnd.CndFromMap;
 import io.github.kayr.ezyquery.api.cnd.ICond;
+import io.github.kayr.ezyquery.dialect.Dialect;
 import io.github.kayr.ezyquery.util.Elf;
 import io.github.kayr.ezyquery.util.MapUtil;
+import io.github.kayr.ezyquery.util.PersistentList;
 import java.util.*;
+import java.util.function.Function;
 import lombok.AccessLevel;
 import lombok.Builder;
 
@@ -18,17 +23,31 @@ public class EzyCriteria {
   public static final String OFFSET_PARAM = "_offset";
   public static final String LIMIT_PARAM = "_limit";
 
-  @Builder.Default private List<String> columns = new ArrayList<>();
-  @Builder.Default private List<ICond> conditions = new ArrayList<>();
-  @Builder.Default private List<NamedParamValue> paramValues = new ArrayList<>();
+  // persistent lists so that each fluent call appends without copying what came before, the call
+  // still allocates a builder and a new criteria with the scalar fields copied, so it is immutable
+  @Builder.Default private List<String> columns = PersistentList.empty();
+  @Builder.Default private List<ICond> conditions = PersistentList.empty();
+  @Builder.Default private List<NamedParamValue> paramValues = PersistentList.empty();
 
-  @Builder.Default private List<Sort> sorts = new ArrayList<>();
+  @Builder.Default private List<Sort> sorts = PersistentList.empty();
 
   @Builder.Default private Long offset = 0L;
   @Builder.Default private Integer limit = 50;
 
   @Builder.Default private boolean count = false;
 
+  /** When set the count stops at this many rows. */
+  private Integer countLimit;
+
+  @Builder.Default private boolean arrayParams = false;
+
+  @Builder.Default private List<String> hints = PersistentList.empty();
+
+  @Builder.Default private Dialect dialect = Dialect.defaultDialect();
+
+  /** Null until set, a policy set here takes precedence over the one of EzySql. */
+  private IndexPolicy indexPolicy;
+
   // region Static methods
 
   /** Convenience method just to better communicate the intention */
@@ -37,7 +56,7 @@ public class EzyCriteria {
   }
 
   public static EzyCriteria select(String... columns) {
-    return builder().columns(Arrays.asList(columns)).build();
+    return builder().columns(PersistentList.from(Arrays.asList(columns))).build();
   }
 
   public static EzyCriteria selectCount() {
@@ -53,24 +72,38 @@ public class EzyCriteria {
   }
 
   public static EzyCriteria fromMvMap(Map<String, List<?>> criteria) {
+    return fromMvMap(criteria, Cnd::fromMvMap);
+  }
+
+  /**
+   * Same as {@link #fromMvMap(Map)} but fails with an IllegalArgumentException when a condition is
+   * on a field the query does not have, before any sql is generated.
+   */
+  public static EzyCriteria fromMvMap(Map<String, List<?>> criteria, EzyQuery query) {
+    return fromMvMap(criteria, CndFromMap.forQuery(query)::from);
+  }
+
+  private static EzyCriteria fromMvMap(
+      Map<String, List<?>> criteria, Function<Map<String, List<?>>, ICond> toCond) {
 
     List<Sort> sortByStr = extractSort(criteria);
     Integer limit = extractLimit(criteria);
     Long offset = extractOffset(criteria);
-    List<ICond> conditions = toConds(criteria);
+    List<ICond> conditions = toConds(criteria, toCond);
 
     return EzyCriteria.builder()
-        .conditions(conditions)
+        .conditions(PersistentList.from(conditions))
         .limit(limit)
         .offset(offset)
-        .sorts(sortByStr)
+        .sorts(PersistentList.from(sortByStr))
         .build();
   }
 
-  private static List<ICond> toConds(Map<String, List<?>> criteria) {
+  private static List<ICond> toConds(
+      Map<String, List<?>> criteria, Function<Map<String, List<?>>, ICond> toCond) {
     Map<String, List<?>> condOnlyMap =
         Elf.remove(criteria, SORT_BY_MAP_PARAM, OFFSET_PARAM, LIMIT_PARAM);
-    return singletonList(Cnd.fromMvMap(condOnlyMap));
+    return singletonList(toCond.apply(condOnlyMap));
   }
 
   private static Integer extractLimit(Map<String, List<?>> criteria) {
@@ -96,11 +129,11 @@ public class EzyCriteria {
 
   // region Builder methods
   public EzyCriteria addSelect(String... columns) {
-    return toBuilder().columns(Elf.addAll(this.columns, columns)).build();
+    return toBuilder().columns(PersistentList.from(this.columns).append(columns)).build();
   }
 
   public EzyCriteria where(ICond... conds) {
-    return toBuilder().conditions(Elf.addAll(this.conditions, conds)).build();
+    return toBuilder().conditions(PersistentList.from(this.conditions).append(conds)).build();
   }
 
   public EzyCriteria offset(@lombok.NonNull Long offset) {
@@ -115,12 +148,53 @@ public class EzyCriteria {
     return toBuilder().limit(limit).offset(offset).build();
   }
 
+  /** Returns all the rows i.e renders no LIMIT or OFFSET, meant for exports. */
+  public EzyCriteria noLimit() {
+    return toBuilder().limit(null).offset(0L).build();
+  }
+
   public EzyCriteria count() {
     return toBuilder().count(true).build();
   }
 
+  /**
+   * Counts at most {@code cap} rows i.e {@code SELECT COUNT(*) FROM (SELECT 1 ... LIMIT cap)}. This
+   * is cheap even on large tables and enough for showing "1000+" in a pager.
+   */
+  public EzyCriteria countAtMost(int cap) {
+    if (cap <= 0) {
+      throw new IllegalArgumentException("Count cap must be greater than zero");
+    }
+    return toBuilder().count(true).countLimit(cap).build();
+  }
+
+  /**
+   * Bind IN lists as a single array parameter i.e {@code x = ANY(?)} instead of a placeholder for
+   * each value. Only use this with databases that support array parameters e.g PostgreSQL and H2.
+   */
+  public EzyCriteria useArrayParams() {
+    return toBuilder().arrayParams(true).build();
+  }
+
+  /**
+   * Adds optimizer hints. They are rendered the way the dialect expects them e.g as a hint comment
+   * after SELECT or as {@code OPTION (...)} in Sql Server.
+   */
+  public EzyCriteria hint(String... hints) {
+    return toBuilder().hints(PersistentList.from(this.hints).append(hints)).build();
+  }
+
+  public EzyCriteria dialect(@lombok.NonNull Dialect dialect) {
+    return toBuilder().dialect(dialect).build();
+  }
+
+  /** What to do when sorting or filtering on fields that are not indexed. */
+  public EzyCriteria indexPolicy(@lombok.NonNull IndexPolicy indexPolicy) {
+    return toBuilder().indexPolicy(indexPolicy).build();
+  }
+
   public EzyCriteria orderBy(Sort... sort) {
-    return toBuilder().sorts(Elf.addAll(this.sorts, sort)).build();
+    return toBuilder().sorts(PersistentList.from(this.sorts).append(sort)).build();
   }
 
   public EzyCriteria orderBy(String... sort) {
@@ -129,12 +203,13 @@ public class EzyCriteria {
       List<Sort> parse = Sort.parse(s);
       sortList.addAll(parse);
     }
-    return toBuilder().sorts(Elf.combine(this.sorts, sortList)).build();
+    return toBuilder().sorts(PersistentList.from(this.sorts).append(sortList)).build();
   }
 
   public EzyCriteria setParam(NamedParam namedParam, Object value) {
     return toBuilder()
-        .paramValues(Elf.addAll(this.paramValues, new NamedParamValue(namedParam, value)))
+        .paramValues(
+            PersistentList.from(this.paramValues).append(new NamedParamValue(namedParam, value)))
         .build();
   }
 
@@ -147,15 +222,33 @@ public class EzyCriteria {
   // region Read only
 
   public List<String> getColumns() {
-    return Collections.unmodifiableList(columns);
+    return PersistentList.from(columns);
   }
 
   public List<ICond> getConditions() {
-    return Collections.unmodifiableList(conditions);
+    return PersistentList.from(conditions);
+  }
+
+  public List<NamedParamValue> getParamValues() {
+    return PersistentList.from(paramValues);
   }
 
   public List<Sort> getSorts() {
-    return Collections.unmodifiableList(sorts);
+    return PersistentList.from(sorts);
+  }
+
+  public List<String> getHints() {
+    return PersistentList.from(hints);
+  }
+
+  /** The policy set with {@link #indexPolicy(IndexPolicy)}, {@link IndexPolicy#allow()} if none. */
+  public IndexPolicy getIndexPolicy() {
+    return indexPolicy == null ? IndexPolicy.allow() : indexPolicy;
+  }
+
+  /** Whether a policy was set with {@link #indexPolicy(IndexPolicy)}, even {@code allow()}. */
+  public boolean hasIndexPolicy() {
+    return indexPolicy != null;
   }
 
   // endregion
@@ -0,0 +1,105 @@
+package io.github.kayr.ezyquery.api;
+
+import io.github.kayr.ezyquery.EzyQuery;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import lombok.NonNull;
+
+/**
+ * What to do when a query sorts or filters on fields that are not indexed, see {@link
+ * EzyQuery#indexedFields()}. Queries without index metadata and raw sql filters are not checked.
+ *
+ * <pre>{@code
+ * EzySql ezySql = EzySql.withDataSource(ds).withIndexPolicy(IndexPolicy.requireLimit(100));
+ * }</pre>
+ */
+public class IndexPolicy {
+
+  public enum Action {
+    ALLOW,
+    WARN,
+    REJECT,
+    REQUIRE_LIMIT
+  }
+
+  private static final IndexPolicy ALLOW = new IndexPolicy(Action.ALLOW, 0, null);
+
+  private final Action action;
+  private final int maxLimit;
+  private final Consumer<String> listener;
+
+  private IndexPolicy(Action action, int maxLimit, Consumer<String> listener) {
+    this.action = action;
+    this.maxLimit = maxLimit;
+    this.listener = listener;
+  }
+
+  public static IndexPolicy allow() {
+    return ALLOW;
+  }
+
+  /** Runs the query and passes a description of the unindexed fields to the listener. */
+  public static IndexPolicy warn(@NonNull Consumer<String> listener) {
+    return new IndexPolicy(Action.WARN, 0, listener);
+  }
+
+  /** Fails with an IllegalArgumentException before the query is run. */
+  public static IndexPolicy reject() {
+    return new IndexPolicy(Action.REJECT, 0, null);
+  }
+
+  /**
+   * Allows unindexed sorts and filters only on pages of at most {@code maxLimit} rows. Counts are
+   * allowed only when capped at that many rows, see {@link EzyCriteria#countAtMost(int)}.
+   */
+  public static IndexPolicy requireLimit(int maxLimit) {
+    if (maxLimit <= 0) throw new IllegalArgumentException("maxLimit must be greater than 0");
+    return new IndexPolicy(Action.REQUIRE_LIMIT, maxLimit, null);
+  }
+
+  public Action getAction() {
+    return action;
+  }
+
+  /**
+   * @param filterFields the aliases of the fields the where clause references
+   */
+  void check(EzyQuery query, EzyCriteria criteria, Collection<String> filterFields) {
+    if (action == Action.ALLOW) return;
+
+    Set<String> indexed = query.indexedFields().orElse(null);
+    if (indexed == null) return;
+
+    Set<String> unindexed = new TreeSet<>(filterFields);
+    if (!criteria.isCount()) {
+      for (Sort sort : criteria.getSorts()) {
+        unindexed.add(sort.getField());
+      }
+    }
+    unindexed.removeAll(indexed);
+    if (unindexed.isEmpty()) return;
+
+    String message =
+        "Sorting or filtering on fields that are not indexed: "
+            + unindexed
+            + " in "
+            + query.getClass().getSimpleName();
+    switch (action) {
+      case WARN:
+        listener.accept(message);
+        return;
+      case REQUIRE_LIMIT:
+        if (isLimited(criteria)) return;
+        throw new IllegalArgumentException(message + ", limit the query to " + maxLimit + " rows");
+      default:
+        throw new IllegalArgumentException(message);
+    }
+  }
+
+  private boolean isLimited(EzyCriteria criteria) {
+    Integer limit = criteria.isCount() ? criteria.getCountLimit() : criteria.getLimit();
+    return limit != null && limit <= maxLimit;
+  }
+}
@@ -1,17 +1,48 @@
 package io.github.kayr.ezyquery.api;
 
+import io.github.kayr.ezyquery.api.cnd.Cnd;
+import io.github.kayr.ezyquery.api.cnd.Conds;
+import io.github.kayr.ezyquery.api.cnd.ICond;
+import io.github.kayr.ezyquery.parser.EzySqlTranspiler;
+import io.github.kayr.ezyquery.parser.FragmentCache;
+import io.github.kayr.ezyquery.parser.QueryAndParams;
+import io.github.kayr.ezyquery.util.Elf;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * The param of a nested query criteria. The fields are indexed once and the transpiled conditions
+ * are cached by shape, so keep one instance per nested query as the generated {@link
+ * CriteriaHolder} classes do.
+ */
 @lombok.Getter
 public class NamedCriteriaParam extends NamedParam {
   private final List<Field<?>> fields;
+  private final Map<String, Field<?>> fieldIndex;
+
+  @lombok.Getter(lombok.AccessLevel.NONE)
+  private final FragmentCache fragments;
 
   protected NamedCriteriaParam(String name, List<Field<?>> fields) {
     super(name);
-    this.fields = fields;
+    this.fields = Collections.unmodifiableList(Elf.copyList(fields));
+    this.fieldIndex = EzySqlTranspiler.indexFields(this.fields);
+    this.fragments = new FragmentCache(fieldIndex);
   }
 
   public static NamedCriteriaParam of(String name, List<Field<?>> fields) {
     return new NamedCriteriaParam(name, fields);
   }
+
+  /** The sql of a condition on the nested query, conditions are and-ed when not a junction. */
+  public QueryAndParams transpile(ICond cond) {
+    return transpile(cond, false);
+  }
+
+  /** Same as {@link #transpile(ICond)}, see {@link EzyCriteria#arrayParams()} for the flag. */
+  public QueryAndParams transpile(ICond cond, boolean arrayParams) {
+    ICond finalCond = cond instanceof Conds ? cond : Cnd.andAll(cond);
+    return fragments.transpile(finalCond.asExpr(), arrayParams);
+  }
 }
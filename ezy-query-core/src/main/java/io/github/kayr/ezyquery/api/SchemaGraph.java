@@ -0,0 +1,180 @@
+package io.github.kayr.ezyquery.api;
+
+import io.github.kayr.ezyquery.parser.SqlParts;
+import java.util.*;
+
+/**
+ * Describes how the FROM clause of a generated query is put together i.e which joins and CTEs each
+ * field, join, the default where and order by clauses depend on. It is used to leave out the parts
+ * of the query that cannot change the result e.g when counting rows or selecting a few fields.
+ *
+ * <p>Only optional joins are ever left out. These are LEFT JOINs that match at most one row, so
+ * they do not change the number of rows returned.
+ */
+public class SchemaGraph {
+
+  /** Used when a part of the query references columns that could not be traced to a table. */
+  public static final String ALL = "*";
+
+  private final Node from;
+  private final Map<String, Node> joins;
+  private final Map<String, Node> withClauses;
+  private final Map<String, Set<String>> fields;
+  private final Set<String> whereRequires;
+  private final Set<String> orderByRequires;
+
+  private SchemaGraph(Builder builder) {
+    this.from = builder.from;
+    this.joins = Collections.unmodifiableMap(new LinkedHashMap<>(builder.joins));
+    this.withClauses = Collections.unmodifiableMap(new LinkedHashMap<>(builder.withClauses));
+    this.fields = Collections.unmodifiableMap(new HashMap<>(builder.fields));
+    this.whereRequires = Collections.unmodifiableSet(new HashSet<>(builder.whereRequires));
+    this.orderByRequires = Collections.unmodifiableSet(new HashSet<>(builder.orderByRequires));
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Resolves the joins and CTEs needed when only the given fields are referenced. Returns empty if
+   * everything is needed e.g one of the fields could not be traced to a table.
+   */
+  public Optional<Set<String>> resolve(Collection<String> fieldAliases) {
+    return resolve(fieldAliases, false);
+  }
+
+  /**
+   * @param defaultOrderBy whether the default order by of the query is used
+   */
+  public Optional<Set<String>> resolve(Collection<String> fieldAliases, boolean defaultOrderBy) {
+    Deque<String> pending = new ArrayDeque<>();
+    pending.addAll(from.requires);
+    pending.addAll(whereRequires);
+    if (defaultOrderBy) pending.addAll(orderByRequires);
+
+    for (Node join : joins.values()) {
+      if (!join.optional) pending.add(join.name);
+    }
+
+    for (String alias : fieldAliases) {
+      Set<String> requires = fields.get(alias);
+      if (requires == null) return Optional.empty();
+      pending.addAll(requires);
+    }
+
+    Set<String> required = new HashSet<>();
+    while (!pending.isEmpty()) {
+      String name = pending.pop();
+      if (ALL.equals(name)) return Optional.empty();
+      if (!required.add(name)) continue;
+
+      Node join = joins.get(name);
+      if (join != null) pending.addAll(join.requires);
+
+      Node withClause = withClauses.get(name);
+      if (withClause != null) pending.addAll(withClause.requires);
+    }
+    return Optional.of(required);
+  }
+
+  /** Whether any join or CTE is not required, otherwise the sql of the query is used as it is. */
+  public boolean leavesOut(Set<String> required) {
+    for (String join : joins.keySet()) {
+      if (!required.contains(join)) return true;
+    }
+    for (String withClause : withClauses.keySet()) {
+      if (!required.contains(withClause)) return true;
+    }
+    return false;
+  }
+
+  /** The FROM clause with only the required joins. */
+  public SqlParts schema(Set<String> required) {
+    List<SqlParts> parts = new ArrayList<>();
+    parts.add(from.sql);
+    for (Node join : joins.values()) {
+      if (required.contains(join.name)) {
+        parts.add(SqlParts.of(SqlParts.textPart("\n")));
+        parts.add(join.sql);
+      }
+    }
+    return SqlParts.merge(parts);
+  }
+
+  /**
+   * Filters the CTEs of the query, which must be in the same order as they were added to this
+   * graph.
+   */
+  public List<SqlParts> withClauses(List<SqlParts> allWithClauses, Set<String> required) {
+    List<SqlParts> result = new ArrayList<>();
+    Iterator<String> names = withClauses.keySet().iterator();
+    for (SqlParts withClause : allWithClauses) {
+      if (!names.hasNext() || required.contains(names.next())) {
+        result.add(withClause);
+      }
+    }
+    return result;
+  }
+
+  public static class Builder {
+
+    private Node from;
+    private final Map<String, Node> joins = new LinkedHashMap<>();
+    private final Map<String, Node> withClauses = new LinkedHashMap<>();
+    private final Map<String, Set<String>> fields = new HashMap<>();
+    private final Set<String> whereRequires = new HashSet<>();
+    private final Set<String> orderByRequires = new HashSet<>();
+
+    private Builder() {}
+
+    public Builder from(String name, SqlParts sql, String... requires) {
+      this.from = new Node(name, false, sql, requires);
+      return this;
+    }
+
+    public Builder join(String name, boolean optional, SqlParts sql, String... requires) {
+      joins.put(name, new Node(name, optional, sql, requires));
+      return this;
+    }
+
+    public Builder with(String name, String... requires) {
+      withClauses.put(name, new Node(name, false, SqlParts.empty(), requires));
+      return this;
+    }
+
+    public Builder field(String alias, String... requires) {
+      fields.put(alias, new HashSet<>(Arrays.asList(requires)));
+      return this;
+    }
+
+    public Builder where(String... requires) {
+      whereRequires.addAll(Arrays.asList(requires));
+      return this;
+    }
+
+    public Builder orderBy(String... requires) {
+      orderByRequires.addAll(Arrays.asList(requires));
+      return this;
+    }
+
+    public SchemaGraph build() {
+      Objects.requireNonNull(from, "from is required");
+      return new SchemaGraph(this);
+    }
+  }
+
+  private static class Node {
+    private final String name;
+    private final boolean optional;
+    private final SqlParts sql;
+    private final Set<String> requires;
+
+    private Node(String name, boolean optional, SqlParts sql, String... requires) {
+      this.name = name;
+      this.optional = optional;
+      this.sql = sql;
+      this.requires = new HashSet<>(Arrays.asList(requires));
+    }
+  }
+}
@@ -4,6 +4,8 @@ import io.github.kayr.ezyquery.EzyQuery;
 import io.github.kayr.ezyquery.api.cnd.Cnd;
 import io.github.kayr.ezyquery.api.cnd.ICond;
 import io.github.kayr.ezyquery.ast.EzyExpr;
+import io.github.kayr.ezyquery.dialect.Dialect;
+import io.github.kayr.ezyquery.parser.ExprNormalizer;
 import io.github.kayr.ezyquery.parser.EzySqlTranspiler;
 import io.github.kayr.ezyquery.parser.QueryAndParams;
 import io.github.kayr.ezyquery.parser.SqlParts;
@@ -15,12 +17,26 @@ public class SqlBuilder {
 
   private final List<Field<?>> fields;
   private final EzyCriteria ezyCriteria;
+  private final Dialect dialect;
+
+  /** Select {@code 1} for every row that would be counted, see {@link #buildCountSource} */
+  private final boolean rowsOnly;
 
   private final Map<String, Field<?>> fieldMap = new HashMap<>();
 
+  // what the where clause references, set by whereStmt()
+  private Set<String> filterFields = Collections.emptySet();
+  private boolean rawSqlFilter = true;
+
   public SqlBuilder(List<Field<?>> fields, EzyCriteria ezyCriteria) {
+    this(fields, ezyCriteria, false);
+  }
+
+  private SqlBuilder(List<Field<?>> fields, EzyCriteria ezyCriteria, boolean rowsOnly) {
     this.fields = fields;
     this.ezyCriteria = ezyCriteria;
+    this.dialect = ezyCriteria.getDialect();
+    this.rowsOnly = rowsOnly;
     for (Field<?> f : fields) {
       fieldMap.put(f.getAlias(), f);
     }
@@ -32,14 +48,15 @@ public class SqlBuilder {
 
   public String selectStmt() {
 
+    if (rowsOnly || isCappedCount()) {
+      return "  1\n";
+    }
+
     if (ezyCriteria.isCount()) {
       return " COUNT(*) \n";
     }
 
-    List<String> columns =
-        Elf.isEmpty(ezyCriteria.getColumns())
-            ? fields.stream().map(Field::getAlias).collect(Collectors.toList())
-            : ezyCriteria.getColumns();
+    List<String> columns = selectedColumns();
 
     StringBuilder selectPart = new StringBuilder();
 
@@ -52,9 +69,8 @@ public class SqlBuilder {
       selectPart
           .append("  ")
           .append(theField.getSqlField())
-          .append(" as \"")
-          .append(theField.getAlias())
-          .append("\"");
+          .append(" as ")
+          .append(dialect.quote(theField.getAlias()));
 
       if (i < size - 1) {
         selectPart.append(", ");
@@ -66,9 +82,17 @@ public class SqlBuilder {
     return selectPart.toString();
   }
 
+  private List<String> selectedColumns() {
+    return Elf.isEmpty(ezyCriteria.getColumns())
+        ? fields.stream().map(Field::getAlias).collect(Collectors.toList())
+        : ezyCriteria.getColumns();
+  }
+
   public QueryAndParams whereStmt() {
 
     if (Elf.isEmpty(ezyCriteria.getConditions())) {
+      filterFields = Collections.emptySet();
+      rawSqlFilter = false;
       return EzySqlTranspiler.transpile(fields, Cnd.sql("1 = 1").asExpr());
     }
 
@@ -77,9 +101,18 @@ public class SqlBuilder {
         ezyCriteria.getConditions().stream()
             .reduce(Cnd::and)
             .map(ICond::asExpr)
+            .map(ExprNormalizer::normalize)
             .orElse(Cnd.trueCnd().asExpr());
 
-    return EzySqlTranspiler.transpile(fields, expr);
+    EzySqlTranspiler transpiler = new EzySqlTranspiler(expr, fields, arrayParams());
+    QueryAndParams where = transpiler.transpile();
+    filterFields = transpiler.getReferencedFields();
+    rawSqlFilter = transpiler.hasRawSql();
+    return where;
+  }
+
+  private boolean arrayParams() {
+    return ezyCriteria.isArrayParams() && dialect.supportsArrayParams();
   }
 
   public QueryAndParams orderByStmt(SqlParts defaultOrderBy) {
@@ -89,7 +122,7 @@ public class SqlBuilder {
           .map(
               sqlParts ->
                   QueryAndParams.of(" ORDER BY ")
-                      .append(sqlParts.getQuery(ezyCriteria.getParamValues())))
+                      .append(sqlParts.getQuery(ezyCriteria.getParamValues(), arrayParams())))
           .orElse(null);
     }
 
@@ -121,43 +154,106 @@ public class SqlBuilder {
     return field;
   }
 
+  private boolean isCappedCount() {
+    return ezyCriteria.isCount() && ezyCriteria.getCountLimit() != null;
+  }
+
+  private QueryAndParams topStmt() {
+    if (rowsOnly) {
+      return QueryAndParams.of("");
+    }
+    if (isCappedCount()) {
+      return dialect.countCapTopClause(ezyCriteria.getCountLimit());
+    }
+    if (ezyCriteria.isCount() || ezyCriteria.getLimit() == null) {
+      return QueryAndParams.of("");
+    }
+    return dialect.topClause(ezyCriteria.getLimit(), ezyCriteria.getOffset());
+  }
+
+  private QueryAndParams paginationStmt(QueryAndParams orderBy) {
+    if (isCappedCount()) {
+      return dialect.countCapClause(ezyCriteria.getCountLimit());
+    }
+    if (ezyCriteria.getLimit() == null) {
+      return QueryAndParams.of("");
+    }
+    return dialect.paginationClause(
+        ezyCriteria.getLimit(), ezyCriteria.getOffset(), orderBy != null);
+  }
+
+  /**
+   * The joins and CTEs the query needs. Optional joins that are only used by fields we are not
+   * selecting, filtering or sorting on do not change the rows returned, so they are left out.
+   * Empty when nothing is left out, the FROM clause of the query is then used as it is.
+   */
+  private Optional<Set<String>> requirements(EzyQuery query) {
+    Optional<SchemaGraph> graph = query.schemaGraph();
+    if (!graph.isPresent() || rawSqlFilter) {
+      return Optional.empty();
+    }
+
+    Set<String> usedFields = new HashSet<>(filterFields);
+    boolean defaultOrderBy = false;
+    if (!ezyCriteria.isCount() && !rowsOnly) {
+      usedFields.addAll(selectedColumns());
+      if (Elf.isEmpty(ezyCriteria.getSorts())) {
+        defaultOrderBy = query.orderByClause().isPresent();
+      } else {
+        for (Sort sort : ezyCriteria.getSorts()) {
+          usedFields.add(sort.getField());
+        }
+      }
+    }
+    return graph.get().resolve(usedFields, defaultOrderBy).filter(graph.get()::leavesOut);
+  }
+
   QueryAndParams build(EzyQuery query) {
 
-    QueryAndParams queryBuilder = new QueryAndParams("");
+    QueryAndParams dynamicWhereClause = whereStmt();
+    if (!rowsOnly) {
+      ezyCriteria.getIndexPolicy().check(query, ezyCriteria, filterFields);
+    }
 
+    SqlParts schema = query.schema();
     List<SqlParts> preQuery = query.withClauses();
+
+    Optional<Set<String>> requirements = requirements(query);
+    if (requirements.isPresent()) {
+      SchemaGraph graph = query.schemaGraph().get();
+      schema = graph.schema(requirements.get());
+      preQuery = graph.withClauses(preQuery, requirements.get());
+    }
+
+    QueryAndParams withPart = new QueryAndParams("");
     if (!Elf.isEmpty(preQuery)) {
-      queryBuilder = queryBuilder.append("WITH ");
+      withPart = withPart.append("WITH ");
       for (Iterator<SqlParts> iterator = preQuery.iterator(); iterator.hasNext(); ) {
         SqlParts sqlParts = iterator.next();
-        queryBuilder =
-            queryBuilder
-                .append(sqlParts.getQuery(ezyCriteria.getParamValues()))
+        withPart =
+            withPart
+                .append(sqlParts.getQuery(ezyCriteria.getParamValues(), arrayParams()))
                 .append(iterator.hasNext(), ",")
                 .newLine();
       }
     }
 
-    queryBuilder = queryBuilder.append("SELECT \n");
-
-    String s = selectStmt();
-
-    QueryAndParams dynamicWhereClause = whereStmt();
-
-    QueryAndParams orderBy = orderByStmt(query.orderByClause().orElse(null));
-
-    queryBuilder =
-        queryBuilder
-            .append(s)
+    QueryAndParams queryBuilder =
+        QueryAndParams.of("SELECT ")
+            .append(dialect.selectHints(ezyCriteria.getHints()))
+            .append(topStmt())
+            .append("\n")
+            .append(selectStmt())
             .append("FROM ")
-            .append(query.schema().getQuery(ezyCriteria.getParamValues()))
+            .append(schema.getQuery(ezyCriteria.getParamValues(), arrayParams()))
             .append("\n")
             .append("WHERE ");
 
     Optional<SqlParts> defaultWhereClause = query.whereClause();
     if (defaultWhereClause.isPresent()) {
       String dynWhereStr = Elf.mayBeAddParens(dynamicWhereClause.getSql());
-      QueryAndParams defaultWhere = defaultWhereClause.get().getQuery(ezyCriteria.getParamValues());
+      QueryAndParams defaultWhere =
+          defaultWhereClause.get().getQuery(ezyCriteria.getParamValues(), arrayParams());
       queryBuilder =
           queryBuilder
               .append("(")
@@ -168,19 +264,32 @@ public class SqlBuilder {
       queryBuilder = queryBuilder.append(dynamicWhereClause);
     }
 
-    if (!ezyCriteria.isCount()) {
+    if (!rowsOnly && (!ezyCriteria.isCount() || isCappedCount())) {
 
-      queryBuilder = queryBuilder.append("\n");
+      QueryAndParams orderBy = null;
+      if (!ezyCriteria.isCount()) {
+        orderBy = orderByStmt(query.orderByClause().orElse(null));
+      }
 
       if (orderBy != null) {
-        queryBuilder = queryBuilder.append(orderBy).append("\n");
+        queryBuilder = queryBuilder.append("\n").append(orderBy);
       }
-      queryBuilder =
-          queryBuilder
-              .append("LIMIT ")
-              .append(ezyCriteria.getLimit() + "")
-              .append(" OFFSET ")
-              .append(ezyCriteria.getOffset() + "");
+
+      QueryAndParams pagination = paginationStmt(orderBy);
+      if (!pagination.getSql().isEmpty()) {
+        queryBuilder = queryBuilder.append("\n").append(pagination);
+      }
+    }
+
+    if (!rowsOnly && isCappedCount()) {
+      queryBuilder = dialect.wrapCount(queryBuilder);
+    }
+
+    queryBuilder = withPart.append(queryBuilder);
+
+    String queryHints = dialect.queryHints(ezyCriteria.getHints());
+    if (!queryHints.isEmpty()) {
+      queryBuilder = queryBuilder.append("\n").append(queryHints);
     }
 
     return queryBuilder;
@@ -189,4 +298,12 @@ public class SqlBuilder {
   public static QueryAndParams buildSql(EzyQuery query, EzyCriteria criteria) {
     return SqlBuilder.with(query, criteria).build(query);
   }
+
+  /**
+   * Builds {@code SELECT 1 FROM ... WHERE ...} i.e the rows a count query would count, without
+   * pagination. Used to ask the database for a row estimate.
+   */
+  public static QueryAndParams buildCountSource(EzyQuery query, EzyCriteria criteria) {
+    return new SqlBuilder(query.fields(), criteria, true).build(query);
+  }
 }
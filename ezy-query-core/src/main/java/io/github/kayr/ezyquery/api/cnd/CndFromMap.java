@@ -1,13 +1,18 @@
 package io.github.kayr.ezyquery.api.cnd;
 
+import io.github.kayr.ezyquery.EzyQuery;
+import io.github.kayr.ezyquery.api.Field;
+import io.github.kayr.ezyquery.ast.BinaryExpr;
 import io.github.kayr.ezyquery.util.Elf;
 import io.github.kayr.ezyquery.util.StringElf;
-import java.util.AbstractMap;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
+/**
+ * Creates conditions from request parameters like {@code age.gt=20}. Keys are parsed once and
+ * cached, multiple conditions are joined into one flat AND.
+ */
 public class CndFromMap {
 
   interface OpHandler {
@@ -17,58 +22,120 @@ public class CndFromMap {
 
   private static final Map<String, OpHandler> DEFAULT_HANDLERS = new HashMap<>();
 
-  private CndFromMap() {}
+  /** Keys come from requests so the cache is cleared when it gets this big. */
+  private static final int MAX_CACHED_KEYS = 10_000;
+
+  private static final Map<String, ParsedKey> PARSED_KEYS = new ConcurrentHashMap<>();
+
+  /** The allowed field names or null to allow any field. */
+  private final Set<String> knownFields;
+
+  private CndFromMap(Set<String> knownFields) {
+    this.knownFields = knownFields;
+  }
 
   public static ICond create(Map<String, List<?>> map) {
     return create().from(map);
   }
 
   static CndFromMap create() {
-    return new CndFromMap();
+    return new CndFromMap(null);
+  }
+
+  /**
+   * A CndFromMap that rejects fields the query does not have. The field names are read from the
+   * query itself since instances of one class can have different fields.
+   */
+  public static CndFromMap forQuery(EzyQuery query) {
+    return new CndFromMap(aliases(query));
+  }
+
+  private static Set<String> aliases(EzyQuery query) {
+    Set<String> aliases = new HashSet<>();
+    for (Field<?> field : query.fields()) {
+      aliases.add(field.getAlias());
+    }
+    return Collections.unmodifiableSet(aliases);
   }
 
   private static ICond createCond(
       String operator, List<?> operands, Function<Object, ICond> fnCreateCnd) {
-    return operands.stream()
-        .map(fnCreateCnd)
-        .reduce(ICond::and)
-        .orElseThrow(
-            () -> new IllegalArgumentException("No operands found for operator: " + operator));
+    if (Elf.isEmpty(operands)) {
+      throw new IllegalArgumentException("No operands found for operator: " + operator);
+    }
+    List<Object> conds = new ArrayList<>(operands.size());
+    for (Object operand : operands) {
+      conds.add(fnCreateCnd.apply(operand));
+    }
+    return allOf(conds);
   }
 
-  public ICond from(Map<String, List<?>> map) {
+  private static ICond allOf(List<Object> conds) {
+    if (conds.size() == 1) return (ICond) conds.get(0);
+    return Conds.createConds(BinaryExpr.Op.AND, conds);
+  }
 
-    return map.entrySet().stream()
-        .map(
-            e -> {
-              Map.Entry<String, String> key = splitKey(e.getKey());
-              String operator = key.getValue();
-              String fieldName = key.getKey();
+  public ICond from(Map<String, List<?>> map) {
+    if (map.isEmpty()) throw new IllegalArgumentException("No conditions found");
+
+    List<ParsedKey> keys = new ArrayList<>(map.size());
+    for (String key : map.keySet()) {
+      ParsedKey parsed = parseKey(key);
+      if (knownFields != null && !knownFields.contains(parsed.field)) {
+        throw new IllegalArgumentException("Unknown field: " + parsed.field);
+      }
+      keys.add(parsed);
+    }
 
-              OpHandler opHandler = DEFAULT_HANDLERS.get(operator);
+    List<Object> conds = new ArrayList<>(map.size());
+    for (ParsedKey key : keys) {
+      conds.add(key.handler.create(key.variable, key.operator, map.get(key.key)));
+    }
+    return allOf(conds);
+  }
 
-              if (opHandler == null) {
-                throw new IllegalArgumentException("Unknown operator: " + operator);
-              }
+  private static ParsedKey parseKey(String key) {
+    ParsedKey parsed = PARSED_KEYS.get(key);
+    if (parsed != null) return parsed;
 
-              return opHandler.create(fieldName, operator, e.getValue());
-            })
-        .reduce(ICond::and)
-        .orElseThrow(() -> new IllegalArgumentException("No conditions found"));
+    parsed = splitKey(key);
+    if (PARSED_KEYS.size() >= MAX_CACHED_KEYS) PARSED_KEYS.clear();
+    PARSED_KEYS.put(key, parsed);
+    return parsed;
   }
 
-  private static Map.Entry<String, String> splitKey(String name) {
+  private static ParsedKey splitKey(String name) {
 
     String[] split = name.split("\\.");
     if (split.length == 1) {
-      return new AbstractMap.SimpleEntry<>("#" + name, "eq");
+      return new ParsedKey(name, name, "eq");
     }
 
     // field name is second last
     String fieldName = split[split.length - 2];
     String operator = split[split.length - 1];
 
-    return new AbstractMap.SimpleEntry<>("#" + fieldName, operator);
+    return new ParsedKey(name, fieldName, operator);
+  }
+
+  private static class ParsedKey {
+    private final String key;
+    private final String field;
+    private final String variable;
+    private final String operator;
+    private final OpHandler handler;
+
+    private ParsedKey(String key, String field, String operator) {
+      OpHandler handler = DEFAULT_HANDLERS.get(operator);
+      if (handler == null) {
+        throw new IllegalArgumentException("Unknown operator: " + operator);
+      }
+      this.key = key;
+      this.field = field;
+      this.variable = "#" + field;
+      this.operator = operator;
+      this.handler = handler;
+    }
   }
 
   static {
@@ -2,10 +2,11 @@ package io.github.kayr.ezyquery.api.cnd;
 
 import io.github.kayr.ezyquery.ast.BinaryExpr;
 import io.github.kayr.ezyquery.ast.EzyExpr;
+import io.github.kayr.ezyquery.ast.JunctionExpr;
 import io.github.kayr.ezyquery.ast.ParensExpr;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
+import java.util.stream.Collectors;
 
 @lombok.RequiredArgsConstructor
 public class Conds implements ICond {
@@ -15,12 +16,11 @@ public class Conds implements ICond {
 
   @Override
   public EzyExpr asExpr() {
-    Optional<EzyExpr> reduce =
-        cnds.stream()
-            .map(ICond::expr)
-            .reduce((left, right) -> new BinaryExpr(left, right, operator));
-    EzyExpr condition = reduce.orElseThrow(() -> new IllegalStateException("Conditions is empty"));
-    return new ParensExpr(condition);
+    if (cnds.isEmpty()) throw new IllegalStateException("Conditions is empty");
+    if (cnds.size() == 1) return new ParensExpr(ICond.expr(cnds.get(0)));
+
+    List<EzyExpr> exprs = cnds.stream().map(ICond::expr).collect(Collectors.toList());
+    return new ParensExpr(new JunctionExpr(operator, exprs));
   }
 
   public static Conds andAll(Object... cond) {
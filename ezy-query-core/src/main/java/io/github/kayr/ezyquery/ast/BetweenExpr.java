@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 
 @AllArgsConstructor
 @lombok.Getter
+@lombok.EqualsAndHashCode
 public class BetweenExpr implements EzyExpr {
   private EzyExpr left;
   private EzyExpr start;
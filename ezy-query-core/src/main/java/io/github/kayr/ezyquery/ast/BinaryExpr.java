@@ -3,6 +3,7 @@ package io.github.kayr.ezyquery.ast;
 // e.g 1 + 8 , 1  and B
 @lombok.AllArgsConstructor
 @lombok.Getter
+@lombok.EqualsAndHashCode
 public class BinaryExpr implements EzyExpr {
 
   private EzyExpr left;
@@ -3,6 +3,7 @@ package io.github.kayr.ezyquery.ast;
 import java.util.List;
 
 @lombok.Getter
+@lombok.EqualsAndHashCode
 public class InExpr implements EzyExpr {
   // consider turning this into a binary expression
   private final boolean not;
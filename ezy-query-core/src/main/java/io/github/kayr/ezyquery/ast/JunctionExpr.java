@@ -0,0 +1,22 @@
+package io.github.kayr.ezyquery.ast;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// e.g a AND b AND c, the operator is either AND or OR
+@lombok.AllArgsConstructor
+@lombok.Getter
+@lombok.EqualsAndHashCode
+public class JunctionExpr implements EzyExpr {
+
+  private BinaryExpr.Op operator;
+  private List<EzyExpr> exprs;
+
+  public String toString() {
+    return asString();
+  }
+
+  private String asString() {
+    return exprs.stream().map(String::valueOf).collect(Collectors.joining(" " + operator + " "));
+  }
+}
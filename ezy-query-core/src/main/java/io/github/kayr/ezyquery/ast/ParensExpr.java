@@ -2,6 +2,7 @@ package io.github.kayr.ezyquery.ast;
 
 @lombok.Getter
 @lombok.AllArgsConstructor
+@lombok.EqualsAndHashCode
 public class ParensExpr implements EzyExpr {
 
   private EzyExpr expr;
@@ -2,6 +2,7 @@ package io.github.kayr.ezyquery.ast;
 
 @lombok.AllArgsConstructor
 @lombok.Getter
+@lombok.EqualsAndHashCode
 public class UnaryExpr implements EzyExpr {
 
   private Type type;
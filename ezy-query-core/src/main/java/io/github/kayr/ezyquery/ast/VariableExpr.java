@@ -1,6 +1,7 @@
 package io.github.kayr.ezyquery.ast;
 
 @lombok.AllArgsConstructor
+@lombok.EqualsAndHashCode
 public class VariableExpr implements EzyExpr {
 
   private String variable;
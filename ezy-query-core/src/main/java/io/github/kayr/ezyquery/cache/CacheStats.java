@@ -0,0 +1,20 @@
+package io.github.kayr.ezyquery.cache;
+
+/** A snapshot of the {@link QueryCache} counters. */
+@lombok.Getter
+@lombok.ToString
+@lombok.AllArgsConstructor(access = lombok.AccessLevel.PACKAGE)
+public class CacheStats {
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+  private final int size;
+
+  /** The total number of cached rows. */
+  private final long weight;
+
+  public double hitRate() {
+    long requests = hits + misses;
+    return requests == 0 ? 1.0 : (double) hits / requests;
+  }
+}
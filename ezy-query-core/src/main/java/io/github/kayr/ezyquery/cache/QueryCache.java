@@ -0,0 +1,234 @@
+package io.github.kayr.ezyquery.cache;
+
+import io.github.kayr.ezyquery.parser.QueryAndParams;
+import io.github.kayr.ezyquery.util.SingleFlight;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import lombok.NonNull;
+
+/**
+ * A bounded cache of query results keyed by the final sql, params and result type. Entries expire
+ * after a time to live and are tagged with the tables the query reads from so that they can be
+ * invalidated when those tables change.
+ *
+ * <p>Concurrent misses for the same key are collapsed into one database call. The state is guarded
+ * by a lock rather than {@code synchronized} so that waiting virtual threads do not pin their
+ * carrier.
+ *
+ * <pre>{@code
+ * QueryCache cache = QueryCache.builder().maxEntries(500).ttl(Duration.ofMinutes(5)).build();
+ * EzySql ezySql = EzySql.withDataSource(ds).withCache(cache);
+ * ...
+ * cache.invalidate("offices");
+ * }</pre>
+ */
+public class QueryCache {
+
+  private final int maxEntries;
+  private final long maxWeight;
+  private final long ttlNanos;
+  private final LongSupplier clock;
+
+  private final LinkedHashMap<QueryKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final SingleFlight<QueryKey, Object> loads = new SingleFlight<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private long weight = 0;
+  private long invalidations = 0;
+
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  private QueryCache(Builder builder) {
+    this.maxEntries = builder.maxEntries;
+    this.maxWeight = builder.maxWeight;
+    this.ttlNanos = builder.ttl.toNanos();
+    this.clock = builder.clock;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the cached result or loads it. Lists weigh as many as their rows, everything else
+   * weighs one.
+   *
+   * @param resultType anything that identifies how rows are mapped e.g the row mapper
+   * @param tables the tables the query reads from, used for invalidation
+   */
+  public <T> T get(
+      QueryAndParams query, Object resultType, Collection<String> tables, Supplier<T> loader) {
+    return get(QueryKey.of(query, resultType), tables, loader);
+  }
+
+  /** See {@link #get(QueryAndParams, Object, Collection, Supplier)} */
+  @SuppressWarnings("unchecked")
+  public <T> T get(QueryKey key, Collection<String> tables, Supplier<T> loader) {
+    lock.lock();
+    try {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.expiresAt - clock.getAsLong() > 0) {
+        hits++;
+        return (T) entry.value;
+      }
+      if (entry != null) remove(key);
+      misses++;
+    } finally {
+      lock.unlock();
+    }
+
+    return (T) loads.execute(key, () -> load(key, tables, loader));
+  }
+
+  private Object load(QueryKey key, Collection<String> tables, Supplier<?> loader) {
+    long invalidationsBefore;
+    lock.lock();
+    try {
+      invalidationsBefore = invalidations;
+    } finally {
+      lock.unlock();
+    }
+
+    Object value = loader.get();
+
+    lock.lock();
+    try {
+      // a table may have changed while we were loading, do not keep what could be stale
+      if (invalidations == invalidationsBefore) {
+        put(key, new Entry(value, weigh(value), clock.getAsLong() + ttlNanos, tags(tables)));
+      }
+    } finally {
+      lock.unlock();
+    }
+    return value;
+  }
+
+  private void put(QueryKey key, Entry entry) {
+    if (entry.weight > maxWeight) return;
+
+    remove(key);
+    entries.put(key, entry);
+    weight += entry.weight;
+
+    Iterator<Map.Entry<QueryKey, Entry>> eldest = entries.entrySet().iterator();
+    while (entries.size() > maxEntries || weight > maxWeight) {
+      weight -= eldest.next().getValue().weight;
+      eldest.remove();
+      evictions++;
+    }
+  }
+
+  private void remove(QueryKey key) {
+    Entry removed = entries.remove(key);
+    if (removed != null) weight -= removed.weight;
+  }
+
+  /** Removes the results of all queries that read from any of the given tables. */
+  public void invalidate(String... tables) {
+    Set<String> tags = tags(Arrays.asList(tables));
+    lock.lock();
+    try {
+      invalidations++;
+      Iterator<Entry> it = entries.values().iterator();
+      while (it.hasNext()) {
+        Entry entry = it.next();
+        if (!Collections.disjoint(entry.tags, tags)) {
+          weight -= entry.weight;
+          it.remove();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void invalidateAll() {
+    lock.lock();
+    try {
+      invalidations++;
+      entries.clear();
+      weight = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public CacheStats stats() {
+    lock.lock();
+    try {
+      return new CacheStats(hits, misses, evictions, entries.size(), weight);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static long weigh(Object value) {
+    if (value instanceof Collection) return Math.max(1, ((Collection<?>) value).size());
+    return 1;
+  }
+
+  private static Set<String> tags(Collection<String> tables) {
+    Set<String> tags = new HashSet<>();
+    for (String table : tables) {
+      tags.add(table.toLowerCase(Locale.ROOT));
+    }
+    return tags;
+  }
+
+  public static class Builder {
+    private int maxEntries = 1_000;
+    private long maxWeight = 100_000;
+    private Duration ttl = Duration.ofMinutes(5);
+    private LongSupplier clock = System::nanoTime;
+
+    private Builder() {}
+
+    public Builder maxEntries(int maxEntries) {
+      if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be greater than 0");
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /** The maximum total number of cached rows. */
+    public Builder maxWeight(long maxWeight) {
+      if (maxWeight <= 0) throw new IllegalArgumentException("maxWeight must be greater than 0");
+      this.maxWeight = maxWeight;
+      return this;
+    }
+
+    public Builder ttl(@NonNull Duration ttl) {
+      if (ttl.isNegative() || ttl.isZero()) {
+        throw new IllegalArgumentException("ttl must be greater than 0");
+      }
+      this.ttl = ttl;
+      return this;
+    }
+
+    Builder clock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    public QueryCache build() {
+      return new QueryCache(this);
+    }
+  }
+
+  private static class Entry {
+    private final Object value;
+    private final long weight;
+    private final long expiresAt;
+    private final Set<String> tags;
+
+    private Entry(Object value, long weight, long expiresAt, Set<String> tags) {
+      this.value = value;
+      this.weight = weight;
+      this.expiresAt = expiresAt;
+      this.tags = tags;
+    }
+  }
+}
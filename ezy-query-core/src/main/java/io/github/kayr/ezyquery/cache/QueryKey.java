@@ -0,0 +1,68 @@
+package io.github.kayr.ezyquery.cache;
+
+import io.github.kayr.ezyquery.parser.QueryAndParams;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Identifies an execution of a query by its final sql, params, operation and result type. Array
+ * params are compared by their content.
+ */
+public final class QueryKey {
+  private final String sql;
+  private final Object[] params;
+  private final String operation;
+  private final Object resultType;
+  private final int hash;
+
+  private QueryKey(String sql, Object[] params, String operation, Object resultType) {
+    this.sql = sql;
+    this.params = params;
+    this.operation = operation;
+    this.resultType = resultType;
+    this.hash = Objects.hash(sql, Arrays.deepHashCode(params), operation, resultType);
+  }
+
+  /**
+   * @param resultType anything that identifies how rows are mapped e.g the result class
+   */
+  public static QueryKey of(QueryAndParams query, Object resultType) {
+    return of(query, "query", resultType);
+  }
+
+  /**
+   * @param operation what is done with the rows e.g {@code "list"} or {@code "one"}, the same sql
+   *     gives a different result for each
+   * @param resultType anything that identifies how rows are mapped e.g the result class
+   */
+  public static QueryKey of(QueryAndParams query, String operation, Object resultType) {
+    return new QueryKey(query.getSql(), query.getParams().toArray(), operation, resultType);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof QueryKey)) return false;
+    QueryKey key = (QueryKey) o;
+    return sql.equals(key.sql)
+        && Arrays.deepEquals(params, key.params)
+        && Objects.equals(operation, key.operation)
+        && Objects.equals(resultType, key.resultType);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return "QueryKey{sql='"
+        + sql
+        + "', params="
+        + Arrays.deepToString(params)
+        + ", operation="
+        + operation
+        + '}';
+  }
+}
@@ -0,0 +1,12 @@
+package io.github.kayr.ezyquery.dialect;
+
+/** Generic sql that works with most databases that support {@code LIMIT ... OFFSET ...} */
+public class DefaultDialect implements Dialect {
+
+  static final DefaultDialect INSTANCE = new DefaultDialect();
+
+  @Override
+  public String toString() {
+    return "DefaultDialect";
+  }
+}
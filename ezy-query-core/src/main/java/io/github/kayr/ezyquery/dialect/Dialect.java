@@ -0,0 +1,126 @@
+package io.github.kayr.ezyquery.dialect;
+
+import io.github.kayr.ezyquery.parser.QueryAndParams;
+import io.github.kayr.ezyquery.sql.Zql;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Handles the parts of the generated sql that differ between databases. The default methods render
+ * generic sql i.e {@code LIMIT ? OFFSET ?} and double quoted aliases.
+ *
+ * <p>Limit and offset are bound as parameters so that every page of a query has the same sql text,
+ * which lets the driver and the database re-use the prepared statement and its plan.
+ *
+ * <p>A dialect is selected per {@link io.github.kayr.ezyquery.EzySql} instance.
+ */
+public interface Dialect {
+
+  /** Quotes an identifier e.g the column aliases in the select list. */
+  default String quote(String identifier) {
+    return "\"" + identifier + "\"";
+  }
+
+  /**
+   * Rendered right after the SELECT keyword of a page. Used by databases that limit rows in the
+   * select list e.g {@code TOP n}, keep the sql the same for every page.
+   */
+  default QueryAndParams topClause(Integer limit, Long offset) {
+    return QueryAndParams.of("");
+  }
+
+  /**
+   * Rendered at the end of the query after the ORDER BY.
+   *
+   * @param ordered whether the query already has an ORDER BY clause
+   */
+  default QueryAndParams paginationClause(Integer limit, Long offset, boolean ordered) {
+    return QueryAndParams.of("LIMIT ? OFFSET ?", Arrays.<Object>asList(limit, offset));
+  }
+
+  /**
+   * Rendered right after the SELECT keyword of a capped count, see {@link
+   * io.github.kayr.ezyquery.api.EzyCriteria#countAtMost(int)}.
+   */
+  default QueryAndParams countCapTopClause(Integer cap) {
+    return QueryAndParams.of("");
+  }
+
+  /** Rendered at the end of a capped count, before it is wrapped with {@link #wrapCount}. */
+  default QueryAndParams countCapClause(Integer cap) {
+    return paginationClause(cap, 0L, false);
+  }
+
+  /** Wraps a query so that its rows are counted instead of returned. */
+  default QueryAndParams wrapCount(QueryAndParams query) {
+    return QueryAndParams.of("SELECT COUNT(*) FROM (\n").append(query).append("\n) ezy_count");
+  }
+
+  /**
+   * Whether IN lists can be bound as a single array parameter. The generic dialect cannot tell so
+   * it leaves the decision to the caller.
+   */
+  default boolean supportsArrayParams() {
+    return true;
+  }
+
+  /**
+   * Reads the query planner's estimate of the number of rows the query returns. Returns empty if
+   * the database cannot estimate, then callers fall back to an exact count.
+   */
+  default Optional<Long> estimateCount(Zql zql, QueryAndParams query) {
+    return Optional.empty();
+  }
+
+  /**
+   * The statement fetch size that makes the driver read about {@code rows} rows at a time instead
+   * of the whole result, used when rows are streamed e.g exports.
+   */
+  default int fetchSize(int rows) {
+    return rows;
+  }
+
+  /**
+   * Whether the driver only reads in batches with auto-commit off, streamed rows are then read in
+   * a read-only transaction.
+   */
+  default boolean fetchesInTransaction() {
+    return false;
+  }
+
+  /** Optimizer hints rendered after the SELECT keyword. */
+  default String selectHints(List<String> hints) {
+    if (hints.isEmpty()) return "";
+    return "/*+ " + String.join(" ", hints) + " */ ";
+  }
+
+  /** Optimizer hints rendered at the end of the query. */
+  default String queryHints(List<String> hints) {
+    return "";
+  }
+
+  static Dialect defaultDialect() {
+    return DefaultDialect.INSTANCE;
+  }
+
+  static Dialect mysql() {
+    return MySqlDialect.INSTANCE;
+  }
+
+  static Dialect postgres() {
+    return PostgresDialect.INSTANCE;
+  }
+
+  static Dialect h2() {
+    return H2Dialect.INSTANCE;
+  }
+
+  static Dialect sqlServer() {
+    return SqlServerDialect.INSTANCE;
+  }
+
+  static Dialect oracle() {
+    return OracleDialect.INSTANCE;
+  }
+}
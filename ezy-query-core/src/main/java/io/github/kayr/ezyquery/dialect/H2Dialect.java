@@ -0,0 +1,16 @@
+package io.github.kayr.ezyquery.dialect;
+
+public class H2Dialect implements Dialect {
+
+  static final H2Dialect INSTANCE = new H2Dialect();
+
+  @Override
+  public boolean supportsArrayParams() {
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "H2Dialect";
+  }
+}
@@ -0,0 +1,57 @@
+package io.github.kayr.ezyquery.dialect;
+
+import io.github.kayr.ezyquery.parser.QueryAndParams;
+import io.github.kayr.ezyquery.sql.Zql;
+import java.util.Optional;
+
+public class MySqlDialect implements Dialect {
+
+  static final MySqlDialect INSTANCE = new MySqlDialect();
+
+  /**
+   * EXPLAIN returns a row per joined table. Each row estimates how many rows it adds to the join
+   * i.e {@code rows * filtered%}, so their product estimates the rows returned.
+   */
+  @Override
+  public Optional<Long> estimateCount(Zql zql, QueryAndParams query) {
+    return zql.query(
+        "EXPLAIN " + query.getSql(),
+        query.getParams(),
+        rs -> {
+          double estimate = 1;
+          boolean found = false;
+          while (rs.next()) {
+            double rows = rs.getDouble("rows");
+            if (rs.wasNull()) continue;
+            double filtered = rs.getDouble("filtered");
+            estimate *= rows * (rs.wasNull() ? 100 : filtered) / 100;
+            found = true;
+          }
+          return found ? Optional.of(Math.round(estimate)) : Optional.<Long>empty();
+        });
+  }
+
+  @Override
+  public String quote(String identifier) {
+    return "`" + identifier + "`";
+  }
+
+  /**
+   * Connector/J reads the whole result for any other fetch size unless {@code useCursorFetch} is
+   * set, {@link Integer#MIN_VALUE} streams the rows one at a time.
+   */
+  @Override
+  public int fetchSize(int rows) {
+    return Integer.MIN_VALUE;
+  }
+
+  @Override
+  public boolean supportsArrayParams() {
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "MySqlDialect";
+  }
+}
@@ -0,0 +1,28 @@
+package io.github.kayr.ezyquery.dialect;
+
+import io.github.kayr.ezyquery.parser.QueryAndParams;
+import java.util.Arrays;
+
+/** Oracle 12c+ row limiting clause. */
+public class OracleDialect implements Dialect {
+
+  static final OracleDialect INSTANCE = new OracleDialect();
+
+  /** Every page uses the same sql, including the first one with an offset of 0. */
+  @Override
+  public QueryAndParams paginationClause(Integer limit, Long offset, boolean ordered) {
+    return QueryAndParams.of(
+        "OFFSET ? ROWS FETCH NEXT ? ROWS ONLY",
+        Arrays.<Object>asList(offset == null ? 0L : offset, limit));
+  }
+
+  @Override
+  public boolean supportsArrayParams() {
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "OracleDialect";
+  }
+}
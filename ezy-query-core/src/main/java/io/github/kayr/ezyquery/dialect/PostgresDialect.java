@@ -0,0 +1,48 @@
+package io.github.kayr.ezyquery.dialect;
+
+import io.github.kayr.ezyquery.parser.QueryAndParams;
+import io.github.kayr.ezyquery.sql.Zql;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class PostgresDialect implements Dialect {
+
+  static final PostgresDialect INSTANCE = new PostgresDialect();
+
+  // the first "Plan Rows" is for the top node of the plan
+  private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\"\\s*:\\s*([0-9.eE+]+)");
+
+  @Override
+  public Optional<Long> estimateCount(Zql zql, QueryAndParams query) {
+    String plan =
+        zql.query(
+            "EXPLAIN (FORMAT JSON) " + query.getSql(),
+            query.getParams(),
+            rs -> rs.next() ? rs.getString(1) : null);
+    return parsePlanRows(plan);
+  }
+
+  static Optional<Long> parsePlanRows(String plan) {
+    if (plan == null) return Optional.empty();
+    Matcher matcher = PLAN_ROWS.matcher(plan);
+    if (!matcher.find()) return Optional.empty();
+    return Optional.of((long) Double.parseDouble(matcher.group(1)));
+  }
+
+  /** The driver reads the whole result unless a cursor is used, which needs a transaction. */
+  @Override
+  public boolean fetchesInTransaction() {
+    return true;
+  }
+
+  @Override
+  public boolean supportsArrayParams() {
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "PostgresDialect";
+  }
+}
@@ -0,0 +1,59 @@
+package io.github.kayr.ezyquery.dialect;
+
+import io.github.kayr.ezyquery.parser.QueryAndParams;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sql Server 2012+. Every page is fetched with {@code OFFSET ... FETCH NEXT ...}, which requires an
+ * ORDER BY, so that the first page has the same sql as the rest. Capped counts use {@code TOP n}.
+ */
+public class SqlServerDialect implements Dialect {
+
+  static final SqlServerDialect INSTANCE = new SqlServerDialect();
+
+  @Override
+  public String quote(String identifier) {
+    return "[" + identifier + "]";
+  }
+
+  @Override
+  public QueryAndParams paginationClause(Integer limit, Long offset, boolean ordered) {
+    QueryAndParams orderBy = QueryAndParams.of(ordered ? "" : "ORDER BY (SELECT NULL)\n");
+    return orderBy.append(
+        "OFFSET ? ROWS FETCH NEXT ? ROWS ONLY",
+        Arrays.<Object>asList(offset == null ? 0L : offset, limit));
+  }
+
+  @Override
+  public QueryAndParams countCapTopClause(Integer cap) {
+    return QueryAndParams.of("TOP (?) ", Collections.<Object>singletonList(cap));
+  }
+
+  @Override
+  public QueryAndParams countCapClause(Integer cap) {
+    return QueryAndParams.of("");
+  }
+
+  @Override
+  public boolean supportsArrayParams() {
+    return false;
+  }
+
+  @Override
+  public String selectHints(List<String> hints) {
+    return "";
+  }
+
+  @Override
+  public String queryHints(List<String> hints) {
+    if (hints.isEmpty()) return "";
+    return "OPTION (" + String.join(", ", hints) + ")";
+  }
+
+  @Override
+  public String toString() {
+    return "SqlServerDialect";
+  }
+}
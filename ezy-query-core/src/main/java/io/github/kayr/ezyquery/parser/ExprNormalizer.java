@@ -0,0 +1,213 @@
+package io.github.kayr.ezyquery.parser;
+
+import io.github.kayr.ezyquery.ast.*;
+import java.util.*;
+
+/**
+ * Simplifies a condition before it is transpiled.
+ *
+ * <ul>
+ *   <li>Nested ANDs and ORs are flattened into one {@link JunctionExpr}.
+ *   <li>Conditions that are always true e.g {@code 1 = 1} are dropped.
+ *   <li>Repeated conditions are kept once.
+ *   <li>{@code x = a OR x = b} becomes {@code x IN (a, b)}.
+ * </ul>
+ */
+public class ExprNormalizer {
+
+  private static final EzyExpr TRUE = new SqlExpr("1 = 1", Collections.emptyList());
+
+  private ExprNormalizer() {}
+
+  public static EzyExpr normalize(EzyExpr expr) {
+    EzyExpr simplified = simplify(expr);
+    return simplified == null ? TRUE : simplified;
+  }
+
+  /** Returns null when the expression is always true. */
+  private static EzyExpr simplify(EzyExpr expr) {
+    if (isTrue(expr)) return null;
+
+    BinaryExpr.Op op = junctionOperator(expr);
+    if (op != null) return simplifyJunction(op, expr);
+
+    if (expr instanceof ParensExpr) {
+      EzyExpr inner = simplify(((ParensExpr) expr).getExpr());
+      if (inner == null) return null;
+      return inner instanceof ParensExpr ? inner : new ParensExpr(inner);
+    }
+    return expr;
+  }
+
+  private static EzyExpr simplifyJunction(BinaryExpr.Op op, EzyExpr expr) {
+    List<EzyExpr> terms = new ArrayList<>();
+    Set<EzyExpr> seen = new HashSet<>();
+    for (EzyExpr term : flatten(op, expr)) {
+      EzyExpr simplified = simplify(term);
+      if (simplified == null) {
+        // x OR true is true, x AND true is x
+        if (op == BinaryExpr.Op.OR) return null;
+        continue;
+      }
+
+      List<EzyExpr> children =
+          junctionOperator(simplified) == op
+              ? flatten(op, simplified)
+              : Collections.singletonList(simplified);
+      for (EzyExpr child : children) {
+        if (isPlain(child) && !seen.add(child)) continue;
+        terms.add(child);
+      }
+    }
+
+    if (op == BinaryExpr.Op.OR) terms = mergeIntoIn(terms);
+
+    if (terms.isEmpty()) return null;
+    if (terms.size() == 1) return terms.get(0);
+    return new ParensExpr(new JunctionExpr(op, terms));
+  }
+
+  /** The terms of an AND or OR, without recursion so long chains do not overflow the stack. */
+  private static List<EzyExpr> flatten(BinaryExpr.Op op, EzyExpr expr) {
+    List<EzyExpr> terms = new ArrayList<>();
+    Deque<EzyExpr> pending = new ArrayDeque<>();
+    pending.push(expr);
+    while (!pending.isEmpty()) {
+      EzyExpr current = pending.pop();
+      EzyExpr unwrapped = unwrapParens(current);
+      if (unwrapped instanceof JunctionExpr && ((JunctionExpr) unwrapped).getOperator() == op) {
+        List<EzyExpr> exprs = ((JunctionExpr) unwrapped).getExprs();
+        for (int i = exprs.size() - 1; i >= 0; i--) {
+          pending.push(exprs.get(i));
+        }
+      } else if (unwrapped instanceof BinaryExpr
+          && ((BinaryExpr) unwrapped).getOperator() == op) {
+        pending.push(((BinaryExpr) unwrapped).getRight());
+        pending.push(((BinaryExpr) unwrapped).getLeft());
+      } else {
+        terms.add(current);
+      }
+    }
+    return terms;
+  }
+
+  private static List<EzyExpr> mergeIntoIn(List<EzyExpr> terms) {
+    Map<EzyExpr, InGroup> groups = new LinkedHashMap<>();
+    for (EzyExpr term : terms) {
+      EzyExpr variable = inVariable(term);
+      if (variable != null) groups.computeIfAbsent(variable, v -> new InGroup()).add(term);
+    }
+
+    List<EzyExpr> merged = new ArrayList<>(terms.size());
+    for (EzyExpr term : terms) {
+      EzyExpr variable = inVariable(term);
+      if (variable == null) {
+        merged.add(term);
+        continue;
+      }
+
+      InGroup group = groups.remove(variable);
+      if (group == null) continue; // already merged into the first term
+      if (group.terms == 1) merged.add(term);
+      else merged.add(new InExpr(variable, new ArrayList<>(group.values)));
+    }
+    return merged;
+  }
+
+  /** The variable of {@code x = const} or {@code x IN (consts)}, otherwise null. */
+  private static EzyExpr inVariable(EzyExpr expr) {
+    if (expr instanceof BinaryExpr) {
+      BinaryExpr binary = (BinaryExpr) expr;
+      if (binary.getOperator() == BinaryExpr.Op.EQ
+          && binary.getLeft() instanceof VariableExpr
+          && binary.getRight() instanceof ConstExpr) {
+        return binary.getLeft();
+      }
+    }
+    if (expr instanceof InExpr) {
+      InExpr in = (InExpr) expr;
+      if (!in.isNot()
+          && in.getLeft() instanceof VariableExpr
+          && !in.getCandidates().isEmpty()
+          && in.getCandidates().stream().allMatch(c -> c instanceof ConstExpr)) {
+        return in.getLeft();
+      }
+    }
+    return null;
+  }
+
+  private static boolean isTrue(EzyExpr expr) {
+    if (expr instanceof ParensExpr) return isTrue(((ParensExpr) expr).getExpr());
+
+    if (expr instanceof SqlExpr) {
+      SqlExpr sql = (SqlExpr) expr;
+      return sql.getParams().isEmpty() && sql.getSql().trim().equals("1 = 1");
+    }
+
+    if (expr instanceof BinaryExpr) {
+      BinaryExpr binary = (BinaryExpr) expr;
+      if (binary.getOperator() != BinaryExpr.Op.EQ) return false;
+      if (!(binary.getLeft() instanceof ConstExpr && binary.getRight() instanceof ConstExpr)) {
+        return false;
+      }
+      Object left = ((ConstExpr) binary.getLeft()).getValue();
+      return left != null && left.equals(((ConstExpr) binary.getRight()).getValue());
+    }
+
+    // an empty NOT IN matches everything
+    if (expr instanceof InExpr) {
+      InExpr in = (InExpr) expr;
+      return in.isNot() && in.getCandidates().isEmpty();
+    }
+    return false;
+  }
+
+  private static BinaryExpr.Op junctionOperator(EzyExpr expr) {
+    EzyExpr unwrapped = unwrapParens(expr);
+    BinaryExpr.Op op = null;
+    if (unwrapped instanceof JunctionExpr) op = ((JunctionExpr) unwrapped).getOperator();
+    if (unwrapped instanceof BinaryExpr) op = ((BinaryExpr) unwrapped).getOperator();
+    return op == BinaryExpr.Op.AND || op == BinaryExpr.Op.OR ? op : null;
+  }
+
+  private static EzyExpr unwrapParens(EzyExpr expr) {
+    while (expr instanceof ParensExpr) {
+      expr = ((ParensExpr) expr).getExpr();
+    }
+    return expr;
+  }
+
+  /** Raw sql is never treated as a duplicate, it may not give the same result twice. */
+  private static boolean isPlain(EzyExpr expr) {
+    if (expr instanceof VariableExpr || expr instanceof ConstExpr) return true;
+    if (expr instanceof ParensExpr) return isPlain(((ParensExpr) expr).getExpr());
+    if (expr instanceof UnaryExpr) return isPlain(((UnaryExpr) expr).getLeft());
+    if (expr instanceof BinaryExpr) {
+      BinaryExpr binary = (BinaryExpr) expr;
+      return isPlain(binary.getLeft()) && isPlain(binary.getRight());
+    }
+    if (expr instanceof BetweenExpr) {
+      BetweenExpr between = (BetweenExpr) expr;
+      return isPlain(between.getLeft()) && isPlain(between.getStart()) && isPlain(between.getEnd());
+    }
+    if (expr instanceof InExpr) {
+      InExpr in = (InExpr) expr;
+      return isPlain(in.getLeft()) && in.getCandidates().stream().allMatch(ExprNormalizer::isPlain);
+    }
+    if (expr instanceof JunctionExpr) {
+      return ((JunctionExpr) expr).getExprs().stream().allMatch(ExprNormalizer::isPlain);
+    }
+    return false;
+  }
+
+  private static class InGroup {
+    private int terms = 0;
+    private final Set<EzyExpr> values = new LinkedHashSet<>();
+
+    private void add(EzyExpr term) {
+      terms++;
+      if (term instanceof InExpr) values.addAll(((InExpr) term).getCandidates());
+      else values.add(((BinaryExpr) term).getRight());
+    }
+  }
+}
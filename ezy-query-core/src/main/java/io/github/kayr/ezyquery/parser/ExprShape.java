@@ -0,0 +1,118 @@
+package io.github.kayr.ezyquery.parser;
+
+import io.github.kayr.ezyquery.ast.*;
+import io.github.kayr.ezyquery.util.Elf;
+import io.github.kayr.ezyquery.sql.SqlArray;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The shape of a condition, its structure without the constant values. Conditions with the same
+ * shape transpile to the same sql, the constants are the params in the order the transpiler binds
+ * them. With array params an IN list that is bound as one array has its own shape, whatever the
+ * number of values.
+ */
+final class ExprShape {
+
+  private final StringBuilder key = new StringBuilder();
+  private final List<Object> params = new ArrayList<>();
+  private final boolean arrayParams;
+
+  private ExprShape(boolean arrayParams) {
+    this.arrayParams = arrayParams;
+  }
+
+  static ExprShape of(EzyExpr expr) {
+    return of(expr, false);
+  }
+
+  static ExprShape of(EzyExpr expr, boolean arrayParams) {
+    ExprShape shape = new ExprShape(arrayParams);
+    shape.visit(expr);
+    return shape;
+  }
+
+  String getKey() {
+    return key.toString();
+  }
+
+  List<Object> getParams() {
+    return params;
+  }
+
+  private void visit(EzyExpr expr) {
+    if (expr instanceof ConstExpr) {
+      key.append('?');
+      params.add(((ConstExpr) expr).getValue());
+    } else if (expr instanceof VariableExpr) {
+      text('v', ((VariableExpr) expr).getVariable());
+    } else if (expr instanceof BinaryExpr) {
+      BinaryExpr binaryExpr = (BinaryExpr) expr;
+      key.append("b").append(binaryExpr.getOperator().name()).append('(');
+      visit(binaryExpr.getLeft());
+      visit(binaryExpr.getRight());
+      key.append(')');
+    } else if (expr instanceof JunctionExpr) {
+      JunctionExpr junctionExpr = (JunctionExpr) expr;
+      key.append("j").append(junctionExpr.getOperator().name()).append('(');
+      for (EzyExpr term : junctionExpr.getExprs()) {
+        visit(term);
+      }
+      key.append(')');
+    } else if (expr instanceof InExpr) {
+      visitIn((InExpr) expr);
+    } else if (expr instanceof BetweenExpr) {
+      BetweenExpr betweenExpr = (BetweenExpr) expr;
+      key.append(betweenExpr.isNot() ? "!r(" : "r(");
+      visit(betweenExpr.getLeft());
+      visit(betweenExpr.getStart());
+      visit(betweenExpr.getEnd());
+      key.append(')');
+    } else if (expr instanceof UnaryExpr) {
+      UnaryExpr unaryExpr = (UnaryExpr) expr;
+      key.append("u").append(unaryExpr.getType().name()).append('(');
+      visit(unaryExpr.getLeft());
+      key.append(')');
+    } else if (expr instanceof ParensExpr) {
+      key.append("p(");
+      visit(((ParensExpr) expr).getExpr());
+      key.append(')');
+    } else if (expr instanceof SqlExpr) {
+      SqlExpr sqlExpr = (SqlExpr) expr;
+      text('s', sqlExpr.getSql());
+      key.append(sqlExpr.getParams().size());
+      params.addAll(sqlExpr.getParams());
+    } else {
+      throw new IllegalArgumentException("No shape for " + expr.getClass());
+    }
+  }
+
+  private void visitIn(InExpr inExpr) {
+    key.append(inExpr.isNot() ? "!i" : "i");
+    // an empty IN is transpiled to a constant condition without its left side
+    if (Elf.isEmpty(inExpr.getCandidates())) {
+      key.append("()");
+      return;
+    }
+    Optional<SqlArray> array = arrayParams ? EzySqlTranspiler.toSqlArray(inExpr) : Optional.empty();
+    if (array.isPresent()) {
+      key.append("a(");
+      visit(inExpr.getLeft());
+      key.append(')');
+      params.add(array.get());
+      return;
+    }
+    key.append('(');
+    visit(inExpr.getLeft());
+    for (EzyExpr candidate : inExpr.getCandidates()) {
+      visit(candidate);
+    }
+    key.append(')');
+  }
+
+  /** Length prefixed so that names and sql can not run into the rest of the key. */
+  private void text(char type, String text) {
+    key.append(type).append(text.length()).append(':').append(text);
+  }
+}
@@ -2,6 +2,7 @@ package io.github.kayr.ezyquery.parser;
 
 import io.github.kayr.ezyquery.api.Field;
 import io.github.kayr.ezyquery.ast.*;
+import io.github.kayr.ezyquery.sql.SqlArray;
 import io.github.kayr.ezyquery.util.Elf;
 import java.util.*;
 import java.util.function.Function;
@@ -11,16 +12,59 @@ public class EzySqlTranspiler {
   private final EzyExpr expr;
   private final List<Field<?>> fields;
 
+  /** Fields by alias, built on the first lookup unless given. */
+  private Map<String, Field<?>> fieldIndex;
+
+  /** When true IN lists are bound as one array parameter e.g {@code x = ANY(?)} */
+  private final boolean arrayParams;
+
+  /** Aliases of the fields referenced by the expression, collected while transpiling. */
+  private final Set<String> referencedFields = new LinkedHashSet<>();
+
+  private boolean rawSql = false;
+
   public EzySqlTranspiler(EzyExpr expr, List<Field<?>> fields) {
+    this(expr, fields, false);
+  }
+
+  public EzySqlTranspiler(EzyExpr expr, List<Field<?>> fields, boolean arrayParams) {
     this.expr = expr;
     this.fields = fields;
+    this.arrayParams = arrayParams;
     initHandlers();
   }
 
+  /**
+   * @param fieldIndex fields by alias e.g from {@link #indexFields(List)}, for callers that
+   *     transpile against the same fields many times
+   */
+  public EzySqlTranspiler(EzyExpr expr, Map<String, Field<?>> fieldIndex) {
+    this(expr, fieldIndex, false);
+  }
+
+  public EzySqlTranspiler(EzyExpr expr, Map<String, Field<?>> fieldIndex, boolean arrayParams) {
+    this(expr, Collections.emptyList(), arrayParams);
+    this.fieldIndex = fieldIndex;
+  }
+
+  /** An unmodifiable index of the fields by alias, the first field wins for repeated aliases. */
+  public static Map<String, Field<?>> indexFields(List<Field<?>> fields) {
+    Map<String, Field<?>> index = new HashMap<>(fields.size() * 2);
+    for (Field<?> field : fields) {
+      index.putIfAbsent(field.getAlias(), field);
+    }
+    return Collections.unmodifiableMap(index);
+  }
+
   public static QueryAndParams transpile(List<Field<?>> fields, EzyExpr ezyExpr) {
     return new EzySqlTranspiler(ezyExpr, fields).transpile();
   }
 
+  public static QueryAndParams transpile(
+      List<Field<?>> fields, EzyExpr ezyExpr, boolean arrayParams) {
+    return new EzySqlTranspiler(ezyExpr, fields, arrayParams).transpile();
+  }
+
   public static QueryAndParams transpile(List<Field<?>> fields, String sql) {
     return transpile(fields, ExprParser.parseExpr(sql));
   }
@@ -76,6 +120,24 @@ public class EzySqlTranspiler {
               .append(right);
         });
 
+    register(
+        JunctionExpr.class,
+        junctionExpr -> {
+          // built in one pass, junctions can have thousands of terms
+          String separator = " " + junctionExpr.getOperator().symbol() + " ";
+          StringBuilder sql = new StringBuilder();
+          List<Object> params = new ArrayList<>();
+          boolean first = true;
+          for (EzyExpr expr : junctionExpr.getExprs()) {
+            if (!first) sql.append(separator);
+            QueryAndParams part = transpile(expr);
+            sql.append(part.getSql());
+            params.addAll(part.getParams());
+            first = false;
+          }
+          return QueryAndParams.of(sql.toString(), params);
+        });
+
     register(
         InExpr.class,
         inExpr -> {
@@ -86,6 +148,12 @@ public class EzySqlTranspiler {
 
           QueryAndParams left = transpile(inExpr.getLeft());
 
+          Optional<SqlArray> array = arrayParams ? toSqlArray(inExpr) : Optional.empty();
+          if (array.isPresent()) {
+            String operator = inExpr.isNot() ? " <> ALL(?)" : " = ANY(?)";
+            return left.append(operator, Collections.<Object>singletonList(array.get()));
+          }
+
           if (inExpr.isNot()) {
             left = left.append(" NOT IN (");
           } else {
@@ -133,6 +201,7 @@ public class EzySqlTranspiler {
           }
 
           Field<?> field = fieldResult.get();
+          referencedFields.add(field.getAlias());
 
           String sqlField = field.getSqlField();
           if (field.getExpressionType() == Field.ExpressionType.BINARY) {
@@ -148,11 +217,36 @@ public class EzySqlTranspiler {
           return QueryAndParams.of("(").append(sqlExpr).append(")");
         });
 
-    register(SqlExpr.class, sqlExpr -> QueryAndParams.of(sqlExpr.getSql(), sqlExpr.getParams()));
+    register(
+        SqlExpr.class,
+        sqlExpr -> {
+          rawSql = true;
+          return QueryAndParams.of(sqlExpr.getSql(), sqlExpr.getParams());
+        });
+  }
+
+  public Set<String> getReferencedFields() {
+    return Collections.unmodifiableSet(referencedFields);
+  }
+
+  /** Whether the expression contains raw sql, which may reference any column. */
+  public boolean hasRawSql() {
+    return rawSql;
+  }
+
+  /** The candidates as one array, empty when they are not all constants of one type. */
+  static Optional<SqlArray> toSqlArray(InExpr inExpr) {
+    List<Object> values = new ArrayList<>(inExpr.getCandidates().size());
+    for (EzyExpr candidate : inExpr.getCandidates()) {
+      if (!(candidate instanceof ConstExpr)) return Optional.empty();
+      values.add(((ConstExpr) candidate).getValue());
+    }
+    return SqlArray.tryCreate(values);
   }
 
   private Optional<Field<?>> findField(String alias) {
-    return fields.stream().filter(f -> f.getAlias().equals(alias)).findFirst();
+    if (fieldIndex == null) fieldIndex = indexFields(fields);
+    return Optional.ofNullable(fieldIndex.get(alias));
   }
 
   private final Map<Class<? extends EzyExpr>, Function<? extends EzyExpr, QueryAndParams>>
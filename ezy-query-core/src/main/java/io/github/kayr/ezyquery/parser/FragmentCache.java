@@ -0,0 +1,63 @@
+package io.github.kayr.ezyquery.parser;
+
+import io.github.kayr.ezyquery.api.Field;
+import io.github.kayr.ezyquery.ast.EzyExpr;
+import io.github.kayr.ezyquery.sql.SqlArray;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transpiles conditions against a fixed list of fields and keeps the sql by the shape of the
+ * condition, so a condition that only differs in its values is not transpiled again. Once full new
+ * shapes are transpiled but not kept.
+ */
+public final class FragmentCache {
+
+  static final int MAX_SHAPES = 256;
+
+  private final Map<String, Field<?>> fieldIndex;
+  private final Map<String, String> sqlByShape = new ConcurrentHashMap<>();
+
+  public FragmentCache(Map<String, Field<?>> fieldIndex) {
+    this.fieldIndex = fieldIndex;
+  }
+
+  public QueryAndParams transpile(EzyExpr expr) {
+    return transpile(expr, false);
+  }
+
+  /**
+   * @param arrayParams bind IN lists as one array, see {@link EzySqlTranspiler}. The lists that
+   *     become arrays have their own shape, so one sql is kept for any number of values.
+   */
+  public QueryAndParams transpile(EzyExpr expr, boolean arrayParams) {
+    ExprShape shape = ExprShape.of(expr, arrayParams);
+    String key = shape.getKey();
+    String sql = sqlByShape.get(key);
+    if (sql != null) return QueryAndParams.of(sql, shape.getParams());
+
+    QueryAndParams query = new EzySqlTranspiler(expr, fieldIndex, arrayParams).transpile();
+    if (sqlByShape.size() < MAX_SHAPES && sameParams(query.getParams(), shape.getParams())) {
+      sqlByShape.putIfAbsent(key, query.getSql());
+    }
+    return query;
+  }
+
+  int size() {
+    return sqlByShape.size();
+  }
+
+  /** A guard that the shape binds exactly what the transpiler does. */
+  private static boolean sameParams(List<Object> transpiled, List<Object> shape) {
+    if (transpiled.size() != shape.size()) return false;
+    for (int i = 0; i < shape.size(); i++) {
+      Object value = transpiled.get(i);
+      // arrays are built from the values by both, so they are equal but not the same
+      if (value != shape.get(i) && !(value instanceof SqlArray && value.equals(shape.get(i)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
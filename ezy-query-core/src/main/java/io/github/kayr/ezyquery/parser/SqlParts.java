@@ -1,14 +1,14 @@
 package io.github.kayr.ezyquery.parser;
 
-import io.github.kayr.ezyquery.api.Field;
 import io.github.kayr.ezyquery.api.NamedCriteriaParam;
 import io.github.kayr.ezyquery.api.NamedParam;
 import io.github.kayr.ezyquery.api.NamedParamValue;
-import io.github.kayr.ezyquery.api.cnd.Cnd;
-import io.github.kayr.ezyquery.api.cnd.Conds;
 import io.github.kayr.ezyquery.api.cnd.ICond;
+import io.github.kayr.ezyquery.sql.SqlArray;
 import io.github.kayr.ezyquery.util.Elf;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.AccessLevel;
@@ -37,9 +37,41 @@ public class SqlParts {
       }
     }
 
-    @lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
     class Param implements IPart {
-      private String name;
+      private final String name;
+
+      /** Where the param can take an array, null until its parts are built. */
+      private final ArrayContext context;
+
+      /**
+       * The end of the text before the param when it is the only item of an IN list e.g {@code IN
+       * (}. It is written by the param so that it can be swapped for {@code = ANY(}.
+       */
+      private final String listOpener;
+
+      private Param(String name) {
+        this(name, null, "");
+      }
+
+      private Param(String name, ArrayContext context, String listOpener) {
+        this.name = name;
+        this.context = context;
+        this.listOpener = listOpener;
+      }
+
+      /** Finds the array context from the text around the param, once. */
+      private Param inContext(String before, String after) {
+        if (context != null) return this;
+        if (!after.trim().startsWith(")")) return new Param(name, ArrayContext.NONE, "");
+
+        if (endsWith(ARRAY_OPERAND, before) != null) {
+          return new Param(name, ArrayContext.OPERAND, "");
+        }
+        Matcher inList = endsWith(IN_LIST, before);
+        if (inList == null) return new Param(name, ArrayContext.NONE, "");
+        ArrayContext context = inList.group(1) == null ? ArrayContext.IN : ArrayContext.NOT_IN;
+        return new Param(name, context, before.substring(inList.start()));
+      }
 
       public String toString() {
         return ":" + name;
@@ -52,6 +84,27 @@ public class SqlParts {
     }
   }
 
+  /** How a param that is bound as one array is rendered. */
+  private enum ArrayContext {
+    NONE(null),
+    /** {@code ANY(:p)} or {@code ALL(:p)}, the sql is kept. */
+    OPERAND(""),
+    IN("= ANY("),
+    NOT_IN("<> ALL(");
+
+    private final String opener;
+
+    ArrayContext(String opener) {
+      this.opener = opener;
+    }
+  }
+
+  private static final Pattern ARRAY_OPERAND = Pattern.compile("(?i)\\b(ANY|ALL)\\s*\\(\\s*$");
+  private static final Pattern IN_LIST = Pattern.compile("(?i)\\b(NOT\\s+)?IN\\s*\\(\\s*$");
+
+  /** Only this much of the text before a param is searched for its context. */
+  private static final int CONTEXT_CHARS = 64;
+
   private List<IPart> parts;
   private Map<String, IPart.Param> paramParts = new HashMap<>();
   private Map<String, NamedParamValue> paramValues = new HashMap<>();
@@ -81,7 +134,7 @@ public class SqlParts {
   }
 
   public SqlParts(List<IPart> parts) {
-    this.parts = Elf.copyList(parts);
+    this.parts = withArrayContext(parts);
 
     for (IPart part : parts) {
       if (part instanceof IPart.Param) {
@@ -105,20 +158,40 @@ public class SqlParts {
     return withParamValues(newValues);
   }
 
+  /**
+   * The query with the given values, they take precedence over the values already set and the
+   * last value of a param wins. The parts are walked once without copying this SqlParts.
+   */
   public QueryAndParams getQuery(List<NamedParamValue> values) {
-    return withParams(values).getQuery();
+    return getQuery(values, false);
   }
 
-  public QueryAndParams getQuery() {
-    QueryAndParams qp = QueryAndParams.of("");
-    for (IPart part : parts) {
+  /**
+   * Same as {@link #getQuery(List)}, with {@code arrayParams} a collection passed to {@code IN
+   * (:ids)} or {@code = ANY(:ids)} is bound as one {@link SqlArray} so the sql stays the same for
+   * any number of values. {@code IN (:ids)} is rendered as {@code = ANY(?)} and {@code NOT IN
+   * (:ids)} as {@code <> ALL(?)}.
+   */
+  public QueryAndParams getQuery(List<NamedParamValue> values, boolean arrayParams) {
+    StringBuilder sql = new StringBuilder();
+    List<Object> params = new ArrayList<>();
+    for (int i = 0; i < parts.size(); i++) {
+      IPart part = parts.get(i);
       if (part instanceof IPart.Text) {
-        qp = qp.append(((IPart.Text) part).sql);
+        String text = ((IPart.Text) part).sql;
+        // the opener of an IN list is written by the param that follows it
+        sql.append(text, 0, text.length() - listOpenerLength(i + 1));
       } else if (part instanceof IPart.Param) {
-        qp = toQuery((IPart.Param) part, qp);
+        QueryAndParams resolved = toQuery((IPart.Param) part, values, arrayParams);
+        sql.append(resolved.getSql());
+        params.addAll(resolved.getParams());
       }
     }
-    return qp;
+    return QueryAndParams.of(sql.toString(), params);
+  }
+
+  public QueryAndParams getQuery() {
+    return getQuery(Collections.emptyList());
   }
 
   public List<IPart> getParts() {
@@ -141,36 +214,87 @@ public class SqlParts {
     return sb.toString();
   }
 
-  private QueryAndParams toQuery(IPart.Param part, QueryAndParams leftQuery) {
-    boolean containsKey = paramValues.containsKey(part.name);
+  private QueryAndParams toQuery(
+      IPart.Param part, List<NamedParamValue> values, boolean arrayParams) {
+    NamedParamValue namedParamValue = findValue(part.name, values);
 
-    if (!containsKey) throw new IllegalStateException("Param [" + part.name + "] is not set");
+    if (namedParamValue == null) {
+      throw new IllegalStateException("Param [" + part.name + "] is not set");
+    }
 
-    NamedParamValue namedParamValue = this.paramValues.get(part.name);
     Object paramValue = namedParamValue.getValue();
     NamedParam param = namedParamValue.getParam();
 
     if (param instanceof NamedCriteriaParam) {
       Elf.assertTrue(paramValue instanceof ICond, "Param [" + part.name + "] is not a condition");
       //noinspection DataFlowIssue
-      return leftQuery.append(toQuery((ICond) paramValue, (NamedCriteriaParam) param));
+      return ((NamedCriteriaParam) param).transpile((ICond) paramValue, arrayParams);
     }
 
     List<Object> actualValue = convertToValueParam(paramValue);
-    String sql = String.join(",", Collections.nCopies(actualValue.size(), "?"));
+    if (arrayParams && part.context != ArrayContext.NONE && isMultiValued(paramValue)) {
+      Optional<SqlArray> array = SqlArray.tryCreate(actualValue);
+      if (array.isPresent()) {
+        return QueryAndParams.of(
+            part.context.opener + "?", Collections.<Object>singletonList(array.get()));
+      }
+    }
+    String sql = part.listOpener + String.join(",", Collections.nCopies(actualValue.size(), "?"));
 
-    return leftQuery.append(QueryAndParams.of(sql, actualValue));
+    return QueryAndParams.of(sql, actualValue);
   }
 
-  private static QueryAndParams toQuery(ICond cond, NamedCriteriaParam param) {
-    List<Field<?>> fields = param.getFields();
-
-    ICond finalCond = cond;
-    if (!(cond instanceof Conds)) {
-      finalCond = Cnd.andAll(cond);
+  /**
+   * Marks the params that can be bound as one array, the only item of an IN list or the operand of
+   * ANY/ALL. Only the text right next to a param is looked at, the parser already skips quotes and
+   * comments.
+   */
+  private static List<IPart> withArrayContext(List<IPart> parts) {
+    List<IPart> result = new ArrayList<>(parts);
+    for (int i = 0; i < result.size(); i++) {
+      if (!(result.get(i) instanceof IPart.Param)) continue;
+      String before = i > 0 ? textOf(result.get(i - 1)) : "";
+      String after = i + 1 < result.size() ? textOf(result.get(i + 1)) : "";
+      result.set(i, ((IPart.Param) result.get(i)).inContext(before, after));
     }
+    return result;
+  }
 
-    return EzySqlTranspiler.transpile(fields, finalCond.asExpr());
+  private static String textOf(IPart part) {
+    return part instanceof IPart.Text ? ((IPart.Text) part).sql : "";
+  }
+
+  /** The match of a pattern anchored at the end of the text, or null. */
+  private static Matcher endsWith(Pattern pattern, String text) {
+    Matcher matcher = pattern.matcher(text);
+    // transparent bounds so that \b still sees the character before the region
+    matcher.region(Math.max(0, text.length() - CONTEXT_CHARS), text.length());
+    matcher.useTransparentBounds(true);
+    return matcher.find() ? matcher : null;
+  }
+
+  private int listOpenerLength(int index) {
+    if (index >= parts.size() || !(parts.get(index) instanceof IPart.Param)) return 0;
+    return ((IPart.Param) parts.get(index)).listOpener.length();
+  }
+
+  private static boolean isMultiValued(Object value) {
+    return value instanceof Collection
+        || value instanceof Iterable
+        || value instanceof Iterator
+        || value instanceof Enumeration
+        || value instanceof Stream
+        || (value != null && value.getClass().isArray());
+  }
+
+  /** Searched from the end so that later values win, as they did when merged into a map. */
+  private NamedParamValue findValue(String name, List<NamedParamValue> values) {
+    ListIterator<NamedParamValue> iterator = values.listIterator(values.size());
+    while (iterator.hasPrevious()) {
+      NamedParamValue value = iterator.previous();
+      if (value.getParam().getName().equals(name)) return value;
+    }
+    return paramValues.get(name);
   }
 
   public String toString() {
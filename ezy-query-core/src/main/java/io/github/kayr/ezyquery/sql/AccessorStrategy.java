@@ -0,0 +1,39 @@
+package io.github.kayr.ezyquery.sql;
+
+/**
+ * Creates the objects rows are mapped to and sets their fields, see {@link Mappers#toClass(Class,
+ * AccessorStrategy)}.
+ */
+public interface AccessorStrategy {
+
+  /** Resolved once per mapper, implementations should cache the accessors of a class. */
+  <T> ClassAccessor<T> accessor(Class<T> type);
+
+  interface ClassAccessor<T> {
+    T newInstance();
+
+    /** The setter of the field with the given name, or null if there is no such field. */
+    FieldSetter setter(String fieldName);
+  }
+
+  interface FieldSetter {
+    void set(Object target, Object value);
+  }
+
+  /** Plain {@link java.lang.reflect.Field#set(Object, Object)} calls. */
+  static AccessorStrategy reflection() {
+    return ReflectionAccessorStrategy.INSTANCE;
+  }
+
+  /**
+   * Method handles created once per class, falling back to reflection for members that cannot be
+   * looked up e.g in restricted environments.
+   */
+  static AccessorStrategy methodHandles() {
+    return MethodHandleAccessorStrategy.INSTANCE;
+  }
+
+  static AccessorStrategy defaultStrategy() {
+    return methodHandles();
+  }
+}
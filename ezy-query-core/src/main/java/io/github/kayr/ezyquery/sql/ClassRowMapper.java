@@ -0,0 +1,72 @@
+package io.github.kayr.ezyquery.sql;
+
+import io.github.kayr.ezyquery.util.ClassMeta;
+import io.github.kayr.ezyquery.util.ReflectionUtil;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Maps rows to instances of a class. The setter and the typed reader of each column are resolved
+ * once per result set, not for every cell.
+ */
+class ClassRowMapper<T> implements Mappers.RowMapper<T> {
+
+  private final ClassMeta<T> meta;
+  private final AccessorStrategy.ClassAccessor<T> accessor;
+  private final AtomicReference<Binding> binding = new AtomicReference<>();
+
+  ClassRowMapper(Class<T> type, AccessorStrategy strategy) {
+    this.meta = ReflectionUtil.meta(type);
+    this.accessor = strategy.accessor(type);
+  }
+
+  @Override
+  public T mapRow(int rowIndex, List<ColumnInfo> columns, ResultSet rs) throws Exception {
+    Binding bound = bind(columns);
+    T obj = accessor.newInstance();
+    for (int i = 0; i < bound.setters.length; i++) {
+      if (bound.setters[i] != null) {
+        bound.setters[i].set(obj, bound.readers[i].read(rs, i + 1));
+      }
+    }
+    return obj;
+  }
+
+  private Binding bind(List<ColumnInfo> columns) {
+    Binding current = binding.get();
+    // the same column list is passed for every row of a result set
+    if (current != null && current.columns == columns) {
+      return current;
+    }
+
+    int size = columns.size();
+    AccessorStrategy.FieldSetter[] setters = new AccessorStrategy.FieldSetter[size];
+    ColumnReader<?>[] readers = new ColumnReader<?>[size];
+    for (int i = 0; i < size; i++) {
+      String label = columns.get(i).getLabel();
+      setters[i] = accessor.setter(label);
+      ClassMeta.FieldMeta field = meta.field(label);
+      readers[i] = ColumnReader.forType(field == null ? Object.class : field.getField().getType());
+    }
+
+    Binding bound = new Binding(columns, setters, readers);
+    binding.set(bound);
+    return bound;
+  }
+
+  private static class Binding {
+    private final List<ColumnInfo> columns;
+    private final AccessorStrategy.FieldSetter[] setters;
+    private final ColumnReader<?>[] readers;
+
+    private Binding(
+        List<ColumnInfo> columns,
+        AccessorStrategy.FieldSetter[] setters,
+        ColumnReader<?>[] readers) {
+      this.columns = columns;
+      this.setters = setters;
+      this.readers = readers;
+    }
+  }
+}
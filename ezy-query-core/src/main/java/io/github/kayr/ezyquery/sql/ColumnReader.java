@@ -0,0 +1,18 @@
+package io.github.kayr.ezyquery.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/** Reads a column with the getter that matches the type it will be stored as. */
+public interface ColumnReader<T> {
+
+  /**
+   * @param index the 1 based column index
+   */
+  T read(ResultSet rs, int index) throws SQLException;
+
+  /** A reader for the given type, {@link ResultSet#getObject(int)} for types it does not know. */
+  static ColumnReader<?> forType(Class<?> type) {
+    return ColumnReaders.forType(type);
+  }
+}
@@ -0,0 +1,105 @@
+package io.github.kayr.ezyquery.sql;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+final class ColumnReaders {
+
+  private static final ColumnReader<Object> OBJECT = ResultSet::getObject;
+
+  private static final Map<Class<?>, ColumnReader<?>> READERS = new HashMap<>();
+
+  static {
+    // primitives check wasNull() too, a NULL fails when it is stored like it did with getObject()
+    // instead of silently becoming 0/false
+    READERS.put(Long.class, nullable(ResultSet::getLong));
+    READERS.put(long.class, nullable(ResultSet::getLong));
+    READERS.put(Integer.class, nullable(ResultSet::getInt));
+    READERS.put(int.class, nullable(ResultSet::getInt));
+    READERS.put(Short.class, nullable(ResultSet::getShort));
+    READERS.put(short.class, nullable(ResultSet::getShort));
+    READERS.put(Byte.class, nullable(ResultSet::getByte));
+    READERS.put(byte.class, nullable(ResultSet::getByte));
+    READERS.put(Double.class, nullable(ResultSet::getDouble));
+    READERS.put(double.class, nullable(ResultSet::getDouble));
+    READERS.put(Float.class, nullable(ResultSet::getFloat));
+    READERS.put(float.class, nullable(ResultSet::getFloat));
+    READERS.put(Boolean.class, nullable(ResultSet::getBoolean));
+    READERS.put(boolean.class, nullable(ResultSet::getBoolean));
+
+    READERS.put(String.class, (ColumnReader<String>) ResultSet::getString);
+    READERS.put(BigDecimal.class, (ColumnReader<BigDecimal>) ResultSet::getBigDecimal);
+    READERS.put(BigInteger.class, ColumnReaders::readBigInteger);
+    READERS.put(byte[].class, (ColumnReader<byte[]>) ResultSet::getBytes);
+
+    READERS.put(java.util.Date.class, (ColumnReader<Timestamp>) ResultSet::getTimestamp);
+    READERS.put(Timestamp.class, (ColumnReader<Timestamp>) ResultSet::getTimestamp);
+    READERS.put(java.sql.Date.class, (ColumnReader<java.sql.Date>) ResultSet::getDate);
+    READERS.put(java.sql.Time.class, (ColumnReader<java.sql.Time>) ResultSet::getTime);
+
+    READERS.put(LocalDate.class, ColumnReaders::readLocalDate);
+    READERS.put(LocalDateTime.class, ColumnReaders::readLocalDateTime);
+    READERS.put(LocalTime.class, ColumnReaders::readLocalTime);
+    READERS.put(OffsetDateTime.class, typed(OffsetDateTime.class));
+  }
+
+  private ColumnReaders() {}
+
+  static ColumnReader<?> forType(Class<?> type) {
+    return READERS.getOrDefault(type, OBJECT);
+  }
+
+  private static <T> ColumnReader<T> nullable(ColumnReader<T> reader) {
+    return (rs, index) -> {
+      T value = reader.read(rs, index);
+      return rs.wasNull() ? null : value;
+    };
+  }
+
+  private static <T> ColumnReader<T> typed(Class<T> type) {
+    return (rs, index) -> rs.getObject(index, type);
+  }
+
+  private static BigInteger readBigInteger(ResultSet rs, int index) throws SQLException {
+    BigDecimal value = rs.getBigDecimal(index);
+    return value == null ? null : value.toBigInteger();
+  }
+
+  // JDBC 4.2 drivers support getObject(index, type) for java.time, older ones fall back
+
+  private static LocalDate readLocalDate(ResultSet rs, int index) throws SQLException {
+    try {
+      return rs.getObject(index, LocalDate.class);
+    } catch (SQLException | AbstractMethodError e) {
+      java.sql.Date value = rs.getDate(index);
+      return value == null ? null : value.toLocalDate();
+    }
+  }
+
+  private static LocalDateTime readLocalDateTime(ResultSet rs, int index) throws SQLException {
+    try {
+      return rs.getObject(index, LocalDateTime.class);
+    } catch (SQLException | AbstractMethodError e) {
+      Timestamp value = rs.getTimestamp(index);
+      return value == null ? null : value.toLocalDateTime();
+    }
+  }
+
+  private static LocalTime readLocalTime(ResultSet rs, int index) throws SQLException {
+    try {
+      return rs.getObject(index, LocalTime.class);
+    } catch (SQLException | AbstractMethodError e) {
+      java.sql.Time value = rs.getTime(index);
+      return value == null ? null : value.toLocalTime();
+    }
+  }
+}
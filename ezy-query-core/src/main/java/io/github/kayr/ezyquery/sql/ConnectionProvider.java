@@ -8,9 +8,21 @@ public interface ConnectionProvider {
 
   Connection getConnection() throws Exception;
 
+  /**
+   * A connection for queries that only read when {@code readOnly} is true, providers may route
+   * these to a replica.
+   */
+  default Connection getConnection(boolean readOnly) throws Exception {
+    return getConnection();
+  }
+
   default Connection getConnectionUnChecked() {
+    return getConnectionUnChecked(false);
+  }
+
+  default Connection getConnectionUnChecked(boolean readOnly) {
     try {
-      return getConnection();
+      return getConnection(readOnly);
     } catch (RuntimeException e) {
       throw e;
     } catch (Exception e) {
@@ -0,0 +1,9 @@
+package io.github.kayr.ezyquery.sql;
+
+/** The formats rows can be exported to, see {@link ResultSetExporter}. */
+public enum ExportFormat {
+  /** RFC 4180 with a header of the field aliases, nulls are empty. */
+  CSV,
+  /** One JSON object per line keyed by the field aliases. */
+  JSON_LINES
+}
@@ -1,7 +1,11 @@
 package io.github.kayr.ezyquery.sql;
 
 import io.github.kayr.ezyquery.api.UnCaughtException;
+import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -52,6 +56,79 @@ public class JdbcUtils {
     }
   }
 
+  /** The {@link Types} of the column. */
+  public static int getColumnType(ResultSetMetaData metaData, int index) {
+    try {
+      return metaData.getColumnType(index);
+    } catch (SQLException e) {
+      throw new UnCaughtException("Error getting column type", e);
+    }
+  }
+
+  public static int getPrecision(ResultSetMetaData metaData, int index) {
+    try {
+      return metaData.getPrecision(index);
+    } catch (SQLException e) {
+      throw new UnCaughtException("Error getting column precision", e);
+    }
+  }
+
+  public static int getScale(ResultSetMetaData metaData, int index) {
+    try {
+      return metaData.getScale(index);
+    } catch (SQLException e) {
+      throw new UnCaughtException("Error getting column scale", e);
+    }
+  }
+
+  /**
+   * The class a column of the given {@link Types} is best read as, {@code Object} for types that
+   * have no obvious mapping.
+   */
+  public static Class<?> javaType(int sqlType) {
+    switch (sqlType) {
+      case Types.BIGINT:
+        return Long.class;
+      case Types.INTEGER:
+      case Types.SMALLINT:
+      case Types.TINYINT:
+        return Integer.class;
+      case Types.DECIMAL:
+      case Types.NUMERIC:
+        return BigDecimal.class;
+      case Types.DOUBLE:
+      case Types.FLOAT:
+        return Double.class;
+      case Types.REAL:
+        return Float.class;
+      case Types.BIT:
+      case Types.BOOLEAN:
+        return Boolean.class;
+      case Types.CHAR:
+      case Types.VARCHAR:
+      case Types.LONGVARCHAR:
+      case Types.NCHAR:
+      case Types.NVARCHAR:
+      case Types.LONGNVARCHAR:
+      case Types.CLOB:
+      case Types.NCLOB:
+        return String.class;
+      case Types.DATE:
+        return LocalDate.class;
+      case Types.TIME:
+        return LocalTime.class;
+      case Types.TIMESTAMP:
+        return LocalDateTime.class;
+      case Types.BINARY:
+      case Types.VARBINARY:
+      case Types.LONGVARBINARY:
+      case Types.BLOB:
+        return byte[].class;
+      default:
+        return Object.class;
+    }
+  }
+
   public static boolean next(ResultSet resultSet) {
     try {
       return resultSet.next();
@@ -62,12 +139,25 @@ public class JdbcUtils {
 
   public static void setObject(PreparedStatement preparedStatement, int index, Object value) {
     try {
-      preparedStatement.setObject(index, value);
+      if (value instanceof SqlArray) {
+        preparedStatement.setArray(
+            index, createArray(preparedStatement.getConnection(), (SqlArray) value));
+      } else {
+        preparedStatement.setObject(index, value);
+      }
     } catch (SQLException e) {
       throw new UnCaughtException("Error setting object on statement", e);
     }
   }
 
+  public static Array createArray(Connection connection, SqlArray array) {
+    try {
+      return connection.createArrayOf(array.getTypeName(), array.getElements());
+    } catch (SQLException e) {
+      throw new UnCaughtException("Error creating array parameter", e);
+    }
+  }
+
   public static Object getObject(ResultSet resultSet, int index) {
     try {
       return resultSet.getObject(index);
@@ -92,6 +182,14 @@ public class JdbcUtils {
     }
   }
 
+  public static void setFetchSize(PreparedStatement statement, int fetchSize) {
+    try {
+      statement.setFetchSize(fetchSize);
+    } catch (SQLException e) {
+      throw new UnCaughtException("Error setting fetch size", e);
+    }
+  }
+
   public static ResultSet executeQuery(PreparedStatement statement) {
     try {
       return statement.executeQuery();
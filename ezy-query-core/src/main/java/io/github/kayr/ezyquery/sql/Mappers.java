@@ -1,7 +1,7 @@
 package io.github.kayr.ezyquery.sql;
 
 import io.github.kayr.ezyquery.api.UnCaughtException;
-import io.github.kayr.ezyquery.util.ReflectionUtil;
+import io.github.kayr.ezyquery.util.SpillableList;
 import io.github.kayr.ezyquery.util.ThrowingSupplier;
 import java.sql.ResultSet;
 import java.util.*;
@@ -41,6 +41,50 @@ public interface Mappers<T> {
     return data;
   }
 
+  /**
+   * Like {@link #resultSetToList(ResultSet, RowMapper)} but rows after the first {@code
+   * inMemoryRows} are written to a temp file with the codec, close the list to delete it.
+   */
+  static <T> SpillableList<T> resultSetToSpillableList(
+      ResultSet resultSet, RowMapper<T> mapper, int inMemoryRows, RowCodec<T> codec) {
+    List<ColumnInfo> columns = JdbcUtils.getColumns(resultSet);
+    SpillableList.Builder<T> builder = SpillableList.builder(inMemoryRows, codec);
+    try {
+      int count = 0;
+      while (JdbcUtils.next(resultSet)) {
+        builder.add(mapper.mapRowUnChecked(count++, columns, resultSet));
+      }
+    } catch (RuntimeException e) {
+      builder.discard();
+      throw e;
+    }
+    return builder.build();
+  }
+
+  /**
+   * Maps the rows as they are iterated, the iterator is only valid while the result set is open.
+   */
+  static <T> Iterator<T> resultSetToIterator(ResultSet resultSet, RowMapper<T> mapper) {
+    List<ColumnInfo> columns = JdbcUtils.getColumns(resultSet);
+    return new Iterator<T>() {
+      private int rowIndex = 0;
+      private Boolean hasNext = null;
+
+      @Override
+      public boolean hasNext() {
+        if (hasNext == null) hasNext = JdbcUtils.next(resultSet);
+        return hasNext;
+      }
+
+      @Override
+      public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        hasNext = null;
+        return mapper.mapRowUnChecked(rowIndex++, columns, resultSet);
+      }
+    };
+  }
+
   static <T> RowMapper<T> toObject(ThrowingSupplier<T> factory, CellMapper<T> setter) {
     return (rowIndex, columns, rs) -> {
       T obj = factory.get();
@@ -52,12 +96,11 @@ public interface Mappers<T> {
   }
 
   static <T> RowMapper<T> toClass(Class<T> target) {
-    return toObject(
-        () -> ReflectionUtil.construct(target),
-        (col, obj, cellValue) -> {
-          java.lang.reflect.Field field = ReflectionUtil.getField(target, col.getLabel());
-          if (field != null) ReflectionUtil.setNonSyntheticField(obj, field, cellValue);
-        });
+    return toClass(target, AccessorStrategy.defaultStrategy());
+  }
+
+  static <T> RowMapper<T> toClass(Class<T> target, AccessorStrategy strategy) {
+    return new ClassRowMapper<>(target, strategy);
   }
 
   static RowMapper<Map<String, Object>> toMap() {
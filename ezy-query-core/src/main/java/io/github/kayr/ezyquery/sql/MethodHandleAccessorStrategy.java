@@ -0,0 +1,127 @@
+package io.github.kayr.ezyquery.sql;
+
+import io.github.kayr.ezyquery.util.ClassMeta;
+import io.github.kayr.ezyquery.util.ReflectionUtil;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Sets fields through method handles, which the JIT can inline unlike {@link Field#set}. Static
+ * and primitive fields are left to reflection, which widens primitive values as before.
+ */
+class MethodHandleAccessorStrategy implements AccessorStrategy {
+
+  static final MethodHandleAccessorStrategy INSTANCE = new MethodHandleAccessorStrategy();
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+  private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+  private final ConcurrentMap<Class<?>, ClassAccessor<?>> accessors = new ConcurrentHashMap<>();
+
+  private MethodHandleAccessorStrategy() {}
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> ClassAccessor<T> accessor(Class<T> type) {
+    return (ClassAccessor<T>) accessors.computeIfAbsent(type, t -> build(ReflectionUtil.meta(t)));
+  }
+
+  private static <T> ClassAccessor<T> build(ClassMeta<T> meta) {
+    MethodHandle constructor = constructor(meta.getType());
+
+    Map<String, FieldSetter> setters = new HashMap<>();
+    for (ClassMeta.FieldMeta field : meta.getFields()) {
+      if (!setters.containsKey(field.getName())) {
+        // the first field with a name hides those of super classes
+        setters.put(field.getName(), setter(field));
+      }
+    }
+    return new MethodHandleClassAccessor<>(meta, constructor, Collections.unmodifiableMap(setters));
+  }
+
+  private static MethodHandle constructor(Class<?> type) {
+    try {
+      Constructor<?> constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true); // NOSONAR
+      return LOOKUP.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static FieldSetter setter(ClassMeta.FieldMeta fieldMeta) {
+    Field field = fieldMeta.getField();
+    if (fieldMeta.isSynthetic()) return null;
+    if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+      return ReflectionAccessorStrategy.setterOf(fieldMeta);
+    }
+
+    MethodHandle handle;
+    try {
+      handle = LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+    } catch (Exception e) {
+      return ReflectionAccessorStrategy.setterOf(fieldMeta);
+    }
+
+    return (target, value) -> {
+      try {
+        handle.invokeExact(target, value);
+      } catch (Throwable e) {
+        throw new UnsupportedOperationException(
+            "Unable to set field on :"
+                + field.getName()
+                + " for class: "
+                + target.getClass().getName(),
+            e);
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return "MethodHandleAccessorStrategy";
+  }
+
+  private static class MethodHandleClassAccessor<T> implements ClassAccessor<T> {
+    private final ClassMeta<T> meta;
+    private final MethodHandle constructor;
+    private final Map<String, FieldSetter> setters;
+
+    private MethodHandleClassAccessor(
+        ClassMeta<T> meta, MethodHandle constructor, Map<String, FieldSetter> setters) {
+      this.meta = meta;
+      this.constructor = constructor;
+      this.setters = setters;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T newInstance() {
+      if (constructor == null) {
+        return meta.newInstance();
+      }
+      try {
+        return (T) (Object) constructor.invokeExact();
+      } catch (Throwable e) {
+        throw new UnsupportedOperationException(
+            "Unable to instantiate " + meta.getType().getName(), e);
+      }
+    }
+
+    @Override
+    public FieldSetter setter(String fieldName) {
+      return setters.get(fieldName);
+    }
+  }
+}
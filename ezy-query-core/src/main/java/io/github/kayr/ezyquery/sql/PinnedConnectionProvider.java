@@ -0,0 +1,36 @@
+package io.github.kayr.ezyquery.sql;
+
+import java.sql.Connection;
+
+/** Hands out the same connection and leaves closing it to whoever pinned it. */
+class PinnedConnectionProvider implements ConnectionProvider {
+
+  private final Connection connection;
+  private boolean inTransaction = false;
+
+  PinnedConnectionProvider(Connection connection) {
+    this.connection = connection;
+  }
+
+  @Override
+  public Connection getConnection() {
+    return connection;
+  }
+
+  @Override
+  public void closeConnection(Connection connection) {
+    // closed when the pinned block completes
+  }
+
+  Connection connection() {
+    return connection;
+  }
+
+  boolean isInTransaction() {
+    return inTransaction;
+  }
+
+  void setInTransaction(boolean inTransaction) {
+    this.inTransaction = inTransaction;
+  }
+}
@@ -0,0 +1,37 @@
+package io.github.kayr.ezyquery.sql;
+
+import io.github.kayr.ezyquery.util.ClassMeta;
+import io.github.kayr.ezyquery.util.ReflectionUtil;
+
+class ReflectionAccessorStrategy implements AccessorStrategy {
+
+  static final ReflectionAccessorStrategy INSTANCE = new ReflectionAccessorStrategy();
+
+  private ReflectionAccessorStrategy() {}
+
+  @Override
+  public <T> ClassAccessor<T> accessor(Class<T> type) {
+    ClassMeta<T> meta = ReflectionUtil.meta(type);
+    return new ClassAccessor<T>() {
+      @Override
+      public T newInstance() {
+        return meta.newInstance();
+      }
+
+      @Override
+      public FieldSetter setter(String fieldName) {
+        return setterOf(meta.field(fieldName));
+      }
+    };
+  }
+
+  static FieldSetter setterOf(ClassMeta.FieldMeta field) {
+    if (field == null || field.isSynthetic()) return null;
+    return field::set;
+  }
+
+  @Override
+  public String toString() {
+    return "ReflectionAccessorStrategy";
+  }
+}
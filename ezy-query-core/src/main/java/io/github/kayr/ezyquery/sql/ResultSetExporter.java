@@ -0,0 +1,186 @@
+package io.github.kayr.ezyquery.sql;
+
+import io.github.kayr.ezyquery.api.Field;
+import io.github.kayr.ezyquery.api.UnCaughtException;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes rows straight from a result set without mapping them to objects first. Each column is read
+ * with the getter for the type of its {@link Field}, or of its sql type when the field is untyped.
+ *
+ * <p>Dates and times are written in ISO-8601, binary columns in base64.
+ */
+public class ResultSetExporter {
+
+  private final ExportFormat format;
+  private final Writer out;
+  private final String[] labels;
+  private final ColumnReader<?>[] readers;
+
+  private ResultSetExporter(
+      ExportFormat format, Writer out, String[] labels, ColumnReader<?>[] readers) {
+    this.format = format;
+    this.out = out;
+    this.labels = labels;
+    this.readers = readers;
+  }
+
+  /**
+   * Writes all the remaining rows, the writer is flushed but not closed.
+   *
+   * @param fields the fields of the query, columns are matched to them by their label
+   * @return the number of rows written
+   */
+  public static long export(
+      ResultSet resultSet, List<Field<?>> fields, Writer out, ExportFormat format) {
+    Map<String, Field<?>> fieldsByAlias = new HashMap<>();
+    for (Field<?> field : fields) {
+      fieldsByAlias.put(field.getAlias(), field);
+    }
+
+    ResultSetMetaData metaData = JdbcUtils.getMetaData(resultSet);
+    int count = JdbcUtils.getColumnCount(metaData);
+    String[] labels = new String[count];
+    ColumnReader<?>[] readers = new ColumnReader<?>[count];
+    for (int i = 0; i < count; i++) {
+      labels[i] = JdbcUtils.getColumnLabel(metaData, i + 1);
+      Field<?> field = fieldsByAlias.get(labels[i]);
+      Class<?> type = field == null ? Object.class : field.getDataType();
+      if (type == Object.class) type = JdbcUtils.javaType(JdbcUtils.getColumnType(metaData, i + 1));
+      readers[i] = ColumnReader.forType(type);
+    }
+
+    try {
+      return new ResultSetExporter(format, out, labels, readers).writeAll(resultSet);
+    } catch (IOException | SQLException e) {
+      throw new UnCaughtException("Error exporting rows", e);
+    }
+  }
+
+  private long writeAll(ResultSet resultSet) throws IOException, SQLException {
+    if (format == ExportFormat.CSV) writeCsvHeader();
+
+    long rows = 0;
+    while (resultSet.next()) {
+      if (format == ExportFormat.CSV) writeCsvRow(resultSet);
+      else writeJsonRow(resultSet);
+      rows++;
+    }
+    out.flush();
+    return rows;
+  }
+
+  private void writeCsvHeader() throws IOException {
+    for (int i = 0; i < labels.length; i++) {
+      if (i > 0) out.write(',');
+      writeCsvString(labels[i]);
+    }
+    out.write("\r\n");
+  }
+
+  private void writeCsvRow(ResultSet resultSet) throws IOException, SQLException {
+    for (int i = 0; i < readers.length; i++) {
+      if (i > 0) out.write(',');
+      Object value = readers[i].read(resultSet, i + 1);
+      if (value == null) continue;
+      if (value instanceof Number || value instanceof Boolean) out.write(toText(value));
+      else writeCsvString(toText(value));
+    }
+    out.write("\r\n");
+  }
+
+  private void writeCsvString(String value) throws IOException {
+    boolean quote = false;
+    for (int i = 0; i < value.length() && !quote; i++) {
+      char c = value.charAt(i);
+      quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+    }
+    if (!quote) {
+      out.write(value);
+      return;
+    }
+
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') out.write('"');
+      out.write(c);
+    }
+    out.write('"');
+  }
+
+  private void writeJsonRow(ResultSet resultSet) throws IOException, SQLException {
+    out.write('{');
+    for (int i = 0; i < readers.length; i++) {
+      if (i > 0) out.write(',');
+      writeJsonString(labels[i]);
+      out.write(':');
+
+      Object value = readers[i].read(resultSet, i + 1);
+      if (value == null) {
+        out.write("null");
+      } else if (value instanceof Boolean || isFinite(value)) {
+        out.write(toText(value));
+      } else {
+        writeJsonString(toText(value));
+      }
+    }
+    out.write("}\n");
+  }
+
+  private void writeJsonString(String value) throws IOException {
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.write("\\\"");
+          break;
+        case '\\':
+          out.write("\\\\");
+          break;
+        case '\n':
+          out.write("\\n");
+          break;
+        case '\r':
+          out.write("\\r");
+          break;
+        case '\t':
+          out.write("\\t");
+          break;
+        default:
+          if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+          else out.write(c);
+      }
+    }
+    out.write('"');
+  }
+
+  /** NaN and infinity are not valid JSON numbers, they are written as strings. */
+  private static boolean isFinite(Object value) {
+    if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      return !Double.isNaN(number) && !Double.isInfinite(number);
+    }
+    return value instanceof Number;
+  }
+
+  private static String toText(Object value) {
+    if (value instanceof BigDecimal) return ((BigDecimal) value).toPlainString();
+    if (value instanceof Timestamp) return ((Timestamp) value).toLocalDateTime().toString();
+    if (value instanceof java.sql.Date) return ((java.sql.Date) value).toLocalDate().toString();
+    if (value instanceof java.sql.Time) return ((java.sql.Time) value).toLocalTime().toString();
+    if (value instanceof byte[]) return Base64.getEncoder().encodeToString((byte[]) value);
+    return value.toString();
+  }
+}
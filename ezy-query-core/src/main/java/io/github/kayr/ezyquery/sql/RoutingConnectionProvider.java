@@ -0,0 +1,291 @@
+package io.github.kayr.ezyquery.sql;
+
+import io.github.kayr.ezyquery.util.Elf;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import javax.sql.DataSource;
+import lombok.NonNull;
+
+/**
+ * Sends read-only queries to a weighted set of replicas and everything else to the primary.
+ *
+ * <ul>
+ *   <li>After a write, reads go to the primary for the sticky window so that they see the write.
+ *       The write is remembered by the provider, so after any write every read goes to the primary
+ *       for the window, from any thread. Use a {@link #session()} per request to keep this to the
+ *       queries of that request. There is no per-thread state, so it works the same on virtual
+ *       threads and executors e.g {@code listAsync}.
+ *   <li>A replica that fails to hand out a connection is ejected for a while, its reads go to the
+ *       other replicas or the primary.
+ * </ul>
+ *
+ * <pre>{@code
+ * ConnectionProvider provider = RoutingConnectionProvider.builder(primary)
+ *     .replica("replica-1", replica1, 2)
+ *     .replica("replica-2", replica2, 1)
+ *     .stickyAfterWrite(Duration.ofSeconds(2))
+ *     .build();
+ * EzySql ezySql = EzySql.withProvider(provider);
+ * }</pre>
+ */
+public class RoutingConnectionProvider implements ConnectionProvider {
+
+  private final Node primary;
+  private final List<Node> replicas;
+  private final long stickyNanos;
+  private final long ejectNanos;
+  private final LongSupplier clock;
+
+  /**
+   * The write marker of queries that are not run through a {@link #session()}, shared by all
+   * threads so there is no per-thread state.
+   */
+  private final AtomicReference<Long> lastWrite = new AtomicReference<>();
+
+  private final ConcurrentHashMap<Connection, Checkout> checkouts = new ConcurrentHashMap<>();
+
+  private RoutingConnectionProvider(Builder builder) {
+    this.primary = new Node("primary", builder.primary, 0);
+    this.replicas = Collections.unmodifiableList(new ArrayList<>(builder.replicas));
+    this.stickyNanos = builder.stickyAfterWrite.toNanos();
+    this.ejectNanos = builder.ejectFor.toNanos();
+    this.clock = builder.clock;
+  }
+
+  public static Builder builder(@NonNull DataSource primary) {
+    return new Builder(primary);
+  }
+
+  @Override
+  public Connection getConnection() throws Exception {
+    return getConnection(false);
+  }
+
+  @Override
+  public Connection getConnection(boolean readOnly) throws Exception {
+    return getConnection(readOnly, lastWrite);
+  }
+
+  /**
+   * A view of this provider with its own write marker. Reads through it stick to the primary after
+   * a write through it on any thread, e.g for the queries of one request that run on an executor.
+   * The replicas, their health and stats are shared.
+   *
+   * <pre>{@code
+   * EzySql requestSql = EzySql.withProvider(provider.session());
+   * requestSql.getZql().executeUpdate(...);
+   * requestSql.from(Orders.QUERY).listAsync(executor); // reads from the primary
+   * }</pre>
+   */
+  public ConnectionProvider session() {
+    AtomicReference<Long> sessionWrite = new AtomicReference<>();
+    return new ConnectionProvider() {
+      @Override
+      public Connection getConnection() throws Exception {
+        return getConnection(false);
+      }
+
+      @Override
+      public Connection getConnection(boolean readOnly) throws Exception {
+        return RoutingConnectionProvider.this.getConnection(readOnly, sessionWrite);
+      }
+
+      @Override
+      public void closeConnection(Connection connection) {
+        RoutingConnectionProvider.this.closeConnection(connection);
+      }
+    };
+  }
+
+  private Connection getConnection(boolean readOnly, AtomicReference<Long> lastWrite)
+      throws Exception {
+    long now = clock.getAsLong();
+    if (!readOnly) {
+      // without a window there is nothing to remember
+      if (stickyNanos > 0) lastWrite.set(now);
+      return checkout(primary, now);
+    }
+
+    Long writtenAt = lastWrite.get();
+    if (writtenAt != null) {
+      if (now - writtenAt < stickyNanos) return checkout(primary, now);
+      // the window is over, a newer write is kept
+      lastWrite.compareAndSet(writtenAt, null);
+    }
+
+    List<Node> candidates = healthyReplicas(now);
+    while (!candidates.isEmpty()) {
+      Node replica = pick(candidates);
+      try {
+        return checkout(replica, now);
+      } catch (Exception e) {
+        replica.eject(now + ejectNanos);
+        candidates.remove(replica);
+      }
+    }
+    return checkout(primary, now);
+  }
+
+  private Connection checkout(Node node, long now) throws Exception {
+    Connection connection;
+    try {
+      connection = node.dataSource.getConnection();
+    } catch (Exception e) {
+      node.failures.incrementAndGet();
+      throw e;
+    }
+    node.checkouts.incrementAndGet();
+    checkouts.put(connection, new Checkout(node, now));
+    return connection;
+  }
+
+  @Override
+  public void closeConnection(Connection connection) {
+    Checkout checkout = checkouts.remove(connection);
+    if (checkout != null) {
+      checkout.node.completed.incrementAndGet();
+      checkout.node.totalNanos.addAndGet(clock.getAsLong() - checkout.startedAt);
+    }
+    Elf.closeQuietly(connection);
+  }
+
+  private List<Node> healthyReplicas(long now) {
+    List<Node> healthy = new ArrayList<>(replicas.size());
+    for (Node replica : replicas) {
+      if (replica.isHealthy(now)) healthy.add(replica);
+    }
+    return healthy;
+  }
+
+  private static Node pick(List<Node> candidates) {
+    int totalWeight = 0;
+    for (Node candidate : candidates) {
+      totalWeight += candidate.weight;
+    }
+
+    int value = ThreadLocalRandom.current().nextInt(totalWeight);
+    for (Node candidate : candidates) {
+      value -= candidate.weight;
+      if (value < 0) return candidate;
+    }
+    return candidates.get(candidates.size() - 1);
+  }
+
+  /** The primary followed by the replicas. */
+  public List<NodeStats> stats() {
+    long now = clock.getAsLong();
+    List<NodeStats> stats = new ArrayList<>();
+    stats.add(primary.stats(now));
+    for (Node replica : replicas) {
+      stats.add(replica.stats(now));
+    }
+    return stats;
+  }
+
+  /**
+   * Usage of one data source. The latency is the average time a connection was held i.e from
+   * checkout until the results were read.
+   */
+  @lombok.Getter
+  @lombok.ToString
+  @lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+  public static class NodeStats {
+    private final String name;
+    private final long checkouts;
+    private final long failures;
+    private final boolean healthy;
+    private final Duration averageLatency;
+  }
+
+  public static class Builder {
+    private final DataSource primary;
+    private final List<Node> replicas = new ArrayList<>();
+    private Duration stickyAfterWrite = Duration.ZERO;
+    private Duration ejectFor = Duration.ofSeconds(30);
+    private LongSupplier clock = System::nanoTime;
+
+    private Builder(DataSource primary) {
+      this.primary = primary;
+    }
+
+    public Builder replica(@NonNull String name, @NonNull DataSource dataSource, int weight) {
+      if (weight <= 0) throw new IllegalArgumentException("weight must be greater than 0");
+      replicas.add(new Node(name, dataSource, weight));
+      return this;
+    }
+
+    /**
+     * How long reads go to the primary after a write through the provider, or through the same
+     * {@link RoutingConnectionProvider#session()}.
+     */
+    public Builder stickyAfterWrite(@NonNull Duration window) {
+      this.stickyAfterWrite = window;
+      return this;
+    }
+
+    /** How long a replica that failed to hand out a connection is left out. */
+    public Builder ejectFor(@NonNull Duration duration) {
+      this.ejectFor = duration;
+      return this;
+    }
+
+    Builder clock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    public RoutingConnectionProvider build() {
+      return new RoutingConnectionProvider(this);
+    }
+  }
+
+  private static class Node {
+    private final String name;
+    private final DataSource dataSource;
+    private final int weight;
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private volatile long ejectedUntil = Long.MIN_VALUE;
+
+    private Node(String name, DataSource dataSource, int weight) {
+      this.name = name;
+      this.dataSource = dataSource;
+      this.weight = weight;
+    }
+
+    private void eject(long until) {
+      ejectedUntil = until;
+    }
+
+    private boolean isHealthy(long now) {
+      return ejectedUntil == Long.MIN_VALUE || now - ejectedUntil >= 0;
+    }
+
+    private NodeStats stats(long now) {
+      long done = completed.get();
+      long average = done == 0 ? 0 : totalNanos.get() / done;
+      return new NodeStats(
+          name, checkouts.get(), failures.get(), isHealthy(now), Duration.ofNanos(average));
+    }
+  }
+
+  private static class Checkout {
+    private final Node node;
+    private final long startedAt;
+
+    private Checkout(Node node, long startedAt) {
+      this.node = node;
+      this.startedAt = startedAt;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package io.github.kayr.ezyquery.sql;
+
+import io.github.kayr.ezyquery.util.ClassMeta;
+import io.github.kayr.ezyquery.util.ReflectionUtil;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes rows to a compact binary form and back, used to spill rows to disk. Values are written
+ * with a one byte type tag followed by their binary form, other {@link java.io.Serializable}
+ * values fall back to java serialization.
+ */
+public interface RowCodec<T> {
+
+  void write(T row, DataOutput out) throws IOException;
+
+  T read(DataInput in) throws IOException;
+
+  /** Rows of a class e.g the generated result classes, all non static fields are written. */
+  static <T> RowCodec<T> forClass(Class<T> type) {
+    ClassMeta<T> meta = ReflectionUtil.meta(type);
+    List<ClassMeta.FieldMeta> fields = new ArrayList<>();
+    for (ClassMeta.FieldMeta field : meta.getFields()) {
+      int modifiers = field.getField().getModifiers();
+      if (!field.isSynthetic() && !Modifier.isStatic(modifiers)) fields.add(field);
+    }
+
+    return new RowCodec<T>() {
+      @Override
+      public void write(T row, DataOutput out) throws IOException {
+        for (ClassMeta.FieldMeta field : fields) {
+          ValueCodec.write(field.get(row), out);
+        }
+      }
+
+      @Override
+      public T read(DataInput in) throws IOException {
+        T row = meta.newInstance();
+        for (ClassMeta.FieldMeta field : fields) {
+          Object value = ValueCodec.read(in);
+          // primitives keep their default instead of failing on null
+          if (value != null || !field.getField().getType().isPrimitive()) field.set(row, value);
+        }
+        return row;
+      }
+    };
+  }
+
+  /** Rows mapped with {@link Mappers#toMap()}. */
+  static RowCodec<Map<String, Object>> forMap() {
+    return new RowCodec<Map<String, Object>>() {
+      @Override
+      public void write(Map<String, Object> row, DataOutput out) throws IOException {
+        out.writeInt(row.size());
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+          ValueCodec.write(entry.getKey(), out);
+          ValueCodec.write(entry.getValue(), out);
+        }
+      }
+
+      @Override
+      public Map<String, Object> read(DataInput in) throws IOException {
+        int size = in.readInt();
+        Map<String, Object> row = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+          row.put((String) ValueCodec.read(in), ValueCodec.read(in));
+        }
+        return row;
+      }
+    };
+  }
+}
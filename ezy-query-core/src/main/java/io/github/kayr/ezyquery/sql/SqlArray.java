@@ -0,0 +1,103 @@
+package io.github.kayr.ezyquery.sql;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * A list of values that is bound as one JDBC array parameter e.g {@code code = ANY(?)}. Unlike an
+ * IN list the sql text stays the same no matter how many values are passed, so the statement can
+ * be re-used by the driver and the database plan cache.
+ *
+ * <p>This is only supported by databases that can compare against arrays e.g PostgreSQL and H2.
+ */
+public class SqlArray {
+
+  private static final Map<Class<?>, String> TYPE_NAMES = new HashMap<>();
+
+  static {
+    TYPE_NAMES.put(String.class, "varchar");
+    TYPE_NAMES.put(Short.class, "integer");
+    TYPE_NAMES.put(Integer.class, "integer");
+    TYPE_NAMES.put(Long.class, "bigint");
+    TYPE_NAMES.put(BigDecimal.class, "numeric");
+    TYPE_NAMES.put(Float.class, "float4");
+    TYPE_NAMES.put(Double.class, "float8");
+    TYPE_NAMES.put(Boolean.class, "boolean");
+    TYPE_NAMES.put(UUID.class, "uuid");
+    TYPE_NAMES.put(java.sql.Date.class, "date");
+    TYPE_NAMES.put(java.time.LocalDate.class, "date");
+    TYPE_NAMES.put(java.sql.Timestamp.class, "timestamp");
+    TYPE_NAMES.put(java.time.LocalDateTime.class, "timestamp");
+  }
+
+  private final String typeName;
+  private final Object[] elements;
+
+  private SqlArray(String typeName, Object[] elements) {
+    this.typeName = typeName;
+    this.elements = elements;
+  }
+
+  public static SqlArray of(String typeName, Collection<?> values) {
+    return new SqlArray(typeName, values.toArray());
+  }
+
+  /**
+   * Creates an array with the sql type inferred from the values. Returns empty if the values are
+   * empty or the type cannot be inferred e.g mixed types.
+   */
+  public static Optional<SqlArray> tryCreate(Collection<?> values) {
+    String typeName = resolveTypeName(values);
+    if (typeName == null) return Optional.empty();
+    return Optional.of(of(typeName, values));
+  }
+
+  static String resolveTypeName(Collection<?> values) {
+    String typeName = null;
+    for (Object value : values) {
+      if (value == null) continue;
+
+      String valueType = TYPE_NAMES.get(value.getClass());
+      if (valueType == null) return null;
+
+      if (typeName == null || typeName.equals(valueType)) {
+        typeName = valueType;
+      } else if (isIntegral(typeName) && isIntegral(valueType)) {
+        typeName = "bigint";
+      } else {
+        return null;
+      }
+    }
+    return typeName;
+  }
+
+  private static boolean isIntegral(String typeName) {
+    return typeName.equals("integer") || typeName.equals("bigint");
+  }
+
+  public String getTypeName() {
+    return typeName;
+  }
+
+  public Object[] getElements() {
+    return elements.clone();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof SqlArray)) return false;
+    SqlArray sqlArray = (SqlArray) o;
+    return typeName.equals(sqlArray.typeName) && Arrays.equals(elements, sqlArray.elements);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * typeName.hashCode() + Arrays.hashCode(elements);
+  }
+
+  @Override
+  public String toString() {
+    return "SqlArray{" + typeName + Arrays.toString(elements) + '}';
+  }
+}
@@ -0,0 +1,37 @@
+package io.github.kayr.ezyquery.sql;
+
+import java.sql.Connection;
+
+/**
+ * Settings applied to the connection for the duration of a transaction, see {@link
+ * Zql#inTransaction(TxOptions, io.github.kayr.ezyquery.util.ThrowingFunction)}.
+ */
+@lombok.Getter
+@lombok.ToString
+@lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public class TxOptions {
+
+  private static final TxOptions DEFAULTS = new TxOptions(null, false);
+
+  /** One of the {@link Connection} TRANSACTION_* levels, null to keep the connection's level. */
+  private final Integer isolation;
+
+  private final boolean readOnly;
+
+  public static TxOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /** A read-only transaction, which lets drivers and pools route to replicas. */
+  public static TxOptions readOnly() {
+    return new TxOptions(null, true);
+  }
+
+  public TxOptions isolation(int isolation) {
+    return new TxOptions(isolation, readOnly);
+  }
+
+  public TxOptions readOnly(boolean readOnly) {
+    return new TxOptions(isolation, readOnly);
+  }
+}
@@ -0,0 +1,185 @@
+package io.github.kayr.ezyquery.sql;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+/** The tagged binary form of single values, see {@link RowCodec}. */
+final class ValueCodec {
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte LONG = 2;
+  private static final byte INTEGER = 3;
+  private static final byte SHORT = 4;
+  private static final byte BYTE = 5;
+  private static final byte DOUBLE = 6;
+  private static final byte FLOAT = 7;
+  private static final byte BOOLEAN = 8;
+  private static final byte BIG_DECIMAL = 9;
+  private static final byte BIG_INTEGER = 10;
+  private static final byte BYTES = 11;
+  private static final byte LOCAL_DATE = 12;
+  private static final byte LOCAL_DATE_TIME = 13;
+  private static final byte LOCAL_TIME = 14;
+  private static final byte TIMESTAMP = 15;
+  private static final byte SQL_DATE = 16;
+  private static final byte SQL_TIME = 17;
+  private static final byte DATE = 18;
+  private static final byte SERIALIZED = 127;
+
+  private ValueCodec() {}
+
+  static void write(Object value, DataOutput out) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      writeBytes(((String) value).getBytes(StandardCharsets.UTF_8), out);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) value);
+    } else if (value instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(BIG_DECIMAL);
+      out.writeInt(((BigDecimal) value).scale());
+      writeBytes(((BigDecimal) value).unscaledValue().toByteArray(), out);
+    } else if (value instanceof BigInteger) {
+      out.writeByte(BIG_INTEGER);
+      writeBytes(((BigInteger) value).toByteArray(), out);
+    } else if (value instanceof byte[]) {
+      out.writeByte(BYTES);
+      writeBytes((byte[]) value, out);
+    } else if (value instanceof LocalDate) {
+      out.writeByte(LOCAL_DATE);
+      out.writeLong(((LocalDate) value).toEpochDay());
+    } else if (value instanceof LocalDateTime) {
+      out.writeByte(LOCAL_DATE_TIME);
+      out.writeLong(((LocalDateTime) value).toEpochSecond(ZoneOffset.UTC));
+      out.writeInt(((LocalDateTime) value).getNano());
+    } else if (value instanceof LocalTime) {
+      out.writeByte(LOCAL_TIME);
+      out.writeLong(((LocalTime) value).toNanoOfDay());
+    } else if (value instanceof Timestamp) {
+      out.writeByte(TIMESTAMP);
+      out.writeLong(((Timestamp) value).getTime());
+      out.writeInt(((Timestamp) value).getNanos());
+    } else if (value instanceof java.sql.Date) {
+      out.writeByte(SQL_DATE);
+      out.writeLong(((java.sql.Date) value).getTime());
+    } else if (value instanceof java.sql.Time) {
+      out.writeByte(SQL_TIME);
+      out.writeLong(((java.sql.Time) value).getTime());
+    } else if (value.getClass() == java.util.Date.class) {
+      out.writeByte(DATE);
+      out.writeLong(((java.util.Date) value).getTime());
+    } else if (value instanceof Serializable) {
+      out.writeByte(SERIALIZED);
+      writeBytes(serialize(value), out);
+    } else {
+      throw new IllegalArgumentException(
+          "Can not spill a " + value.getClass().getName() + ", it is not serializable");
+    }
+  }
+
+  static Object read(DataInput in) throws IOException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case STRING:
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+      case LONG:
+        return in.readLong();
+      case INTEGER:
+        return in.readInt();
+      case SHORT:
+        return in.readShort();
+      case BYTE:
+        return in.readByte();
+      case DOUBLE:
+        return in.readDouble();
+      case FLOAT:
+        return in.readFloat();
+      case BOOLEAN:
+        return in.readBoolean();
+      case BIG_DECIMAL:
+        int scale = in.readInt();
+        return new BigDecimal(new BigInteger(readBytes(in)), scale);
+      case BIG_INTEGER:
+        return new BigInteger(readBytes(in));
+      case BYTES:
+        return readBytes(in);
+      case LOCAL_DATE:
+        return LocalDate.ofEpochDay(in.readLong());
+      case LOCAL_DATE_TIME:
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+      case LOCAL_TIME:
+        return LocalTime.ofNanoOfDay(in.readLong());
+      case TIMESTAMP:
+        Timestamp timestamp = new Timestamp(in.readLong());
+        timestamp.setNanos(in.readInt());
+        return timestamp;
+      case SQL_DATE:
+        return new java.sql.Date(in.readLong());
+      case SQL_TIME:
+        return new java.sql.Time(in.readLong());
+      case DATE:
+        return new java.util.Date(in.readLong());
+      case SERIALIZED:
+        return deserialize(readBytes(in));
+      default:
+        throw new IOException("Unknown value tag: " + tag);
+    }
+  }
+
+  private static void writeBytes(byte[] bytes, DataOutput out) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static byte[] serialize(Object value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(value);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Object deserialize(byte[] bytes) throws IOException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Unable to read a spilled value", e);
+    }
+  }
+}
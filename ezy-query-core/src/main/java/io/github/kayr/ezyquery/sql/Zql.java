@@ -2,11 +2,13 @@ package io.github.kayr.ezyquery.sql;
 
 import io.github.kayr.ezyquery.api.UnCaughtException;
 import io.github.kayr.ezyquery.util.Elf;
+import io.github.kayr.ezyquery.util.ThrowingConsumer;
 import io.github.kayr.ezyquery.util.ThrowingFunction;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Zql {
@@ -51,6 +53,20 @@ public class Zql {
     }
   }
 
+  /**
+   * Same as {@link #query(String, List, ThrowingFunction)} with the fetch size set on the statement
+   * so the driver reads the rows in batches instead of all at once. Some drivers also need a
+   * transaction for that, see {@link io.github.kayr.ezyquery.dialect.Dialect#fetchSize(int)}.
+   */
+  public <R> R query(
+      String sql, List<Object> params, int fetchSize, ThrowingFunction<ResultSet, R> rsConsumer) {
+    try (DbReSources dbReSources = rows(sql, fetchSize, params.toArray())) {
+      return rsConsumer.apply(dbReSources.resultSet);
+    } catch (Exception e) {
+      throw new UnCaughtException("Error executing query", e);
+    }
+  }
+
   private DbReSources rows(String sql, List<Object> params) {
 
     return rows(sql, params.toArray());
@@ -74,13 +90,132 @@ public class Zql {
   }
 
   private DbReSources rows(String sql, Object... params) {
-    Connection connection = connectionProvider.getConnectionUnChecked();
+    return rows(sql, 0, params);
+  }
+
+  /** A fetch size of 0 leaves the driver default. */
+  private DbReSources rows(String sql, int fetchSize, Object... params) {
+    Connection connection = connectionProvider.getConnectionUnChecked(true);
     PreparedStatement statement = JdbcUtils.preparedStatement(connection, sql);
+    if (fetchSize != 0) JdbcUtils.setFetchSize(statement, fetchSize);
     setValues(statement, params);
     ResultSet resultSet = JdbcUtils.executeQuery(statement);
     return new DbReSources(connection, statement, resultSet, connectionProvider);
   }
 
+  /**
+   * Runs the function with a Zql that uses one connection for all its calls, the connection is
+   * released when the function returns. Calls on an already pinned Zql reuse its connection.
+   */
+  public <R> R withPinnedConnection(ThrowingFunction<Zql, R> fn) {
+    return withPinnedConnection(false, fn);
+  }
+
+  private <R> R withPinnedConnection(boolean readOnly, ThrowingFunction<Zql, R> fn) {
+    if (connectionProvider instanceof PinnedConnectionProvider) {
+      return apply(fn, this);
+    }
+
+    Connection connection = connectionProvider.getConnectionUnChecked(readOnly);
+    try {
+      return apply(fn, new Zql(new PinnedConnectionProvider(connection)));
+    } finally {
+      closeConnection(connectionProvider, connection);
+    }
+  }
+
+  public <R> R inTransaction(ThrowingFunction<Zql, R> fn) {
+    return inTransaction(TxOptions.defaults(), fn);
+  }
+
+  /**
+   * Runs the function in a transaction on a pinned connection. The transaction is committed when
+   * the function returns and rolled back if it throws. Nested calls join the outer transaction.
+   */
+  public <R> R inTransaction(TxOptions options, ThrowingFunction<Zql, R> fn) {
+    return withPinnedConnection(options.isReadOnly(), zql -> zql.runInTransaction(options, fn));
+  }
+
+  private <R> R runInTransaction(TxOptions options, ThrowingFunction<Zql, R> fn)
+      throws Exception {
+    PinnedConnectionProvider pinned = (PinnedConnectionProvider) connectionProvider;
+    if (pinned.isInTransaction()) {
+      return fn.apply(this);
+    }
+
+    Connection connection = pinned.connection();
+    boolean autoCommit = connection.getAutoCommit();
+    boolean readOnly = connection.isReadOnly();
+    int isolation = connection.getTransactionIsolation();
+    R result;
+    try {
+      // read-only and isolation have to be set before the transaction starts
+      if (options.isReadOnly()) connection.setReadOnly(true);
+      if (options.getIsolation() != null) {
+        connection.setTransactionIsolation(options.getIsolation());
+      }
+      connection.setAutoCommit(false);
+      pinned.setInTransaction(true);
+
+      result = fn.apply(this);
+      connection.commit();
+    } catch (Throwable e) {
+      try {
+        connection.rollback();
+      } catch (Exception rollbackError) {
+        e.addSuppressed(rollbackError);
+      }
+      pinned.setInTransaction(false);
+      restoreSettings(connection, options, autoCommit, readOnly, isolation, e);
+      throw e;
+    }
+
+    pinned.setInTransaction(false);
+    restoreSettings(connection, options, autoCommit, readOnly, isolation, null);
+    return result;
+  }
+
+  /**
+   * Puts back the connection settings changed for a transaction. Every setting is tried even if
+   * another fails, e.g on a broken connection. Failures are added to the error of the transaction
+   * so they do not hide it, or thrown when the transaction succeeded.
+   */
+  private static void restoreSettings(
+      Connection connection,
+      TxOptions options,
+      boolean autoCommit,
+      boolean readOnly,
+      int isolation,
+      Throwable error)
+      throws Exception {
+    List<ThrowingConsumer<Connection>> steps = new ArrayList<>();
+    steps.add(c -> c.setAutoCommit(autoCommit));
+    if (options.isReadOnly()) steps.add(c -> c.setReadOnly(readOnly));
+    if (options.getIsolation() != null) steps.add(c -> c.setTransactionIsolation(isolation));
+
+    Exception failure = null;
+    for (ThrowingConsumer<Connection> step : steps) {
+      try {
+        step.accept(connection);
+      } catch (Exception e) {
+        if (error != null) error.addSuppressed(e);
+        else if (failure == null) failure = e;
+        else failure.addSuppressed(e);
+      }
+    }
+    if (failure != null) throw failure;
+  }
+
+  private static <R> R apply(ThrowingFunction<Zql, R> fn, Zql zql) {
+    try {
+      return fn.apply(zql);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new UnCaughtException(e);
+    }
+  }
+
   public Integer executeUpdate(String sql, Object... params) {
     Connection connection = connectionProvider.getConnectionUnChecked();
     try {
@@ -0,0 +1,149 @@
+package io.github.kayr.ezyquery.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Immutable reflection metadata of a class i.e its no-arg constructor and its fields, including
+ * inherited ones, made accessible once. Instances are shared between threads, get them through
+ * {@link ReflectionUtil#meta(Class)}.
+ */
+public final class ClassMeta<T> {
+
+  private final Class<T> type;
+  private final Constructor<T> constructor;
+  private final List<FieldMeta> fields;
+  private final Map<String, FieldMeta> fieldsByName;
+
+  private ClassMeta(Class<T> type, Constructor<T> constructor, List<FieldMeta> fields) {
+    this.type = type;
+    this.constructor = constructor;
+    this.fields = Collections.unmodifiableList(fields);
+
+    Map<String, FieldMeta> byName = new HashMap<>(fields.size() * 2);
+    for (FieldMeta field : fields) {
+      // fields of subclasses hide those of their super classes
+      byName.putIfAbsent(field.getName(), field);
+    }
+    this.fieldsByName = Collections.unmodifiableMap(byName);
+  }
+
+  static <T> ClassMeta<T> introspect(Class<T> type) {
+    List<FieldMeta> fields = new ArrayList<>();
+    Class<?> targetClass = type;
+    do {
+      for (Field field : declaredFields(targetClass)) {
+        fields.add(new FieldMeta(field));
+      }
+      targetClass = targetClass.getSuperclass();
+    } while (targetClass != null && targetClass != Object.class);
+
+    return new ClassMeta<>(type, noArgConstructor(type), fields);
+  }
+
+  private static <T> Constructor<T> noArgConstructor(Class<T> type) {
+    Constructor<T> constructor;
+    try {
+      constructor = type.getDeclaredConstructor();
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+    try {
+      constructor.setAccessible(true); // NOSONAR
+    } catch (RuntimeException e) {
+      // e.g a module that is not open, newInstance() reports it
+    }
+    return constructor;
+  }
+
+  private static Field[] declaredFields(Class<?> clazz) {
+    try {
+      return clazz.getDeclaredFields();
+    } catch (Throwable ex) { // NOSONAR
+      throw new IllegalStateException(
+          "Failed to introspect Class ["
+              + clazz.getName()
+              + "] from ClassLoader ["
+              + clazz.getClassLoader()
+              + "]",
+          ex);
+    }
+  }
+
+  public Class<T> getType() {
+    return type;
+  }
+
+  /** Declared fields of the class followed by those of its super classes. */
+  public List<FieldMeta> getFields() {
+    return fields;
+  }
+
+  /** The field with the given name or null, subclass fields win over hidden super class fields. */
+  public FieldMeta field(String name) {
+    return fieldsByName.get(name);
+  }
+
+  public T newInstance() {
+    if (constructor == null) {
+      throw new UnsupportedOperationException(
+          "Unable to instantiate " + type.getName() + ", it has no no-arg constructor");
+    }
+    try {
+      return constructor.newInstance();
+    } catch (Exception e) {
+      throw new UnsupportedOperationException("Unable to instantiate " + type.getName(), e);
+    }
+  }
+
+  public static final class FieldMeta {
+    private final Field field;
+    private final boolean synthetic;
+
+    private FieldMeta(Field field) {
+      this.field = field;
+      this.synthetic = field.isSynthetic();
+      try {
+        ReflectionUtil.makeAccessible(field);
+      } catch (RuntimeException e) {
+        // e.g a module that is not open, set() reports it
+      }
+    }
+
+    public Field getField() {
+      return field;
+    }
+
+    public String getName() {
+      return field.getName();
+    }
+
+    public boolean isSynthetic() {
+      return synthetic;
+    }
+
+    public Object get(Object target) {
+      try {
+        return field.get(target); // NOSONAR
+      } catch (Exception e) {
+        throw new UnsupportedOperationException(
+            "Unable to get field: " + field.getName() + " of class: " + target.getClass().getName(),
+            e);
+      }
+    }
+
+    public void set(Object target, Object value) {
+      try {
+        field.set(target, value); // NOSONAR
+      } catch (Exception e) {
+        throw new UnsupportedOperationException(
+            "Unable to set field on :"
+                + field.getName()
+                + " for class: "
+                + target.getClass().getName(),
+            e);
+      }
+    }
+  }
+}
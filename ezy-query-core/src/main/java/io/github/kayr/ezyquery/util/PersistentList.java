@@ -0,0 +1,92 @@
+package io.github.kayr.ezyquery.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable list where appending returns a new list that shares the backing array with this
+ * one. Appending to the latest version of a list is amortized O(1), appending to an older version
+ * copies it so that the versions never see each other's items.
+ *
+ * <p>Safe to share between threads: a slot of the backing array is written once, by the thread that
+ * claimed it, before the list that contains it is published.
+ */
+public final class PersistentList<T> extends AbstractList<T> implements RandomAccess {
+
+  private static final PersistentList<?> EMPTY =
+      new PersistentList<>(new Object[0], 0, new AtomicInteger());
+
+  private final Object[] items;
+  private final int size;
+
+  /** How many slots of the backing array are taken, shared by all lists on that array. */
+  private final AtomicInteger claimed;
+
+  private PersistentList(Object[] items, int size, AtomicInteger claimed) {
+    this.items = items;
+    this.size = size;
+    this.claimed = claimed;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> PersistentList<T> empty() {
+    return (PersistentList<T>) EMPTY;
+  }
+
+  /** Returns the list itself if it is already persistent otherwise a copy, null is empty. */
+  @SuppressWarnings("unchecked")
+  public static <T> PersistentList<T> from(Collection<? extends T> items) {
+    if (items instanceof PersistentList) return (PersistentList<T>) items;
+    if (items == null || items.isEmpty()) return empty();
+    Object[] copy = items.toArray();
+    return new PersistentList<>(copy, copy.length, new AtomicInteger(copy.length));
+  }
+
+  @SafeVarargs
+  public final PersistentList<T> append(T... values) {
+    return append(Arrays.asList(values));
+  }
+
+  public PersistentList<T> append(Collection<? extends T> values) {
+    int count = values.size();
+    if (count == 0) return this;
+
+    int newSize = size + count;
+    if (newSize <= items.length && claimed.compareAndSet(size, newSize)) {
+      int i = size;
+      for (T value : values) {
+        items[i++] = value;
+      }
+      return new PersistentList<>(items, newSize, claimed);
+    }
+
+    Object[] grown = Arrays.copyOf(items, Math.max(newSize, Math.max(4, size * 2)));
+    int i = size;
+    for (T value : values) {
+      grown[i++] = value;
+    }
+    return new PersistentList<>(grown, newSize, new AtomicInteger(newSize));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return (T) items[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Object[] toArray() {
+    return Arrays.copyOf(items, size);
+  }
+}
@@ -2,19 +2,22 @@ package io.github.kayr.ezyquery.util;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ReflectionUtil {
 
   private ReflectionUtil() {}
 
-  private static final Map<Class<?>, Map<String, Field>> declaredFieldsCache =
+  private static final ConcurrentMap<Class<?>, ClassMeta<?>> metaCache =
       new ConcurrentHashMap<>(256);
 
+  /** The cached metadata of the class, built once per class. */
+  @SuppressWarnings("unchecked")
+  public static <T> ClassMeta<T> meta(Class<T> clazz) {
+    return (ClassMeta<T>) metaCache.computeIfAbsent(clazz, ClassMeta::introspect);
+  }
+
   public static void setField(String field, Object target, Object value) {
     setField(getField(target.getClass(), field), target, value);
   }
@@ -36,65 +39,19 @@ public class ReflectionUtil {
 
   @lombok.SneakyThrows
   public static void doWithFields(Class<?> clazz, Callback<Field> callback) {
-    Class<?> targetClass = clazz;
-    do {
-      Collection<Field> fields = getDeclaredFields(targetClass);
-      for (Field field : fields) {
-        callback.call(field);
-      }
-      targetClass = targetClass.getSuperclass();
-    } while (targetClass != null && targetClass != Object.class);
-  }
-
-  private static Collection<Field> getDeclaredFields(Class<?> clazz) {
-    Map<String, Field> fieldCache1 = getFieldCache(clazz);
-    return fieldCache1.values();
-  }
-
-  private static Map<String, Field> getFieldCache(Class<?> clazz) {
-    Map<String, Field> result = declaredFieldsCache.get(clazz);
-
-    if (result != null) return result;
-
-    Field[] declaredFields = getDeclareFields(clazz);
-    Map<String, Field> fieldMap =
-        declaredFields.length > 0 ? new HashMap<>(declaredFields.length) : Collections.emptyMap();
-    declaredFieldsCache.put(clazz, fieldMap);
-
-    for (Field field : declaredFields) {
-      fieldMap.put(field.getName(), field);
-    }
-
-    return fieldMap;
-  }
-
-  private static Field[] getDeclareFields(Class<?> clazz) {
-    try {
-      return clazz.getDeclaredFields();
-    } catch (Throwable ex) { // NOSONAR
-      throw new IllegalStateException(
-          "Failed to introspect Class ["
-              + clazz.getName()
-              + "] from ClassLoader ["
-              + clazz.getClassLoader()
-              + "]",
-          ex);
+    for (ClassMeta.FieldMeta field : meta(clazz).getFields()) {
+      callback.call(field.getField());
     }
   }
 
+  /** Looks up a field of the class or its super classes. */
   public static <T> Field getField(Class<T> targetClass, String fieldName) {
-    Map<String, Field> fieldCache = getFieldCache(targetClass); // ensure introspection is done
-    return fieldCache.get(fieldName);
+    ClassMeta.FieldMeta field = meta(targetClass).field(fieldName);
+    return field == null ? null : field.getField();
   }
 
-  public static <T> T construct(Class<T> targetClass1) {
-    T t = null;
-    try {
-      t = targetClass1.getDeclaredConstructor().newInstance();
-    } catch (Exception e) {
-      throw new UnsupportedOperationException("Unable to instantiate " + targetClass1.getName(), e);
-    }
-    return t;
+  public static <T> T construct(Class<T> targetClass) {
+    return meta(targetClass).newInstance();
   }
 
   public static void setNonSyntheticField(Object target, Field field, Object value) {
@@ -0,0 +1,230 @@
+package io.github.kayr.ezyquery.util;
+
+import io.github.kayr.ezyquery.api.UnCaughtException;
+import io.github.kayr.ezyquery.sql.RowCodec;
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A read only list that keeps the first rows on the heap and the rest in a temp file that is
+ * memory mapped once the list is built. Spilled rows are decoded on every {@link #get(int)}, so
+ * modifying them does not change the list.
+ *
+ * <p>Only the offset of every {@value #OFFSET_EVERY}th spilled row is kept on the heap, a row is
+ * found by skipping the rows before it in its block. Close the list to delete the file.
+ *
+ * <pre>{@code
+ * RowCodec<Orders.Result> codec = RowCodec.forClass(Orders.Result.class);
+ * try (SpillableList<Orders.Result> orders =
+ *     ezySql.from(Orders.QUERY).noLimit().listSpillable(100_000, codec)) {
+ *   orders.size();
+ *   orders.get(12_345_678);
+ * }
+ * }</pre>
+ */
+public class SpillableList<T> extends AbstractList<T> implements RandomAccess, Closeable {
+
+  static final int OFFSET_EVERY = 32;
+
+  /**
+   * The file is mapped in segments that overlap by a block of the longest rows, so every block that
+   * starts in a segment ends in it too.
+   */
+  private static final long SEGMENT_SIZE = 1L << 29;
+
+  private final List<T> onHeap;
+  private final RowCodec<T> codec;
+  private final Path file;
+  private final long[] offsets;
+  private final int spilled;
+  private final MappedByteBuffer[] segments;
+
+  private SpillableList(Builder<T> builder, MappedByteBuffer[] segments) {
+    this.onHeap = builder.onHeap;
+    this.codec = builder.codec;
+    this.file = builder.file;
+    int blocks = (builder.spilled + OFFSET_EVERY - 1) / OFFSET_EVERY;
+    this.offsets = Arrays.copyOf(builder.offsets, blocks);
+    this.spilled = builder.spilled;
+    this.segments = segments;
+  }
+
+  /**
+   * @param inMemoryRows rows after these are written to disk
+   */
+  public static <T> Builder<T> builder(int inMemoryRows, RowCodec<T> codec) {
+    if (inMemoryRows < 0) throw new IllegalArgumentException("inMemoryRows must not be negative");
+    return new Builder<>(inMemoryRows, codec);
+  }
+
+  @Override
+  public T get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+    if (index < onHeap.size()) return onHeap.get(index);
+
+    int row = index - onHeap.size();
+    long position = offsets[row / OFFSET_EVERY];
+    int segment = (int) (position / SEGMENT_SIZE);
+    // a duplicate so that concurrent reads do not share a position, the casts keep the java 8
+    // signatures of duplicate() and position()
+    MappedByteBuffer mapped = segments[segment];
+    if (mapped == null) {
+      throw new IllegalStateException("The list is closed, spilled rows can not be read");
+    }
+    ByteBuffer buffer = ((ByteBuffer) mapped).duplicate();
+    Buffer cursor = buffer;
+    cursor.position((int) (position - segment * SEGMENT_SIZE));
+    for (int skip = row % OFFSET_EVERY; skip > 0; skip--) {
+      int length = buffer.getInt();
+      cursor.position(cursor.position() + length);
+    }
+
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    try {
+      return codec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    } catch (IOException e) {
+      throw new UnCaughtException("Unable to read a spilled row", e);
+    }
+  }
+
+  @Override
+  public int size() {
+    return onHeap.size() + spilled;
+  }
+
+  /** True if some rows were written to disk. */
+  public boolean isSpilled() {
+    return spilled > 0;
+  }
+
+  /** Deletes the spill file, spilled rows can not be read after but the rows on the heap can. */
+  @Override
+  public void close() {
+    Arrays.fill(segments, null);
+    if (file != null) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // best effort, the file is left in the temp directory
+      }
+    }
+  }
+
+  /** Not thread safe, the built list is. */
+  public static class Builder<T> {
+    private final int inMemoryRows;
+    private final RowCodec<T> codec;
+    private final List<T> onHeap = new ArrayList<>();
+
+    private final ByteArrayOutputStream rowBytes = new ByteArrayOutputStream();
+    private final DataOutputStream rowOut = new DataOutputStream(rowBytes);
+
+    private Path file;
+    private DataOutputStream fileOut;
+    private long written = 0;
+    private int longestRow = 0;
+    private long[] offsets = new long[16];
+    private int spilled = 0;
+
+    private Builder(int inMemoryRows, RowCodec<T> codec) {
+      this.inMemoryRows = inMemoryRows;
+      this.codec = codec;
+    }
+
+    public Builder<T> add(T row) {
+      if (onHeap.size() < inMemoryRows) {
+        onHeap.add(row);
+        return this;
+      }
+
+      try {
+        spill(row);
+      } catch (IOException e) {
+        discard();
+        throw new UnCaughtException("Unable to spill a row to disk", e);
+      }
+      return this;
+    }
+
+    private void spill(T row) throws IOException {
+      if (fileOut == null) {
+        // not deleteOnExit, its entries are never released, close() and discard() delete it
+        file = Files.createTempFile("ezy-query-", ".rows");
+        fileOut =
+            new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND)));
+      }
+
+      rowBytes.reset();
+      codec.write(row, rowOut);
+      rowOut.flush();
+
+      if (spilled % OFFSET_EVERY == 0) {
+        int block = spilled / OFFSET_EVERY;
+        if (block == offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        offsets[block] = written;
+      }
+
+      fileOut.writeInt(rowBytes.size());
+      rowBytes.writeTo(fileOut);
+      written += 4 + rowBytes.size();
+      longestRow = Math.max(longestRow, 4 + rowBytes.size());
+      spilled++;
+    }
+
+    public SpillableList<T> build() {
+      if (fileOut == null) return new SpillableList<>(this, new MappedByteBuffer[0]);
+
+      try {
+        fileOut.close();
+        return new SpillableList<>(this, map());
+      } catch (IOException e) {
+        discard();
+        throw new UnCaughtException("Unable to map the spilled rows", e);
+      }
+    }
+
+    private MappedByteBuffer[] map() throws IOException {
+      long overlap = (long) OFFSET_EVERY * longestRow;
+      if (SEGMENT_SIZE + overlap > Integer.MAX_VALUE) {
+        throw new IOException("Rows of " + longestRow + " bytes are too large to spill");
+      }
+
+      int count = (int) ((written + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+      MappedByteBuffer[] segments = new MappedByteBuffer[count];
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        for (int i = 0; i < count; i++) {
+          long start = i * SEGMENT_SIZE;
+          long length = Math.min(written - start, SEGMENT_SIZE + overlap);
+          segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        }
+      }
+      return segments;
+    }
+
+    /** Deletes the spill file when the list can not be built. */
+    public void discard() {
+      if (file == null) return;
+      try {
+        if (fileOut != null) fileOut.close();
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // best effort, the file is left in the temp directory
+      }
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package io.github.kayr.ezyquery.util;
+
+import io.github.kayr.ezyquery.api.UnCaughtException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads for the async apis when running on java 21 or later. Looked up reflectively since
+ * the library is still compiled for java 8.
+ *
+ * <pre>{@code
+ * ExecutorService executor = VirtualThreads.newPerTaskExecutor();
+ * CompletableFuture<List<Orders.Result>> orders = ezySql.from(Orders.QUERY).listAsync(executor);
+ * }</pre>
+ */
+public class VirtualThreads {
+
+  private static final Method NEW_PER_TASK_EXECUTOR = findPerTaskExecutor();
+
+  private VirtualThreads() {}
+
+  public static boolean isSupported() {
+    return NEW_PER_TASK_EXECUTOR != null;
+  }
+
+  /** {@code Executors.newVirtualThreadPerTaskExecutor()}, fails before java 21. */
+  public static ExecutorService newPerTaskExecutor() {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("Virtual threads need java 21 or later");
+    }
+    try {
+      return (ExecutorService) NEW_PER_TASK_EXECUTOR.invoke(null);
+    } catch (Exception e) {
+      throw new UnCaughtException("Unable to create a virtual thread executor", e);
+    }
+  }
+
+  private static Method findPerTaskExecutor() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
@@ -1,13 +1,33 @@
 package io.github.kayr.ezyquery
 
+import io.github.kayr.ezyquery.api.EzyCriteria
+import io.github.kayr.ezyquery.api.Field
+import io.github.kayr.ezyquery.api.SqlBuilder
 import io.github.kayr.ezyquery.api.cnd.Cnd
+import io.github.kayr.ezyquery.cache.QueryCache
+import io.github.kayr.ezyquery.dialect.Dialect
 import io.github.kayr.ezyquery.it.Db
+import io.github.kayr.ezyquery.parser.QueryAndParams
+import io.github.kayr.ezyquery.parser.SqlParts
+import io.github.kayr.ezyquery.sql.ConnectionProvider
 import io.github.kayr.ezyquery.sql.Mappers
+import io.github.kayr.ezyquery.sql.RowCodec
+import io.github.kayr.ezyquery.sql.TxOptions
 import io.github.kayr.ezyquery.sql.Zql
 import io.github.kayr.ezyquery.testqueries.Offices
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+import java.sql.SQLException
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
 class EzySqlTest extends Specification {
     @Shared
     Db db
@@ -45,6 +65,266 @@ class EzySqlTest extends Specification {
         count == 0
     }
 
+    def 'test that cached results are shared until the tables are invalidated'() {
+        given:
+        def zql = Mock(Zql)
+        def cache = QueryCache.builder().build()
+        def ezySql = EzySql.withZql(zql).withCache(cache)
+
+        when:
+        def first = ezySql.from(Offices.QUERY).list()
+        def second = ezySql.from(Offices.QUERY).list()
+        def count = ezySql.from(Offices.QUERY).count()
+
+        then:
+        1 * zql.rows(_, _, _) >> [new Offices.Result()]
+        1 * zql.one(_, _, _) >> 1
+        first.is(second)
+        count == 1
+
+        when:
+        cache.invalidate('offices')
+        ezySql.from(Offices.QUERY).list()
+
+        then:
+        1 * zql.rows(_, _, _) >> []
+    }
+
+    def 'test that list and one on the same criteria are cached separately'() {
+        given:
+        def ezySql = db.ezySql().withCache(QueryCache.builder().build())
+        def rows = ezySql.from(Offices.QUERY).where(Offices.CODE.eq('1'))
+
+        when:
+        def list = rows.list()
+        def one = rows.mayBeOne()
+        def again = rows.list()
+
+        then:
+        list instanceof List
+        list.size() == 1
+        one.get() instanceof Offices.Result
+        one.get().code == '1'
+        again.is(list)
+    }
+
+    def 'test that cached lists cannot be modified'() {
+        given:
+        def ezySql = db.ezySql().withCache(QueryCache.builder().build())
+
+        when:
+        ezySql.from(Offices.QUERY).list().clear()
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def 'test that concurrent identical queries share one database call'() {
+        given:
+        def zql = Mock(Zql)
+        def ezySql = EzySql.withZql(zql).withCoalescing()
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def pool = Executors.newFixedThreadPool(4)
+
+        when:
+        def futures = (1..4).collect { pool.submit({ ezySql.from(Offices.QUERY).list() } as Callable) }
+        started.await()
+        Thread.sleep(200)
+        release.countDown()
+        def results = futures*.get()
+
+        then:
+        1 * zql.rows(_, _, _) >> { started.countDown(); release.await(); [new Offices.Result()] }
+        results.every { it.is(results[0]) }
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def 'test that concurrent list and one calls are not coalesced'() {
+        given:
+        def zql = Mock(Zql)
+        def ezySql = EzySql.withZql(zql).withCoalescing()
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def pool = Executors.newFixedThreadPool(2)
+
+        when:
+        def list = pool.submit({ ezySql.from(Offices.QUERY).list() } as Callable)
+        started.await()
+        def one = pool.submit({ ezySql.from(Offices.QUERY).mayBeOne() } as Callable)
+        def office = one.get(5, TimeUnit.SECONDS)
+        release.countDown()
+
+        then:
+        1 * zql.rows(_, _, _) >> { started.countDown(); release.await(); [new Offices.Result()] }
+        1 * zql.firstRow(_, _, _) >> new Offices.Result()
+        office.get() instanceof Offices.Result
+        list.get() instanceof List
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def 'test that coalescing does not keep results'() {
+        given:
+        def zql = Mock(Zql)
+        def ezySql = EzySql.withZql(zql).withCoalescing()
+
+        when:
+        ezySql.from(Offices.QUERY).list()
+        ezySql.from(Offices.QUERY).list()
+
+        then:
+        2 * zql.rows(_, _, _) >> []
+    }
+
+    def 'test that a pinned connection is used for all queries'() {
+        given:
+        def checkouts = new AtomicInteger()
+        def provider = new ConnectionProvider() {
+            @Override
+            Connection getConnection() throws Exception {
+                checkouts.incrementAndGet()
+                return db.ds.connection
+            }
+
+            @Override
+            void closeConnection(Connection connection) throws Exception {
+                connection.close()
+            }
+        }
+
+        when:
+        def count = EzySql.withProvider(provider).withPinnedConnection { tx ->
+            tx.from(Offices.QUERY).list()
+            tx.from(Offices.QUERY).mayBeOne()
+            tx.from(Offices.QUERY).count()
+        }
+
+        then:
+        count == 4
+        checkouts.get() == 1
+    }
+
+    def 'test that a transaction is rolled back when it fails'() {
+        given:
+        def ezySql = db.ezySql()
+        ezySql.zql.executeUpdate('CREATE TABLE tx_test (id INT)')
+
+        when:
+        ezySql.inTransaction { tx ->
+            tx.zql.executeUpdate('INSERT INTO tx_test (id) VALUES (1)')
+            throw new IllegalStateException('fail')
+        }
+
+        then:
+        thrown(IllegalStateException)
+        ezySql.zql.one(Long, 'SELECT COUNT(*) FROM tx_test', []) == 0
+
+        when:
+        ezySql.inTransaction(TxOptions.defaults().isolation(Connection.TRANSACTION_READ_COMMITTED)) { tx ->
+            tx.zql.executeUpdate('INSERT INTO tx_test (id) VALUES (1)')
+            tx.inTransaction { nested -> nested.zql.executeUpdate('INSERT INTO tx_test (id) VALUES (2)') }
+        }
+
+        then:
+        ezySql.zql.one(Long, 'SELECT COUNT(*) FROM tx_test', []) == 2
+
+        cleanup:
+        ezySql.zql.executeUpdate('DROP TABLE tx_test')
+    }
+
+    def 'test that streamed rows set the fetch size on the statement'() {
+        given:
+        def statement = Mock(PreparedStatement) {
+            executeQuery() >> Stub(ResultSet) { next() >> false }
+        }
+        def connection = Mock(Connection) {
+            prepareStatement(_) >> statement
+            getAutoCommit() >> true
+        }
+
+        when:
+        def rows = EzySql.withConnection(connection).withDialect(dialect)
+                .from(Offices.QUERY)
+                .withRows { it.toList() }
+
+        then:
+        rows == []
+        1 * statement.setFetchSize(fetchSize)
+        inTransaction * connection.setAutoCommit(false)
+
+        where:
+        dialect            | fetchSize         | inTransaction
+        Dialect.h2()       | 1000              | 0
+        Dialect.postgres() | 1000              | 1
+        Dialect.mysql()    | Integer.MIN_VALUE | 0
+    }
+
+    def 'test that failing to restore a broken connection does not hide the error'() {
+        given:
+        def connection = Stub(Connection) {
+            getAutoCommit() >> true
+            getTransactionIsolation() >> Connection.TRANSACTION_READ_COMMITTED
+            rollback() >> { throw new SQLException('rollback failed') }
+            setAutoCommit(true) >> { throw new SQLException('connection is broken') }
+        }
+
+        when:
+        EzySql.withConnection(connection).inTransaction { tx -> throw new IllegalStateException('fail') }
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == 'fail'
+        e.suppressed*.message == ['rollback failed', 'connection is broken']
+    }
+
+    def 'test count at most stops at the cap'() {
+        when:
+        def capped = db.ezySql().from(Offices.QUERY).countAtMost(2)
+        def notCapped = db.ezySql().from(Offices.QUERY).countAtMost(10)
+
+        then:
+        capped.value == 2
+        !capped.exact
+        capped.toString() == '2+'
+
+        notCapped.value == 4
+        notCapped.exact
+        notCapped.toString() == '4'
+    }
+
+    def 'test count at most is exact when the cap matches the rows'() {
+        when:
+        def count = db.ezySql().from(Offices.QUERY).countAtMost(4)
+
+        then:
+        count.value == 4
+        count.exact
+        count.toString() == '4'
+    }
+
+    def 'test list and count at most flags the count as not exact'() {
+        when:
+        def result = db.ezySql().from(Offices.QUERY).listAndCountAtMost(3)
+
+        then:
+        result.list.size() == 4
+        result.count == 3
+        !result.exact
+    }
+
+    def 'test estimate count falls back to an exact count'() {
+        when:
+        def result = db.ezySql().from(Offices.QUERY).listAndEstimateCount()
+
+        then:
+        result.count == 4
+        result.exact
+    }
+
     def 'test that may be one return an empty optional'() {
         when:
         def optional = db.ezySql().from(Offices.QUERY)
@@ -109,6 +389,20 @@ class EzySqlTest extends Specification {
 
     }
 
+    def 'test that in lists can be bound as an array'() {
+        when:
+        def query = db.ezySql().from(Offices.QUERY)
+                .where(Offices.CODE.in('1', '2', '3'))
+                .orderBy(Offices.CODE.asc())
+                .useArrayParams()
+
+        def offices = query.list()
+
+        then:
+        query.getQuery().sql.contains('officeCode = ANY(?)')
+        offices*.code == ['1', '2', '3']
+    }
+
     def 'test that you can use an offset'() {
         when:
         def offices = db.ezySql().from(Offices.QUERY)
@@ -253,10 +547,169 @@ class EzySqlTest extends Specification {
                 "  addressLine1 as \"addressLine\"\n" +
                 "FROM offices\n" +
                 "WHERE officeCode = ?\n" +
-                "LIMIT 50 OFFSET 0"
-        query.params.size() == 1
-        query.params[0] == 4
+                "LIMIT ? OFFSET ?"
+        query.params == [4, 50, 0]
     }
 
+    def 'test parallel scan reads every row once'() {
+        given:
+        def ezySql = db.ezySql()
+        ezySql.zql.executeUpdate('CREATE TABLE scan_test (id INT, name VARCHAR(10))')
+        (1..20).each { ezySql.zql.executeUpdate('INSERT INTO scan_test (id, name) VALUES (?, ?)', it, "n$it".toString()) }
+        ezySql.zql.executeUpdate('INSERT INTO scan_test (id, name) VALUES (NULL, \'none\')')
+
+        def id = Field.of('id', 'id', Integer)
+        def name = Field.of('name', 'name', String)
+        def query = new EzyQueryWithResult<Map>() {
+            QueryAndParams query(EzyCriteria criteria) { SqlBuilder.buildSql(this, criteria) }
+
+            List<Field<?>> fields() { [id, name] }
+
+            SqlParts schema() { SqlParts.of('scan_test') }
+
+            Class<Map> resultClass() { Map }
+        }
+
+        when:
+        def rows = ezySql.from(query).noLimit().mapTo(Mappers.toMap()).parallelScan(id, 3).withCloseable { it.toList()*.name }
+
+        then:
+        rows.size() == 21
+        rows.toSet() == ((1..20).collect { "n$it".toString() } + 'none').toSet()
+
+        when:
+        def filtered = ezySql.from(query).where(id.gt(15)).noLimit().mapTo(Mappers.toMap())
+                .parallelScan(id, 4).withCloseable { it.toList()*.id }
+
+        then:
+        filtered.sort() == [16, 17, 18, 19, 20]
+
+        when:
+        def selected = ezySql.from(query).select(name).noLimit().mapTo(Mappers.toMap())
+                .parallelScan(id, 3).withCloseable { it.toList() }
+
+        then:
+        selected.size() == 21
+        selected*.keySet().every { it == ['name'] as Set }
+        selected*.name.toSet() == ((1..20).collect { "n$it".toString() } + 'none').toSet()
+
+        when:
+        def executor = Executors.newFixedThreadPool(2)
+        def onExecutor = ezySql.from(query).noLimit().mapTo(Mappers.toMap())
+                .parallelScan(id, 4, executor).withCloseable { it.toList()*.id }
+        executor.shutdown()
+
+        then:
+        onExecutor.size() == 21
+
+        when:
+        ezySql.from(query).noLimit().orderBy(id.asc()).parallelScan(id, 2)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        ezySql.from(query).parallelScan(id, 2)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        ezySql.from(query).noLimit().offset(5L).parallelScan(id, 2)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        ezySql.from(query).noLimit().parallelScan(name, 2)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        ezySql.zql.executeUpdate('DROP TABLE scan_test')
+    }
+
+    def 'test closing a parallel scan early stops the readers'() {
+        given:
+        def ezySql = db.ezySql()
+        ezySql.zql.executeUpdate('CREATE TABLE scan_big (id INT)')
+        ezySql.zql.executeUpdate('INSERT INTO scan_big (id) SELECT X FROM SYSTEM_RANGE(1, 5000)')
+        def id = Field.of('id', 'id', Integer)
+        def query = new EzyQueryWithResult<Map>() {
+            QueryAndParams query(EzyCriteria criteria) { SqlBuilder.buildSql(this, criteria) }
+
+            List<Field<?>> fields() { [id] }
+
+            SqlParts schema() { SqlParts.of('scan_big') }
+
+            Class<Map> resultClass() { Map }
+        }
+        def executor = Executors.newFixedThreadPool(2)
+
+        when: 'the readers fill the queue and the consumer stops after one row'
+        def first = ezySql.from(query).noLimit().mapTo(Mappers.toMap())
+                .parallelScan(id, 2, executor).withCloseable { it.findFirst().get() }
+        executor.shutdown()
+
+        then: 'the readers blocked on the full queue give up their threads'
+        first.id != null
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        cleanup:
+        executor.shutdownNow()
+        ezySql.zql.executeUpdate('DROP TABLE scan_big')
+    }
+
+    def 'test no limit reads all rows'() {
+        when:
+        def query = db.ezySql().from(Offices.QUERY).limit(1).noLimit().getQuery()
+        def offices = db.ezySql().from(Offices.QUERY).limit(1).noLimit().list()
+
+        then:
+        !query.sql.contains('LIMIT')
+        query.params == []
+        offices.size() == 4
+    }
+
+    def 'test with rows maps the rows as they are iterated'() {
+        when:
+        def codes = db.ezySql().from(Offices.QUERY).orderBy(Offices.CODE.asc())
+                .withRows { rows -> [rows.next().code, rows.next().code, rows.hasNext()] }
+
+        then:
+        codes == ['1', '2', true]
+    }
+
+    def 'test async list and count'() {
+        given:
+        def pool = Executors.newFixedThreadPool(2)
+
+        when:
+        def result = db.ezySql().from(Offices.QUERY).listAndCountAsync(pool).get()
+        def count = db.ezySql().from(Offices.QUERY).where(Offices.CODE.eq('1')).countAsync(pool).get()
+
+        then:
+        result.list.size() == 4
+        result.count == 4
+        count == 1
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def 'test list spillable keeps the first rows on the heap'() {
+        when:
+        def offices = db.ezySql().from(Offices.QUERY).orderBy(Offices.CODE.asc())
+                .listSpillable(2, RowCodec.forClass(Offices.Result))
+
+        then:
+        offices.isSpilled()
+        offices.size() == 4
+        offices*.code == ['1', '2', '3', '4']
+
+        cleanup:
+        offices?.close()
+    }
 
 }
@@ -5,6 +5,7 @@ import io.github.kayr.ezyquery.api.cnd.Cnd
 import io.github.kayr.ezyquery.api.cnd.Conds
 import io.github.kayr.ezyquery.ast.EzyExpr
 import io.github.kayr.ezyquery.parser.EzySqlTranspiler
+import io.github.kayr.ezyquery.sql.SqlArray
 import io.github.kayr.ezyquery.testqueries.Booleans
 import spock.lang.Specification
 
@@ -66,6 +67,34 @@ class EzySqlTranspilerTest extends Specification {
         transpiled.params == ['name', 'ronald', 20, 30, 40]
     }
 
+    def 'test in lists can be bound as a single array param'() {
+        when:
+        def expr = Cnd.andAll(
+                Cnd.in('#age', [20, 30, 40]),
+                Cnd.notIn('#name', ['kay', 'ron']))
+                .asExpr()
+
+        def transpiled = EzySqlTranspiler.transpile(fields, expr, true)
+
+        then:
+        transpiled.sql == '(t.age = ANY(?) AND t.name <> ALL(?))'
+        transpiled.params == [SqlArray.of('integer', [20, 30, 40]), SqlArray.of('varchar', ['kay', 'ron'])]
+    }
+
+    def 'test in lists with mixed or field values fall back to placeholders'() {
+        when:
+        def expr = Cnd.andAll(
+                Cnd.in('#age', [20, 'thirty']),
+                Cnd.in('#age', [20, '#maxAge']))
+                .asExpr()
+
+        def transpiled = EzySqlTranspiler.transpile(fields, expr, true)
+
+        then:
+        transpiled.sql == '(t.age IN (?, ?) AND t.age IN (?, t.maxAge))'
+        transpiled.params == [20, 'thirty', 20]
+    }
+
     def "test build a query with in with empty list"() {
         given:
         def fields = [
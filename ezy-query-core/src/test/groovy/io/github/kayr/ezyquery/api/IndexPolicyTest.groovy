@@ -0,0 +1,163 @@
+package io.github.kayr.ezyquery.api
+
+import io.github.kayr.ezyquery.EzyQuery
+import io.github.kayr.ezyquery.EzySql
+import io.github.kayr.ezyquery.api.cnd.Cnd
+import io.github.kayr.ezyquery.parser.QueryAndParams
+import io.github.kayr.ezyquery.parser.SqlParts
+import io.github.kayr.ezyquery.sql.Mappers
+import io.github.kayr.ezyquery.sql.Zql
+import spock.lang.Specification
+
+class IndexPolicyTest extends Specification {
+
+    def fields = [new Field('t.name', 'name'), new Field('t.age', 'age')]
+
+    def indexedQuery = query(Optional.of(['name'] as Set))
+
+    def "queries on indexed fields pass every policy"() {
+        given:
+        def criteria = EzyCriteria.selectAll()
+                .where(Cnd.eq('#name', 'ronald'))
+                .orderBy('name')
+                .indexPolicy(policy)
+
+        expect:
+        SqlBuilder.buildSql(indexedQuery, criteria).sql.contains('ORDER BY t.name ASC')
+
+        where:
+        policy << [IndexPolicy.allow(), IndexPolicy.reject(), IndexPolicy.requireLimit(10)]
+    }
+
+    def "reject fails on unindexed sorts and filters"() {
+        given:
+        def criteria = EzyCriteria.selectAll().where(Cnd.gt('#age', 20)).orderBy('name').indexPolicy(IndexPolicy.reject())
+
+        when:
+        SqlBuilder.buildSql(indexedQuery, criteria)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message.contains('not indexed: [age]')
+    }
+
+    def "warn passes the unindexed fields to the listener"() {
+        given:
+        def warnings = []
+        def criteria = EzyCriteria.selectAll().orderBy('age').indexPolicy(IndexPolicy.warn { warnings << it })
+
+        when:
+        def sql = SqlBuilder.buildSql(indexedQuery, criteria).sql
+
+        then:
+        sql.contains('ORDER BY t.age ASC')
+        warnings.size() == 1
+        warnings[0].contains('[age]')
+    }
+
+    def "require limit allows small pages and capped counts"() {
+        given:
+        def base = EzyCriteria.selectAll().where(Cnd.gt('#age', 20)).indexPolicy(IndexPolicy.requireLimit(100))
+
+        when:
+        SqlBuilder.buildSql(indexedQuery, base.limit(100))
+        SqlBuilder.buildSql(indexedQuery, base.countAtMost(100))
+
+        then:
+        noExceptionThrown()
+
+        when:
+        SqlBuilder.buildSql(indexedQuery, base.limit(101))
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        SqlBuilder.buildSql(indexedQuery, base.count())
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "sorts are not checked for counts"() {
+        given:
+        def criteria = EzyCriteria.selectAll().orderBy('age').count().indexPolicy(IndexPolicy.reject())
+
+        when:
+        SqlBuilder.buildSql(indexedQuery, criteria)
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "queries without index metadata are not checked"() {
+        given:
+        def criteria = EzyCriteria.selectAll().where(Cnd.gt('#age', 20)).indexPolicy(IndexPolicy.reject())
+
+        when:
+        SqlBuilder.buildSql(query(Optional.empty()), criteria)
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "a policy set on the criteria wins over the EzySql policy"() {
+        given:
+        def warnings = []
+        def zql = Mock(Zql)
+        def ezySql = EzySql.withZql(zql).withIndexPolicy(IndexPolicy.reject())
+        def criteria = EzyCriteria.selectAll().orderBy('age').indexPolicy(IndexPolicy.warn { warnings << it })
+
+        when:
+        new EzySql.CriteriaBuilder(indexedQuery, ezySql, criteria, Mappers.toMap()).list()
+
+        then:
+        1 * zql.rows(_, { it.contains('ORDER BY t.age ASC') }, _) >> []
+        warnings.size() == 1
+
+        when:
+        new EzySql.CriteriaBuilder(indexedQuery, ezySql, EzyCriteria.selectAll().orderBy('age'), Mappers.toMap()).list()
+
+        then:
+        0 * zql.rows(*_)
+        thrown(IllegalArgumentException)
+    }
+
+    def "allow set on the criteria wins over a stricter EzySql policy"() {
+        given:
+        def zql = Mock(Zql)
+        def ezySql = EzySql.withZql(zql).withIndexPolicy(IndexPolicy.reject())
+        def criteria = EzyCriteria.selectAll().where(Cnd.gt('#age', 20)).indexPolicy(IndexPolicy.allow())
+
+        when:
+        new EzySql.CriteriaBuilder(indexedQuery, ezySql, criteria, Mappers.toMap()).list()
+
+        then:
+        1 * zql.rows(_, { it.contains('t.age') }, _) >> []
+        noExceptionThrown()
+    }
+
+    private EzyQuery query(Optional<Set<String>> indexed) {
+        return new EzyQuery() {
+            @Override
+            QueryAndParams query(EzyCriteria params) {
+                return SqlBuilder.buildSql(this, params)
+            }
+
+            @Override
+            List<Field<?>> fields() {
+                return IndexPolicyTest.this.fields
+            }
+
+            @Override
+            SqlParts schema() {
+                return SqlParts.of("my_table t")
+            }
+
+            @Override
+            Optional<Set<String>> indexedFields() {
+                return indexed
+            }
+        }
+    }
+}
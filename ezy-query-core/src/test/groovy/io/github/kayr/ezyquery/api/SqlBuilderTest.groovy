@@ -66,8 +66,8 @@ class SqlBuilderTest extends Specification {
                 '  t.maxAge as "maxAge"\n' +
                 'FROM my_table\n' +
                 'WHERE ((t.name = ?) AND (t.age > ?))\n' +
-                'LIMIT 10 OFFSET 2'
-
+                'LIMIT ? OFFSET ?'
+        query.params == ['ronald', 20, 10, 2]
 
     }
 
@@ -93,7 +93,7 @@ class SqlBuilderTest extends Specification {
                 '  t.maxAge as "maxAge"\n' +
                 'FROM my_table\n' +
                 'WHERE (t.name = ? OR t.age > ?)\n' +
-                'LIMIT 10 OFFSET 2'
+                'LIMIT ? OFFSET ?'
 
     }
 
@@ -121,13 +121,42 @@ class SqlBuilderTest extends Specification {
                     FROM my_table
                     WHERE (t.name = ? AND t.age > ?)
                     ORDER BY t.name ASC
-                    LIMIT 10 OFFSET 2'''.stripIndent().trim()
+                    LIMIT ? OFFSET ?'''.stripIndent().trim()
         then:
 
 
         query.sql == expected
     }
 
+    def "criteria derived from the same base do not share conditions"() {
+
+        def base = EzyCriteria.selectAll().where(Cnd.eq('#name', 'ronald'))
+
+        when:
+        def older = base.where(Cnd.gt('#age', 20))
+        def younger = base.where(Cnd.lt('#age', 20))
+
+        then:
+        base.conditions.size() == 1
+        SqlBuilder.buildSql(ezyQuery, older).sql.contains('WHERE (t.name = ? AND t.age > ?)\n')
+        SqlBuilder.buildSql(ezyQuery, younger).sql.contains('WHERE (t.name = ? AND t.age < ?)\n')
+    }
+
+    def "conditions are normalized before they are transpiled"() {
+
+        def criteria = EzyCriteria.selectAll()
+                .where(Cnd.trueCnd())
+                .where(Cnd.orAll(Cnd.eq('#name', 'ronald'), Cnd.eq('#name', 'joe')))
+                .where(Cnd.andAll(Cnd.gt('#age', 20), Cnd.gt('#age', 20)))
+
+        when:
+        def query = SqlBuilder.buildSql(ezyQuery, criteria)
+
+        then:
+        query.sql.contains('WHERE (t.name IN (?, ?) AND t.age > ?)\n')
+        query.params == ['ronald', 'joe', 20, 50, 0]
+    }
+
     def "test build with a filter and API"() {
 
 
@@ -153,8 +182,8 @@ class SqlBuilderTest extends Specification {
                 '  t.maxAge as "maxAge"\n' +
                 'FROM my_table\n' +
                 'WHERE (t.name = ? OR t.age > ? OR (t.office = ?) OR (t.maxAge > ?))\n' +
-                'LIMIT 10 OFFSET 2'
-        orQuery.params == ['ronald', 20, 'NY', 30]
+                'LIMIT ? OFFSET ?'
+        orQuery.params == ['ronald', 20, 'NY', 30, 10, 2]
 
     }
 
@@ -174,8 +203,8 @@ class SqlBuilderTest extends Specification {
                 '  t.maxAge as "maxAge"\n' +
                 'FROM my_table\n' +
                 'WHERE (1 = 1)\n' +
-                'LIMIT 10 OFFSET 2'
-        query.params == []
+                'LIMIT ? OFFSET ?'
+        query.params == [10, 2]
 
     }
 
@@ -196,8 +225,8 @@ class SqlBuilderTest extends Specification {
                 '  t.maxAge as "maxAge"\n' +
                 'FROM my_table\n' +
                 'WHERE (1 = 1)\n' +
-                'LIMIT 50 OFFSET 2'
-        query.params == []
+                'LIMIT ? OFFSET ?'
+        query.params == [50, 2]
 
     }
 
@@ -216,8 +245,8 @@ class SqlBuilderTest extends Specification {
                 '  t.maxAge as "maxAge"\n' +
                 'FROM my_table\n' +
                 'WHERE (1 = 1)\n' +
-                'LIMIT 15 OFFSET 0'
-        query.params == []
+                'LIMIT ? OFFSET ?'
+        query.params == [15, 0]
 
     }
 
@@ -252,8 +281,8 @@ class SqlBuilderTest extends Specification {
                 '  t.age as "age"\n' +
                 'FROM my_table\n' +
                 'WHERE (1 = 1)\n' +
-                'LIMIT 15 OFFSET 0'
-        query.params == []
+                'LIMIT ? OFFSET ?'
+        query.params == [15, 0]
 
     }
 
@@ -275,8 +304,8 @@ class SqlBuilderTest extends Specification {
                 'FROM my_table\n' +
                 'WHERE (1 = 1)\n' +
                 'ORDER BY t.name ASC, t.age DESC\n' +
-                'LIMIT 15 OFFSET 0'
-        query.params == []
+                'LIMIT ? OFFSET ?'
+        query.params == [15, 0]
 
     }
 
@@ -296,8 +325,8 @@ class SqlBuilderTest extends Specification {
                 'FROM my_table\n' +
                 'WHERE (1 = 1)\n' +
                 'ORDER BY t.name ASC, t.age ASC\n' +
-                'LIMIT 15 OFFSET 0'
-        query.params == []
+                'LIMIT ? OFFSET ?'
+        query.params == [15, 0]
 
     }
 
@@ -317,8 +346,8 @@ class SqlBuilderTest extends Specification {
                 'FROM my_table\n' +
                 'WHERE (1 = 1)\n' +
                 'ORDER BY t.name ASC\n' +
-                'LIMIT 15 OFFSET 0'
-        query.params == []
+                'LIMIT ? OFFSET ?'
+        query.params == [15, 0]
 
     }
 
@@ -343,8 +372,8 @@ class SqlBuilderTest extends Specification {
                 'FROM my_table\n' +
                 'WHERE (t.name = 123) AND (1 = 1)\n' +
                 'ORDER BY t.name ASC\n' +
-                'LIMIT 15 OFFSET 0'
-        query.params == []
+                'LIMIT ? OFFSET ?'
+        query.params == [15, 0]
 
     }
 
@@ -370,8 +399,8 @@ class SqlBuilderTest extends Specification {
                 'FROM my_table\n' +
                 'WHERE (t.name = 123) AND (t.name = ? AND t.age = ?)\n' +
                 'ORDER BY t.name ASC\n' +
-                'LIMIT 15 OFFSET 0'
-        query.params == ['RK', 1]
+                'LIMIT ? OFFSET ?'
+        query.params == ['RK', 1, 15, 0]
 
     }
 
@@ -440,9 +469,9 @@ class SqlBuilderTest extends Specification {
                 '  t.age as "age"\n' +
                 'FROM my_table inner join my_other_table on my_table.id = my_other_table.id and ? = my_other_table.name  or  my_other_table.gender in (?,?)\n' +
                 'WHERE t.name = ?\n' +
-                'LIMIT 50 OFFSET 0'
+                'LIMIT ? OFFSET ?'
 
-        params == ['NAME VALUE', 'M', 'F', 'RK']
+        params == ['NAME VALUE', 'M', 'F', 'RK', 50, 0]
     }
 
     def 'with params params in default where clause'() {
@@ -481,9 +510,9 @@ class SqlBuilderTest extends Specification {
                 '  t.age as "age"\n' +
                 'FROM my_table t\n' +
                 'WHERE (t.name = ? and t.age in (?,?,?)) AND (t.name = ?)\n' +
-                'LIMIT 50 OFFSET 0'
+                'LIMIT ? OFFSET ?'
 
-        params == ['NAME VALUE', 10, 15, 20, 'RK']
+        params == ['NAME VALUE', 10, 15, 20, 'RK', 50, 0]
     }
 
     def 'with params in the order by clause'() {
@@ -524,9 +553,9 @@ class SqlBuilderTest extends Specification {
                 'FROM my_table t\n' +
                 'WHERE t.name = ?\n' +
                 ' ORDER BY  t.age + ? * ? desc\n' +
-                'LIMIT 50 OFFSET 0'
+                'LIMIT ? OFFSET ?'
 
-        params == ['RK', 10, 15]
+        params == ['RK', 10, 15, 50, 0]
     }
 
     def 'with params in all clauses'() {
@@ -572,9 +601,9 @@ class SqlBuilderTest extends Specification {
                 'FROM my_table t inner join my_other_table t2 on t.id = t2.id and t.name = ? and t.age in (?,?,?)\n' +
                 'WHERE (t.name = ? and t.age in (?,?,?)) AND (t.name = ?)\n' +
                 'ORDER BY t.age ASC\n' + //default order by is overridden
-                'LIMIT 50 OFFSET 0'
+                'LIMIT ? OFFSET ?'
 
-        params == ['NAME VALUE', 10, 15, 20, 'NAME VALUE', 10, 15, 20, 'RK']
+        params == ['NAME VALUE', 10, 15, 20, 'NAME VALUE', 10, 15, 20, 'RK', 50, 0]
     }
 
     def 'test building a query with a CTE'() {
@@ -604,9 +633,9 @@ SELECT
 FROM Customers c
 JOIN "SalesRepInfo" "s" ON "c"."salesRepEmployeeNumber" = "s"."employeeNumber"
 WHERE (1 = 1)
-LIMIT 50 OFFSET 0'''
+LIMIT ? OFFSET ?'''
 
-        sql.params == ['Sales Rep']
+        sql.params == ['Sales Rep', 50, 0]
     }
 
     def 'test building query with dynamic inner query'() {
@@ -633,13 +662,231 @@ FROM (SELECT salesRepEmployeeNumber, COUNT(*) AS totalCustomers FROM customers W
 JOIN employees e ON c.salesRepEmployeeNumber = e.employeeNumber
 JOIN offices o ON e.officeCode = o.officeCode
 WHERE o.officeCode IN (?, ?, ?)
-LIMIT 50 OFFSET 0'''
+LIMIT ? OFFSET ?'''
+
+        sql.params == [12, 10, '1', '2', '3', 50, 0]
+
+
+    }
+
+
+    def officeName = new Field('o.name', 'officeName')
+
+    def queryWithOptionalJoin = new EzyQueryAdapter() {
+        @Override
+        List<Field<?>> fields() {
+            return [name, officeName]
+        }
+
+        @Override
+        SqlParts schema() {
+            return SqlParts.of("my_table t\nLEFT JOIN offices o ON o.id = t.office_id")
+        }
+
+        @Override
+        Optional<SchemaGraph> schemaGraph() {
+            return Optional.of(SchemaGraph.builder()
+                    .from('t', SqlParts.of('my_table t'))
+                    .join('o', true, SqlParts.of('LEFT JOIN offices o ON o.id = t.office_id'), 't')
+                    .field('name', 't')
+                    .field('officeName', 'o')
+                    .build())
+        }
+    }
+
+    def 'count leaves out optional joins that are not filtered on'() {
+        when:
+        def count = SqlBuilder.buildSql(queryWithOptionalJoin, EzyCriteria.selectCount().where(name.eq('RK')))
+
+        then:
+        count.sql == 'SELECT \n' +
+                ' COUNT(*) \n' +
+                'FROM my_table t\n' +
+                'WHERE t.name = ?'
+        count.params == ['RK']
+    }
+
+    def 'count keeps optional joins that are filtered on'() {
+        when:
+        def count = SqlBuilder.buildSql(queryWithOptionalJoin, EzyCriteria.selectCount().where(officeName.eq('NY')))
+
+        then:
+        count.sql == 'SELECT \n' +
+                ' COUNT(*) \n' +
+                'FROM my_table t\n' +
+                'LEFT JOIN offices o ON o.id = t.office_id\n' +
+                'WHERE o.name = ?'
+    }
+
+    def 'count uses the schema of the query as it is when every join is needed'() {
+        given:
+        def query = new EzyQueryAdapter() {
+            @Override
+            List<Field<?>> fields() {
+                return [name, officeName]
+            }
+
+            @Override
+            SqlParts schema() {
+                return SqlParts.of("my_table t\n    LEFT JOIN offices o\n      ON o.id = t.office_id")
+            }
+
+            @Override
+            Optional<SchemaGraph> schemaGraph() {
+                return Optional.of(SchemaGraph.builder()
+                        .from('t', SqlParts.of('my_table t'))
+                        .join('o', true, SqlParts.of('LEFT JOIN offices o ON o.id = t.office_id'), 't')
+                        .field('name', 't')
+                        .field('officeName', 'o')
+                        .build())
+            }
+        }
 
-        sql.params == [12, 10, '1', '2', '3']
+        when:
+        def count = SqlBuilder.buildSql(query, EzyCriteria.selectCount().where(officeName.eq('NY')))
+
+        then:
+        count.sql == 'SELECT \n' +
+                ' COUNT(*) \n' +
+                'FROM my_table t\n' +
+                '    LEFT JOIN offices o\n' +
+                '      ON o.id = t.office_id\n' +
+                'WHERE o.name = ?'
+    }
+
+    def 'count keeps all joins when filtering with raw sql'() {
+        when:
+        def count = SqlBuilder.buildSql(queryWithOptionalJoin, EzyCriteria.selectCount().where(Cnd.sql('o.name = ?', 'NY')))
+
+        then:
+        count.sql.contains('LEFT JOIN offices o')
+    }
+
+    def 'select keeps all joins'() {
+        when:
+        def select = SqlBuilder.buildSql(queryWithOptionalJoin, EzyCriteria.selectAll().where(name.eq('RK')))
+
+        then:
+        select.sql.contains('LEFT JOIN offices o')
+    }
+
+    def 'select uses the schema of the query as it is when every join is needed'() {
+        given:
+        def schema = "my_table t\n    LEFT JOIN offices o\n      ON o.id = t.office_id"
+        def query = new EzyQueryAdapter() {
+            @Override
+            List<Field<?>> fields() {
+                return [name, officeName]
+            }
+
+            @Override
+            SqlParts schema() {
+                return SqlParts.of(schema)
+            }
+
+            @Override
+            Optional<SchemaGraph> schemaGraph() {
+                return Optional.of(SchemaGraph.builder()
+                        .from('t', SqlParts.of('my_table t'))
+                        .join('o', true, SqlParts.of('LEFT JOIN offices o ON o.id = t.office_id'), 't')
+                        .field('name', 't')
+                        .field('officeName', 'o')
+                        .build())
+            }
+        }
+
+        when:
+        def select = SqlBuilder.buildSql(query, criteria)
+
+        then:
+        select.sql == 'SELECT \n' +
+                columns +
+                'FROM ' + schema + '\n' +
+                'WHERE 1 = 1\n' +
+                orderBy +
+                'LIMIT ? OFFSET ?'
+
+        where:
+        criteria                                                        | columns                                            | orderBy
+        EzyCriteria.selectAll()                                         | '  t.name as "name", \n  o.name as "officeName"\n' | ''
+        EzyCriteria.selectAll().addSelect('officeName')                 | '  o.name as "officeName"\n'                       | ''
+        EzyCriteria.selectAll().addSelect('name').orderBy('officeName') | '  t.name as "name"\n'                             | 'ORDER BY o.name ASC\n'
+    }
+
+    def 'select leaves out optional joins of fields that are not selected'() {
+        when:
+        def select = SqlBuilder.buildSql(queryWithOptionalJoin, EzyCriteria.selectAll().addSelect('name').where(name.eq('RK')))
 
+        then:
+        select.sql == 'SELECT \n' +
+                '  t.name as "name"\n' +
+                'FROM my_table t\n' +
+                'WHERE t.name = ?\n' +
+                'LIMIT ? OFFSET ?'
+        select.params == ['RK', 50, 0]
+    }
 
+    def 'select keeps optional joins that are sorted on'() {
+        when:
+        def select = SqlBuilder.buildSql(queryWithOptionalJoin, EzyCriteria.selectAll().addSelect('name').orderBy('officeName'))
+
+        then:
+        select.sql.contains('LEFT JOIN offices o')
     }
 
+    def 'select keeps optional joins used by the default order by'() {
+        given:
+        def query = new EzyQueryAdapter() {
+            @Override
+            List<Field<?>> fields() {
+                return [name, officeName]
+            }
+
+            @Override
+            SqlParts schema() {
+                return SqlParts.of("my_table t\nLEFT JOIN offices o ON o.id = t.office_id")
+            }
+
+            @Override
+            Optional<SqlParts> orderByClause() {
+                return Optional.of(SqlParts.of('o.name'))
+            }
+
+            @Override
+            Optional<SchemaGraph> schemaGraph() {
+                return Optional.of(SchemaGraph.builder()
+                        .from('t', SqlParts.of('my_table t'))
+                        .join('o', true, SqlParts.of('LEFT JOIN offices o ON o.id = t.office_id'), 't')
+                        .field('name', 't')
+                        .field('officeName', 'o')
+                        .orderBy('o')
+                        .build())
+            }
+        }
+
+        when:
+        def select = SqlBuilder.buildSql(query, EzyCriteria.selectAll().addSelect('name'))
+        def sorted = SqlBuilder.buildSql(query, EzyCriteria.selectAll().addSelect('name').orderBy('name'))
+
+        then:
+        select.sql.contains('LEFT JOIN offices o')
+        !sorted.sql.contains('LEFT JOIN offices o')
+    }
+
+    def 'capped count wraps a limited select'() {
+        when:
+        def count = SqlBuilder.buildSql(queryWithOptionalJoin, EzyCriteria.selectAll().countAtMost(100))
+
+        then:
+        count.sql == 'SELECT COUNT(*) FROM (\n' +
+                'SELECT \n' +
+                '  1\n' +
+                'FROM my_table t\n' +
+                'WHERE 1 = 1\n' +
+                'LIMIT ? OFFSET ?\n' +
+                ') ezy_count'
+        count.params == [100, 0]
+    }
 
     static abstract class EzyQueryAdapter implements EzyQueryWithResult {
         @Override
@@ -1,7 +1,11 @@
 package io.github.kayr.ezyquery.api.cnd
 
+import io.github.kayr.ezyquery.EzyQuery
+import io.github.kayr.ezyquery.api.EzyCriteria
 import io.github.kayr.ezyquery.api.Field
+import io.github.kayr.ezyquery.ast.BinaryExpr
 import io.github.kayr.ezyquery.parser.EzySqlTranspiler
+import io.github.kayr.ezyquery.testqueries.Offices
 import spock.lang.Specification
 
 class CndFromMapTest extends Specification {
@@ -52,4 +56,83 @@ class CndFromMapTest extends Specification {
         ['name.isnotnull': null]           | "#name is not null"                                 | "t.name IS NOT NULL"                           | []
         [name: ['John'], age: ['10']]      | "(#name = John AND #age = 10)"                      | "(t.name = ? AND t.age = ?)"                   | ['John', '10']
     }
+
+    def "conditions are joined into one flat and"() {
+        when:
+        def cond = CndFromMap.create().from(['name': ['John'], 'age.gt': [10], 'office.in': ['a,b', 'c']])
+
+        then:
+        cond instanceof Conds
+        (cond as Conds).operator == BinaryExpr.Op.AND
+        (cond as Conds).cnds.size() == 3
+        EzySqlTranspiler.transpile(fields, cond.asExpr()).params.size() == 5
+    }
+
+    def "multiple operands for one key are joined into one flat and"() {
+        when:
+        def cond = CndFromMap.create().from(['age.gt': [10, 20, 30]])
+
+        then:
+        cond instanceof Conds
+        (cond as Conds).cnds.size() == 3
+        cond.asExpr().toString() == "(#age > 10 AND #age > 20 AND #age > 30)"
+    }
+
+    def "parsed keys are reused across calls"() {
+        expect:
+        CndFromMap.create().from(['age.gt': [10]]).asExpr().toString() == "#age > 10"
+        CndFromMap.create().from(['age.gt': [20]]).asExpr().toString() == "#age > 20"
+    }
+
+    def "unknown operator fails"() {
+        when:
+        CndFromMap.create().from(['age.bigger': [10]])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unknown operator: bigger"
+    }
+
+    def "unknown field fails when validating against a query"() {
+        when:
+        CndFromMap.forQuery(Offices.QUERY).from(['country': ['UG'], 'salary.gt': [10]])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unknown field: salary"
+    }
+
+    def "fields are validated per query instance"() {
+        given:
+        def withName = Stub(EzyQuery) { fields() >> [Field.of('t.name', 'name', String)] }
+        def withAge = Stub(EzyQuery) { fields() >> [Field.of('t.age', 'age', Integer)] }
+
+        when:
+        CndFromMap.forQuery(withName).from(['name': ['Ron']])
+        CndFromMap.forQuery(withAge).from(['age.gt': [10]])
+        CndFromMap.forQuery(withAge).from(['name': ['Ron']])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unknown field: name"
+    }
+
+    def "known fields pass when validating against a query"() {
+        when:
+        def criteria = EzyCriteria.fromMvMap(['country': ['UG'], 'code.in': ['1,2'], '_limit': ['5']], Offices.QUERY)
+
+        then:
+        criteria.limit == 5
+        criteria.conditions.size() == 1
+        criteria.conditions[0].asExpr().toString() == "(#country = UG AND #code in [1, 2])" ||
+                criteria.conditions[0].asExpr().toString() == "(#code in [1, 2] AND #country = UG)"
+    }
+
+    def "fromMvMap with a query rejects unknown fields"() {
+        when:
+        EzyCriteria.fromMvMap(['unknown.eq': ['x']], Offices.QUERY)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
 }
@@ -0,0 +1,159 @@
+package io.github.kayr.ezyquery.cache
+
+import io.github.kayr.ezyquery.parser.QueryAndParams
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class QueryCacheTest extends Specification {
+
+    def query = QueryAndParams.of('SELECT * FROM offices WHERE code = ?', ['1'])
+
+    def 'test that results are cached by sql, params and result type'() {
+        given:
+        def cache = QueryCache.builder().build()
+        def loads = new AtomicInteger()
+
+        when:
+        def first = cache.get(query, String, ['offices']) { loads.incrementAndGet(); 'one' }
+        def second = cache.get(QueryAndParams.of(query.sql, ['1']), String, ['offices']) { loads.incrementAndGet(); 'two' }
+        def otherParams = cache.get(QueryAndParams.of(query.sql, ['2']), String, ['offices']) { loads.incrementAndGet(); 'three' }
+        def otherType = cache.get(query, Map, ['offices']) { loads.incrementAndGet(); 'four' }
+
+        then:
+        first == 'one'
+        second == 'one'
+        otherParams == 'three'
+        otherType == 'four'
+        loads.get() == 3
+        cache.stats().hits == 1
+        cache.stats().misses == 3
+        cache.stats().size == 3
+    }
+
+    def 'test that array params are compared by value'() {
+        given:
+        def cache = QueryCache.builder().build()
+
+        when:
+        cache.get(QueryAndParams.of('SELECT 1', [['a', 'b'] as Object[]]), String, []) { 'one' }
+        def result = cache.get(QueryAndParams.of('SELECT 1', [['a', 'b'] as Object[]]), String, []) { 'two' }
+
+        then:
+        result == 'one'
+    }
+
+    def 'test that entries expire'() {
+        given:
+        def now = 0L
+        def cache = QueryCache.builder().ttl(Duration.ofSeconds(10)).clock({ now }).build()
+
+        when:
+        cache.get(query, String, []) { 'one' }
+        now = TimeUnit.SECONDS.toNanos(9)
+        def beforeExpiry = cache.get(query, String, []) { 'two' }
+        now = TimeUnit.SECONDS.toNanos(10)
+        def afterExpiry = cache.get(query, String, []) { 'three' }
+
+        then:
+        beforeExpiry == 'one'
+        afterExpiry == 'three'
+    }
+
+    def 'test that entries are invalidated by table'() {
+        given:
+        def cache = QueryCache.builder().build()
+        def other = QueryAndParams.of('SELECT * FROM customers')
+        cache.get(query, String, ['offices', 'employees']) { 'offices' }
+        cache.get(other, String, ['customers']) { 'customers' }
+
+        when:
+        cache.invalidate('EMPLOYEES')
+
+        then:
+        cache.get(query, String, []) { 'reloaded' } == 'reloaded'
+        cache.get(other, String, []) { 'reloaded' } == 'customers'
+
+        when:
+        cache.invalidateAll()
+
+        then:
+        cache.stats().size == 0
+        cache.stats().weight == 0
+    }
+
+    def 'test that the least recently used entries are evicted'() {
+        given:
+        def cache = QueryCache.builder().maxEntries(2).build()
+        def q1 = QueryAndParams.of('SELECT 1')
+        def q2 = QueryAndParams.of('SELECT 2')
+        def q3 = QueryAndParams.of('SELECT 3')
+
+        when:
+        cache.get(q1, String, []) { '1' }
+        cache.get(q2, String, []) { '2' }
+        cache.get(q1, String, []) { 'x' }
+        cache.get(q3, String, []) { '3' }
+
+        then:
+        cache.stats().evictions == 1
+        cache.get(q1, String, []) { 'x' } == '1'
+        cache.get(q2, String, []) { 'reloaded' } == 'reloaded'
+    }
+
+    def 'test that entries are evicted by weight'() {
+        given:
+        def cache = QueryCache.builder().maxWeight(5).build()
+
+        when:
+        cache.get(QueryAndParams.of('SELECT 1'), List, []) { [1, 2, 3] }
+        cache.get(QueryAndParams.of('SELECT 2'), List, []) { [1, 2, 3] }
+        cache.get(QueryAndParams.of('SELECT 3'), List, []) { [1, 2, 3, 4, 5, 6] }
+
+        then: 'results heavier than the cache are not kept'
+        cache.stats().size == 1
+        cache.stats().weight == 3
+        cache.stats().evictions == 1
+    }
+
+    def 'test that concurrent misses load once'() {
+        given:
+        def cache = QueryCache.builder().build()
+        def loads = new AtomicInteger()
+        def release = new CountDownLatch(1)
+        def pool = Executors.newFixedThreadPool(8)
+
+        when:
+        def futures = (1..8).collect {
+            pool.submit({
+                cache.get(query, String, []) {
+                    loads.incrementAndGet()
+                    release.await()
+                    'one'
+                }
+            } as java.util.concurrent.Callable)
+        }
+        Thread.sleep(200)
+        release.countDown()
+        def results = futures*.get()
+
+        then:
+        results.every { it == 'one' }
+        loads.get() == 1
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def 'test that invalid settings are rejected'() {
+        when:
+        QueryCache.builder().ttl(Duration.ZERO)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,213 @@
+package io.github.kayr.ezyquery.dialect
+
+import io.github.kayr.ezyquery.EzyQueryWithResult
+import io.github.kayr.ezyquery.api.EzyCriteria
+import io.github.kayr.ezyquery.api.Field
+import io.github.kayr.ezyquery.api.SqlBuilder
+import io.github.kayr.ezyquery.api.cnd.Cnd
+import io.github.kayr.ezyquery.parser.QueryAndParams
+import io.github.kayr.ezyquery.parser.SqlParts
+import spock.lang.Specification
+
+class DialectTest extends Specification {
+
+    def fields = [new Field('t.name', 'name'), new Field('t.age', 'age')]
+
+    def ezyQuery = new EzyQueryWithResult() {
+        @Override
+        QueryAndParams query(EzyCriteria params) {
+            return null
+        }
+
+        @Override
+        Class resultClass() {
+            return null
+        }
+
+        @Override
+        List<Field<?>> fields() {
+            return fields
+        }
+
+        @Override
+        SqlParts schema() {
+            return SqlParts.of("my_table")
+        }
+    }
+
+    def 'default dialect keeps the generic sql'() {
+        when:
+        def query = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().limit(10, 2))
+
+        then:
+        query.sql == 'SELECT \n' +
+                '  t.name as "name", \n' +
+                '  t.age as "age"\n' +
+                'FROM my_table\n' +
+                'WHERE 1 = 1\n' +
+                'LIMIT ? OFFSET ?'
+        query.params == [10, 2]
+    }
+
+    def 'mysql quotes aliases with backticks'() {
+        when:
+        def query = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().limit(10, 2).dialect(Dialect.mysql()))
+
+        then:
+        query.sql == 'SELECT \n' +
+                '  t.name as `name`, \n' +
+                '  t.age as `age`\n' +
+                'FROM my_table\n' +
+                'WHERE 1 = 1\n' +
+                'LIMIT ? OFFSET ?'
+        query.params == [10, 2]
+    }
+
+    def 'sql server uses OFFSET FETCH for the first page'() {
+        when:
+        def query = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().limit(10).dialect(Dialect.sqlServer()))
+
+        then:
+        query.sql == 'SELECT \n' +
+                '  t.name as [name], \n' +
+                '  t.age as [age]\n' +
+                'FROM my_table\n' +
+                'WHERE 1 = 1\n' +
+                'ORDER BY (SELECT NULL)\n' +
+                'OFFSET ? ROWS FETCH NEXT ? ROWS ONLY'
+        query.params == [0L, 10]
+    }
+
+    def 'sql server uses TOP for capped counts'() {
+        when:
+        def query = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().countAtMost(100).dialect(Dialect.sqlServer()))
+
+        then:
+        query.sql == 'SELECT COUNT(*) FROM (\n' +
+                'SELECT TOP (?) \n' +
+                '  1\n' +
+                'FROM my_table\n' +
+                'WHERE 1 = 1\n' +
+                ') ezy_count'
+        query.params == [100]
+    }
+
+    def 'sql server uses OFFSET FETCH and adds an order by when missing'() {
+        when:
+        def query = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().limit(10, 20).dialect(Dialect.sqlServer()))
+
+        then:
+        query.sql == 'SELECT \n' +
+                '  t.name as [name], \n' +
+                '  t.age as [age]\n' +
+                'FROM my_table\n' +
+                'WHERE 1 = 1\n' +
+                'ORDER BY (SELECT NULL)\n' +
+                'OFFSET ? ROWS FETCH NEXT ? ROWS ONLY'
+        query.params == [20, 10]
+
+        when:
+        query = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().orderBy('name').limit(10, 20).dialect(Dialect.sqlServer()))
+
+        then:
+        query.sql == 'SELECT \n' +
+                '  t.name as [name], \n' +
+                '  t.age as [age]\n' +
+                'FROM my_table\n' +
+                'WHERE 1 = 1\n' +
+                'ORDER BY t.name ASC\n' +
+                'OFFSET ? ROWS FETCH NEXT ? ROWS ONLY'
+        query.params == [20, 10]
+    }
+
+    def 'oracle uses the row limiting clause'() {
+        when:
+        def firstPage = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().limit(10).dialect(Dialect.oracle()))
+        def secondPage = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().limit(10, 10).dialect(Dialect.oracle()))
+
+        then:
+        firstPage.sql.endsWith('WHERE 1 = 1\nOFFSET ? ROWS FETCH NEXT ? ROWS ONLY')
+        firstPage.params == [0L, 10]
+        secondPage.sql == firstPage.sql
+        secondPage.params == [10, 10]
+    }
+
+    def 'every page of a query has the same sql'() {
+        when:
+        def page1 = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().limit(10, 0))
+        def page2 = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().limit(10, 10))
+
+        then:
+        page1.sql == page2.sql
+        page1.params == [10, 0]
+        page2.params == [10, 10]
+    }
+
+    def 'every page of a query has the same sql in every dialect'() {
+        when:
+        def page1 = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().limit(10, 0).dialect(dialect))
+        def page2 = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectAll().limit(10, 10).dialect(dialect))
+
+        then:
+        page1.sql == page2.sql
+
+        where:
+        dialect << [Dialect.defaultDialect(), Dialect.mysql(), Dialect.postgres(), Dialect.h2(), Dialect.sqlServer(), Dialect.oracle()]
+    }
+
+    def 'count queries are not paginated'() {
+        when:
+        def query = SqlBuilder.buildSql(ezyQuery, EzyCriteria.selectCount().limit(10).dialect(Dialect.sqlServer()))
+
+        then:
+        query.sql == 'SELECT \n' +
+                ' COUNT(*) \n' +
+                'FROM my_table\n' +
+                'WHERE 1 = 1'
+        query.params == []
+    }
+
+    def 'hints are rendered per dialect'() {
+        when:
+        def generic = SqlBuilder.buildSql(ezyQuery, EzyCriteria.select('name').hint('NO_INDEX(t)').limit(5))
+        def sqlServer = SqlBuilder.buildSql(ezyQuery, EzyCriteria.select('name').hint('RECOMPILE').limit(5).dialect(Dialect.sqlServer()))
+
+        then:
+        generic.sql == 'SELECT /*+ NO_INDEX(t) */ \n' +
+                '  t.name as "name"\n' +
+                'FROM my_table\n' +
+                'WHERE 1 = 1\n' +
+                'LIMIT ? OFFSET ?'
+
+        sqlServer.sql == 'SELECT \n' +
+                '  t.name as [name]\n' +
+                'FROM my_table\n' +
+                'WHERE 1 = 1\n' +
+                'ORDER BY (SELECT NULL)\n' +
+                'OFFSET ? ROWS FETCH NEXT ? ROWS ONLY\n' +
+                'OPTION (RECOMPILE)'
+    }
+
+    def 'array params are only used when the dialect supports them'() {
+        def criteria = EzyCriteria.selectAll().where(Cnd.in('#age', [1, 2])).useArrayParams()
+
+        when:
+        def postgres = SqlBuilder.buildSql(ezyQuery, criteria.dialect(Dialect.postgres()))
+        def mysql = SqlBuilder.buildSql(ezyQuery, criteria.dialect(Dialect.mysql()))
+
+        then:
+        postgres.sql.contains('WHERE t.age = ANY(?)')
+        mysql.sql.contains('WHERE t.age IN (?, ?)')
+        mysql.params == [1, 2, 50, 0]
+    }
+
+    def 'postgres row estimate is read from the top plan node'() {
+        def plan = '''[{"Plan": {"Node Type": "Hash Join", "Plan Rows": 1520,
+                        "Plans": [{"Node Type": "Seq Scan", "Plan Rows": 3000}]}}]'''
+
+        expect:
+        PostgresDialect.parsePlanRows(plan) == Optional.of(1520L)
+        PostgresDialect.parsePlanRows('[]') == Optional.empty()
+        PostgresDialect.parsePlanRows(null) == Optional.empty()
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.kayr.ezyquery.it;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import javax.sql.DataSource;
+
+/**
+ * A data source that answers every query with the same rows, count queries get the number of
+ * rows. It is built from plain proxies without any locks so that a virtual thread pinned while
+ * using it can only be pinned by the caller. Queries park briefly like a driver waiting on the
+ * network, which is when a pinned virtual thread is reported.
+ */
+public class StubDataSource {
+
+  private static final long QUERY_LATENCY_NANOS = 50_000;
+
+  private final String[] labels;
+  private final Object[][] rows;
+
+  public StubDataSource(String[] labels, Object[][] rows) {
+    this.labels = labels;
+    this.rows = rows;
+  }
+
+  public DataSource dataSource() {
+    return proxy(
+        DataSource.class,
+        (method, args) -> method.getName().equals("getConnection") ? connection() : null);
+  }
+
+  private Connection connection() {
+    return proxy(
+        Connection.class,
+        (method, args) -> {
+          switch (method.getName()) {
+            case "prepareStatement":
+              return statement((String) args[0]);
+            case "getAutoCommit":
+              return true;
+            default:
+              return null;
+          }
+        });
+  }
+
+  private PreparedStatement statement(String sql) {
+    boolean count = sql.toUpperCase().contains("COUNT(");
+    return proxy(
+        PreparedStatement.class,
+        (method, args) -> {
+          if (!method.getName().equals("executeQuery")) return null;
+          LockSupport.parkNanos(QUERY_LATENCY_NANOS);
+          return count
+              ? resultSet(new String[] {"count"}, new Object[][] {{(long) rows.length}})
+              : resultSet(labels, rows);
+        });
+  }
+
+  private static ResultSet resultSet(String[] labels, Object[][] rows) {
+    ResultSetMetaData metaData =
+        proxy(
+            ResultSetMetaData.class,
+            (method, args) -> {
+              switch (method.getName()) {
+                case "getColumnCount":
+                  return labels.length;
+                case "getColumnLabel":
+                case "getColumnName":
+                  return labels[(Integer) args[0] - 1];
+                case "getColumnType":
+                  return Types.OTHER;
+                default:
+                  return null;
+              }
+            });
+
+    int[] row = {-1};
+    return proxy(
+        ResultSet.class,
+        (method, args) -> {
+          switch (method.getName()) {
+            case "next":
+              return ++row[0] < rows.length;
+            case "getMetaData":
+              return metaData;
+            case "wasNull":
+              return false;
+            case "getObject":
+            case "getString":
+              int column =
+                  args[0] instanceof Integer
+                      ? (Integer) args[0] - 1
+                      : Arrays.asList(labels).indexOf(args[0]);
+              Object value = rows[row[0]][column];
+              return method.getName().equals("getString") ? String.valueOf(value) : value;
+            default:
+              return null;
+          }
+        });
+  }
+
+  private interface Handler {
+    Object invoke(Method method, Object[] args) throws Exception;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, Handler handler) {
+    return (T)
+        Proxy.newProxyInstance(
+            StubDataSource.class.getClassLoader(),
+            new Class<?>[] {type},
+            (proxy, method, args) -> {
+              Object result = handler.invoke(method, args);
+              return result == null ? defaultValue(method.getReturnType()) : result;
+            });
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) return false;
+    if (type == int.class) return 0;
+    if (type == long.class) return 0L;
+    if (type == short.class) return (short) 0;
+    if (type == byte.class) return (byte) 0;
+    if (type == double.class) return 0d;
+    if (type == float.class) return 0f;
+    return null;
+  }
+}
@@ -0,0 +1,117 @@
+package io.github.kayr.ezyquery.it
+
+import io.github.kayr.ezyquery.EzySql
+import io.github.kayr.ezyquery.cache.QueryCache
+import io.github.kayr.ezyquery.sql.RoutingConnectionProvider
+import io.github.kayr.ezyquery.sql.Zql
+import io.github.kayr.ezyquery.testqueries.Offices
+import io.github.kayr.ezyquery.util.VirtualThreads
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
+
+/**
+ * Runs many queries on virtual threads and records the jdk.VirtualThreadPinned JFR events. The
+ * queries run against stub data sources without any locks, directly and through a
+ * RoutingConnectionProvider, so every pinned event with ezy-query code on the stack is ours.
+ */
+@Requires({ VirtualThreads.isSupported() })
+class VirtualThreadsLoadTest extends Specification {
+
+    static final int TASKS = 10_000
+
+    def 'test queries on virtual threads do not pin carrier threads'() {
+        given:
+        def cache = QueryCache.builder().ttl(Duration.ofMillis(5)).build()
+        def ezySql = EzySql.withDataSource(offices().dataSource()).withCache(cache).withCoalescing()
+        def executor = VirtualThreads.newPerTaskExecutor()
+        def futures = []
+
+        when:
+        def pinned = recordPinned {
+            futures = (1..TASKS).collect { i ->
+                if (i % 100 == 0) cache.invalidate('offices')
+                def rows = ezySql.from(Offices.QUERY)
+                i % 10 == 0 ? rows.countAsync(executor) : rows.listAsync(executor)
+            }
+            CompletableFuture.allOf(futures as CompletableFuture[]).get(2, TimeUnit.MINUTES)
+        }
+
+        then:
+        futures.every { !it.completedExceptionally }
+        futures.findAll { it.get() instanceof List }.every { it.get().size() == 4 }
+        pinned.isEmpty()
+
+        cleanup:
+        executor?.shutdown()
+    }
+
+    def 'test routed queries on virtual threads do not pin carrier threads'() {
+        given:
+        def provider = RoutingConnectionProvider.builder(offices().dataSource())
+                .replica('replica1', offices().dataSource(), 1)
+                .replica('replica2', offices().dataSource(), 1)
+                .stickyAfterWrite(Duration.ofMillis(1))
+                .build()
+        def ezySql = EzySql.withProvider(provider)
+        def executor = VirtualThreads.newPerTaskExecutor()
+        def futures = []
+
+        when:
+        def pinned = recordPinned {
+            futures = (1..TASKS).collect { i ->
+                if (i % 100 == 0) {
+                    def session = new Zql(provider.session())
+                    return CompletableFuture.supplyAsync({
+                        session.executeUpdate('UPDATE offices SET country = country')
+                        EzySql.withZql(session).from(Offices.QUERY).list()
+                    }, executor)
+                }
+                def rows = ezySql.from(Offices.QUERY)
+                i % 10 == 0 ? rows.countAsync(executor) : rows.listAsync(executor)
+            }
+            CompletableFuture.allOf(futures as CompletableFuture[]).get(2, TimeUnit.MINUTES)
+        }
+
+        then:
+        futures.every { !it.completedExceptionally }
+        futures.findAll { it.get() instanceof List }.every { it.get().size() == 4 }
+        provider.stats().every { it.checkouts > 0 }
+        pinned.isEmpty()
+
+        cleanup:
+        executor?.shutdown()
+    }
+
+    private static StubDataSource offices() {
+        new StubDataSource(
+                ['code', 'country', 'addressLine'] as String[],
+                (1..4).collect { [it.toString(), 'UG', "line $it".toString()] as Object[] } as Object[][])
+    }
+
+    /** Runs the load and returns the stacks of the pinned events with ezy-query code on them. */
+    private static List<String> recordPinned(Closure load) {
+        def pinned = new CopyOnWriteArrayList<String>()
+
+        // loaded reflectively, the tests also run on java 8
+        def recording = Class.forName('jdk.jfr.consumer.RecordingStream').getConstructor().newInstance()
+        try {
+            recording.enable('jdk.VirtualThreadPinned').withThreshold(Duration.ZERO).withStackTrace()
+            recording.onEvent('jdk.VirtualThreadPinned', { event ->
+                def classes = event.stackTrace?.frames?.collect { it.method.type.name } ?: []
+                if (classes.any { it.startsWith('io.github.kayr.ezyquery') }) pinned << classes.join('\n')
+            } as Consumer)
+            recording.startAsync()
+            load()
+            recording.stop()
+        } finally {
+            recording.close()
+        }
+        return pinned
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.kayr.ezyquery.parser
+
+import io.github.kayr.ezyquery.api.Field
+import io.github.kayr.ezyquery.api.cnd.Cnd
+import io.github.kayr.ezyquery.api.cnd.Conds
+import io.github.kayr.ezyquery.api.cnd.ICond
+import io.github.kayr.ezyquery.ast.BinaryExpr
+import io.github.kayr.ezyquery.ast.EzyExpr
+import spock.lang.Specification
+
+class ExprNormalizerTest extends Specification {
+    def fields = [
+            new Field('t.name', 'name'),
+            new Field('t.age', 'age'),
+            new Field('t.office', 'office')
+    ]
+
+    def "normalized conditions"() {
+
+        expect:
+        def normalized = ExprNormalizer.normalize(cond.asExpr())
+        def transpiled = EzySqlTranspiler.transpile(fields, normalized)
+
+        transpiled.sql == sql
+        transpiled.params == params
+
+        where:
+        cond                                                                                      | sql                                            | params
+        Conds.andAll(Conds.andAll(eq('name', 'a'), eq('age', 1)), eq('office', 'x'))              | '(t.name = ? AND t.age = ? AND t.office = ?)'  | ['a', 1, 'x']
+        Conds.orAll(Conds.orAll(gt('age', 1), gt('age', 5)), gt('age', 9))                       | '(t.age > ? OR t.age > ? OR t.age > ?)'        | [1, 5, 9]
+        Conds.andAll(Conds.orAll(gt('age', 1), gt('age', 5)), eq('office', 'x'))                  | '((t.age > ? OR t.age > ?) AND t.office = ?)'  | [1, 5, 'x']
+        Cnd.expr('name = 1 and age = 2 and office = 3').and(eq('name', 'b'))                      | '(t.name = ? AND t.age = ? AND t.office = ? AND t.name = ?)' | [1, 2, 3, 'b']
+        Conds.andAll(Cnd.trueCnd(), eq('name', 'a'))                                              | 't.name = ?'                                   | ['a']
+        Conds.andAll(Cnd.sql('1 = 1'), eq('name', 'a'), Cnd.notIn('#age', []))                   | 't.name = ?'                                   | ['a']
+        Conds.andAll(Cnd.trueCnd(), Cnd.trueCnd())                                                | '1 = 1'                                        | []
+        Conds.orAll(Cnd.trueCnd(), eq('name', 'a'))                                               | '1 = 1'                                        | []
+        Conds.andAll(eq('name', 'a'), eq('age', 1), eq('name', 'a'))                              | '(t.name = ? AND t.age = ?)'                   | ['a', 1]
+        Conds.andAll(Cnd.sql('random() > 0.5'), Cnd.sql('random() > 0.5'))                       | '(random() > 0.5 AND random() > 0.5)'          | []
+        Conds.orAll(eq('name', 'a'), eq('name', 'b'), eq('name', 'c'))                            | 't.name IN (?, ?, ?)'                          | ['a', 'b', 'c']
+        Conds.orAll(eq('name', 'a'), gt('age', 1), Cnd.in('#name', ['b', 'a']))                   | '(t.name IN (?, ?) OR t.age > ?)'              | ['a', 'b', 1]
+        Conds.orAll(eq('name', 'a'), eq('age', 1))                                                | '(t.name = ? OR t.age = ?)'                    | ['a', 1]
+        Conds.andAll(eq('name', 'a'), eq('name', 'b'))                                            | '(t.name = ? AND t.name = ?)'                  | ['a', 'b']
+    }
+
+    def "wide and deep conditions do not overflow the stack"() {
+        given:
+        ICond wide = Conds.andAll((1..5000).collect { eq('age', it) } as Object[])
+        EzyExpr deep = eq('age', 0).asExpr()
+        (1..5000).each { deep = new BinaryExpr(deep, eq('age', it).asExpr(), BinaryExpr.Op.AND) }
+
+        when:
+        def wideSql = EzySqlTranspiler.transpile(fields, ExprNormalizer.normalize(wide.asExpr()))
+        def deepSql = EzySqlTranspiler.transpile(fields, ExprNormalizer.normalize(deep))
+
+        then:
+        wideSql.params.size() == 5000
+        deepSql.params.size() == 5001
+        !deepSql.sql.contains('((')
+    }
+
+    private static ICond eq(String field, Object value) {
+        return Cnd.eq("#$field".toString(), value)
+    }
+
+    private static ICond gt(String field, Object value) {
+        return Cnd.gt("#$field".toString(), value)
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.kayr.ezyquery.parser
+
+import io.github.kayr.ezyquery.api.Field
+import io.github.kayr.ezyquery.api.NamedCriteriaParam
+import io.github.kayr.ezyquery.api.NamedParamValue
+import io.github.kayr.ezyquery.api.cnd.Cnd
+import io.github.kayr.ezyquery.sql.SqlArray
+import spock.lang.Specification
+
+class FragmentCacheTest extends Specification {
+
+    def name = Field.of('t.name', 'name', String, Field.ExpressionType.COLUMN)
+    def age = Field.of('t.age', 'age', Integer, Field.ExpressionType.COLUMN)
+    def param = NamedCriteriaParam.of('_ezy_people', [name, age])
+
+    def 'test that conditions of the same shape reuse the sql'() {
+        when:
+        def first = param.transpile(name.eq('ann') & age.gt(20))
+        def second = param.transpile(name.eq('bob') & age.gt(30))
+
+        then:
+        first.sql == '(t.name = ? AND t.age > ?)'
+        first.params == ['ann', 20]
+        second.sql == first.sql
+        second.params == ['bob', 30]
+        param.@fragments.size() == 1
+    }
+
+    def 'test that different shapes are transpiled separately'() {
+        when:
+        def two = param.transpile(Cnd.in(name, 'a', 'b'))
+        def three = param.transpile(Cnd.in(name, 'a', 'b', 'c'))
+        def none = param.transpile(Cnd.in(name, []))
+        def between = param.transpile(Cnd.between(age, 1, 5))
+        def raw = param.transpile(Cnd.sql('t.age % ? = 0', 2))
+
+        then:
+        two.sql == '(t.name IN (?, ?))'
+        three.sql == '(t.name IN (?, ?, ?))'
+        three.params == ['a', 'b', 'c']
+        none.sql == '(1 = 0)'
+        none.params == []
+        between.sql == '(t.age BETWEEN ? AND ?)'
+        between.params == [1, 5]
+        raw.sql == '(t.age % ? = 0)'
+        raw.params == [2]
+        param.@fragments.size() == 5
+    }
+
+    def 'test that IN lists bound as arrays share one sql for any size'() {
+        when:
+        def two = param.transpile(Cnd.in(name, 'a', 'b'), true)
+        def three = param.transpile(Cnd.in(name, 'a', 'b', 'c'), true)
+        def notIn = param.transpile(Cnd.notIn(age, 1, 2, 3), true)
+        def mixed = param.transpile(Cnd.in(name, 'a', 1), true)
+        def plain = param.transpile(Cnd.in(name, 'a', 'b'))
+
+        then:
+        two.sql == '(t.name = ANY(?))'
+        two.params == [SqlArray.of('varchar', ['a', 'b'])]
+        three.sql == two.sql
+        three.params == [SqlArray.of('varchar', ['a', 'b', 'c'])]
+        notIn.sql == '(t.age <> ALL(?))'
+        notIn.params == [SqlArray.of('integer', [1, 2, 3])]
+        mixed.sql == '(t.name IN (?, ?))'
+        mixed.params == ['a', 1]
+        plain.sql == '(t.name IN (?, ?))'
+        plain.params == ['a', 'b']
+        param.@fragments.size() == 3
+    }
+
+    def 'test that nested criteria get the array params flag of the query'() {
+        given:
+        def parts = SqlParts.of(SqlParts.textPart('select * from t where '), SqlParts.paramPart('_ezy_people'))
+
+        when:
+        def query = parts.getQuery([new NamedParamValue(param, Cnd.in(name, 'a', 'b'))], true)
+
+        then:
+        query.sql == 'select * from t where (t.name = ANY(?))'
+        query.params == [SqlArray.of('varchar', ['a', 'b'])]
+    }
+
+    def 'test that the field index is prebuilt and read only'() {
+        expect:
+        param.fieldIndex.keySet() == ['name', 'age'] as Set
+        param.fieldIndex.name.is(name)
+
+        when:
+        param.fieldIndex.put('other', name)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def 'test that unknown fields still fail'() {
+        when:
+        param.transpile(Cnd.eq('#other', 1))
+
+        then:
+        thrown(EzyTranspileException)
+    }
+}
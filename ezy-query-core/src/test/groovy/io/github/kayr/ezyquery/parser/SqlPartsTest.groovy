@@ -1,5 +1,7 @@
 package io.github.kayr.ezyquery.parser
 
+import io.github.kayr.ezyquery.api.NamedParamValue
+import io.github.kayr.ezyquery.sql.SqlArray
 
 import spock.lang.Specification
 
@@ -57,6 +59,93 @@ class SqlPartsTest extends Specification {
     }
 
 
+    def 'should resolve given values over the values already set'() {
+        given:
+        def withValues = s.setParam("param1", "XX1").setParam("param2", "FF2")
+        def values = [
+                NamedParamValue.of("param2", "GG2"),
+                NamedParamValue.of("param2", "HH2"),
+                NamedParamValue.of("unused", "ZZ")
+        ]
+
+        when:
+        def query = withValues.getQuery(values)
+
+        then:
+        query.getSql() == "from table inner join ( select * from table2 where table2.id in (?)) as t2 on t2.id = table.id ?"
+        query.params == ["XX1", "HH2"]
+        withValues.getQuery().params == ["XX1", "FF2"]
+    }
+
+    def 'should fail if a param is not set or given'() {
+        when:
+        s.getQuery([NamedParamValue.of("param1", "XX1")])
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "Param [param2] is not set"
+    }
+
+    def 'should bind list values as one array when array params are on'() {
+        when:
+        def query = SqlParts.of(sql).getQuery([NamedParamValue.of("ids", ids)], true)
+
+        then:
+        query.sql == expectedSql
+        query.params == expectedParams
+
+        where:
+        sql                                     | ids      | expectedSql                            | expectedParams
+        "select * from t where id in ( :ids )"  | [1, 2]   | "select * from t where id = ANY(? )"   | [SqlArray.of("integer", [1, 2])]
+        "select * from t where id NOT IN(:ids)" | [1, 2]   | "select * from t where id <> ALL(?)"   | [SqlArray.of("integer", [1, 2])]
+        "select * from t where id = any(:ids)"  | ['a']    | "select * from t where id = any(?)"    | [SqlArray.of("varchar", ['a'])]
+        "select * from t where id = :ids"       | 1        | "select * from t where id = ?"         | [1]
+        "select * from t where id in (:ids, 3)" | [1, 2]   | "select * from t where id in (?,?, 3)" | [1, 2]
+        "select * from t where id in (:ids)"    | [1, 'a'] | "select * from t where id in (?,?)"    | [1, 'a']
+    }
+
+    def 'should find the array context when the parts are built'() {
+        given:
+        def parts = SqlParts.of(
+                SqlParts.textPart("select * from t where name <> 'in (' and id in ("),
+                SqlParts.paramPart("ids"),
+                SqlParts.textPart(")"))
+
+        when:
+        def query = parts.getQuery([NamedParamValue.of("ids", [1, 2])], true)
+
+        then:
+        query.sql == "select * from t where name <> 'in (' and id = ANY(?)"
+        query.params == [SqlArray.of("integer", [1, 2])]
+        parts.rawSql == "select * from t where name <> 'in (' and id in (:ids)"
+        parts.getQuery([NamedParamValue.of("ids", [1, 2])]).sql == "select * from t where name <> 'in (' and id in (?,?)"
+    }
+
+    def 'should not bind params in other places as arrays'() {
+        when:
+        def query = SqlParts.of(sql).getQuery([NamedParamValue.of("ids", [1, 2])], true)
+
+        then:
+        query.sql == expectedSql
+        query.params == [1, 2]
+
+        where:
+        sql                                                  | expectedSql
+        "select * from t where x = 'in (' and id = :ids"     | "select * from t where x = 'in (' and id = ?,?"
+        "select * from t where id in (1, :ids)"              | "select * from t where id in (1, ?,?)"
+        "select * from t where id = :ids -- in (:x)"         | "select * from t where id = ?,? -- in (:x)"
+    }
+
+    def 'should expand list values when array params are off'() {
+        when:
+        def query = SqlParts.of("select * from t where id in (:ids)").getQuery([NamedParamValue.of("ids", [1, 2])], false)
+
+        then:
+        query.sql == "select * from t where id in (?,?)"
+        query.params == [1, 2]
+    }
+
+
     def 'convert to param value should handle both collection and objects'() {
 
         expect:
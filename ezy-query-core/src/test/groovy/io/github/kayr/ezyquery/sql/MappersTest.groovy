@@ -66,4 +66,97 @@ class MappersTest extends Specification {
         result[2].get('country') == 'TZ'
     }
 
+    static class Base {
+        private String name
+    }
+
+    static class Row extends Base {
+        private long num
+        private final Integer total = null
+    }
+
+    def 'test #Mappers.toClass with #strategy'() {
+        when:
+        def rows = db.ezySql().zql.rows(Mappers.toClass(Row, strategy),
+                "SELECT 1 AS \"num\", 'x' AS \"name\", 3 AS \"total\", 4 AS \"unknown\" UNION ALL SELECT 2, 'y', 5, 6")
+
+        then:
+        rows*.num == [1L, 2L]
+        rows*.name == ['x', 'y']
+        rows*.total == [3, 5]
+
+        where:
+        strategy << [AccessorStrategy.methodHandles(), AccessorStrategy.reflection()]
+    }
+
+    def 'test accessors are built once per class'() {
+        expect:
+        AccessorStrategy.methodHandles().accessor(Row).is(AccessorStrategy.methodHandles().accessor(Row))
+        AccessorStrategy.methodHandles().accessor(Row).setter('unknown') == null
+    }
+
+    static class Typed {
+        private Long aLong
+        private Integer anInt
+        private BigInteger bigInteger
+        private String string
+        private java.time.LocalDate localDate
+        private java.time.LocalDateTime localDateTime
+        private Boolean bool
+    }
+
+    def 'test #Mappers.toClass reads columns with the getter of the field type'() {
+        when:
+        def rows = db.ezySql().zql.rows(Mappers.toClass(Typed), '''
+                SELECT CAST(1 AS INT) AS "aLong",
+                       CAST(2 AS BIGINT) AS "anInt",
+                       CAST(3 AS DECIMAL(10, 0)) AS "bigInteger",
+                       42 AS "string",
+                       DATE '2024-01-31' AS "localDate",
+                       TIMESTAMP '2024-01-31 10:15:00' AS "localDateTime",
+                       CAST(NULL AS BOOLEAN) AS "bool"''')
+
+        then:
+        with(rows[0]) {
+            aLong == 1L
+            aLong instanceof Long
+            anInt == 2
+            anInt instanceof Integer
+            bigInteger == 3G
+            bigInteger instanceof BigInteger
+            string == '42'
+            localDate == java.time.LocalDate.of(2024, 1, 31)
+            localDateTime == java.time.LocalDateTime.of(2024, 1, 31, 10, 15)
+            bool == null
+        }
+    }
+
+    static class Primitives {
+        private int anInt
+        private boolean bool
+    }
+
+    def 'test #Mappers.toClass fails on a NULL read into a primitive field'() {
+        when:
+        def rows = db.ezySql().zql.rows(Mappers.toClass(Primitives),
+                'SELECT CAST(7 AS INT) AS "anInt", TRUE AS "bool"')
+
+        then:
+        rows[0].anInt == 7
+        rows[0].bool
+
+        when:
+        db.ezySql().zql.rows(Mappers.toClass(Primitives),
+                'SELECT CAST(NULL AS INT) AS "anInt", TRUE AS "bool"')
+
+        then:
+        thrown(Exception)
+
+        when:
+        db.ezySql().zql.rows(Mappers.toClass(Primitives),
+                'SELECT CAST(7 AS INT) AS "anInt", CAST(NULL AS BOOLEAN) AS "bool"')
+
+        then:
+        thrown(Exception)
+    }
 }
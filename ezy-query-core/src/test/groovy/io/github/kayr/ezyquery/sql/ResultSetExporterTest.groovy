@@ -0,0 +1,77 @@
+package io.github.kayr.ezyquery.sql
+
+import io.github.kayr.ezyquery.api.Field
+import io.github.kayr.ezyquery.it.Db
+import io.github.kayr.ezyquery.testqueries.Offices
+import spock.lang.Shared
+import spock.lang.Specification
+
+class ResultSetExporterTest extends Specification {
+
+    @Shared
+    Db db
+
+    void setupSpec() {
+        db = new Db().insertData()
+    }
+
+    void cleanupSpec() {
+        db.close()
+    }
+
+    static final String SQL = '''SELECT 'a,"b"' AS "text", CAST(1.50 AS DECIMAL(5, 2)) AS "amount", CAST(NULL AS VARCHAR) AS "none",
+TRUE AS "flag", DATE '2024-01-31' AS "day", 'line
+break' AS "multiline", CAST(7 AS BIGINT) AS "id"'''
+
+    def export(ExportFormat format, List<Field<?>> fields = []) {
+        def out = new StringWriter()
+        def rows = db.ezySql().zql.query(SQL, []) { ResultSetExporter.export(it, fields, out, format) }
+        assert rows == 1
+        out.toString()
+    }
+
+    def 'test export to csv'() {
+        expect:
+        export(ExportFormat.CSV) == 'text,amount,none,flag,day,multiline,id\r\n' +
+                '"a,""b""",1.50,,true,2024-01-31,"line\nbreak",7\r\n'
+    }
+
+    def 'test export to json lines'() {
+        expect:
+        export(ExportFormat.JSON_LINES) ==
+                '{"text":"a,\\"b\\"","amount":1.50,"none":null,"flag":true,"day":"2024-01-31","multiline":"line\\nbreak","id":7}\n'
+    }
+
+    def 'test the field type decides how a column is read'() {
+        when:
+        def json = export(ExportFormat.JSON_LINES, [Field.of('id', 'id', String)])
+
+        then:
+        json.contains('"id":"7"')
+    }
+
+    def 'test export a query'() {
+        when:
+        def csv = new StringWriter()
+        def csvRows = db.ezySql().from(Offices.QUERY).orderBy(Offices.CODE.asc()).exportTo(csv, ExportFormat.CSV)
+
+        def json = new ByteArrayOutputStream()
+        def jsonRows = db.ezySql().from(Offices.QUERY)
+                .select(Offices.ADDRESS_LINE, Offices.CODE)
+                .where(Offices.COUNTRY.eq('KE'))
+                .orderBy(Offices.CODE.asc())
+                .exportTo(json, ExportFormat.JSON_LINES)
+
+        then:
+        csvRows == 4
+        csv.toString() == 'code,country,addressLine\r\n' +
+                '1,UG,Kampala\r\n' +
+                '2,KE,Nairobi\r\n' +
+                '3,TZ,Dar es Salaam\r\n' +
+                '4,KE,Nairobi\r\n'
+
+        jsonRows == 2
+        json.toString('UTF-8') == '{"addressLine":"Nairobi","code":"2"}\n' +
+                '{"addressLine":"Nairobi","code":"4"}\n'
+    }
+}
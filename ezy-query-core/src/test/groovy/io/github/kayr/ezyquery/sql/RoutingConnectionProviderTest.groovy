@@ -0,0 +1,185 @@
+package io.github.kayr.ezyquery.sql
+
+import org.h2.jdbcx.JdbcDataSource
+import spock.lang.Specification
+
+import javax.sql.DataSource
+import java.sql.SQLException
+import java.time.Duration
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class RoutingConnectionProviderTest extends Specification {
+
+    def primary = h2('primary')
+    def replica1 = h2('replica1')
+    def replica2 = h2('replica2')
+
+    def now = 0L
+
+    def 'test that reads go to the replicas and writes to the primary'() {
+        given:
+        def provider = RoutingConnectionProvider.builder(primary)
+                .replica('replica1', replica1, 1)
+                .replica('replica2', replica2, 1)
+                .build()
+        def zql = new Zql(provider)
+
+        when:
+        def reads = (1..50).collect { zql.one(String, 'SELECT name FROM whoami', []) } as Set
+        zql.executeUpdate('UPDATE whoami SET name = ?', 'primary-updated')
+
+        then:
+        reads == ['replica1', 'replica2'] as Set
+        new Zql(ConnectionProvider.of(primary)).one(String, 'SELECT name FROM whoami', []) == 'primary-updated'
+        provider.stats()*.name == ['primary', 'replica1', 'replica2']
+        provider.stats()[0].checkouts == 1
+        provider.stats()[1].checkouts + provider.stats()[2].checkouts == 50
+    }
+
+    def 'test that reads stick to the primary after a write'() {
+        given:
+        def provider = RoutingConnectionProvider.builder(primary)
+                .replica('replica1', replica1, 1)
+                .stickyAfterWrite(Duration.ofSeconds(2))
+                .clock({ now })
+                .build()
+        def zql = new Zql(provider)
+
+        when:
+        zql.executeUpdate('UPDATE whoami SET name = name')
+        def afterWrite = zql.one(String, 'SELECT name FROM whoami', [])
+        now = TimeUnit.SECONDS.toNanos(2)
+        def afterWindow = zql.one(String, 'SELECT name FROM whoami', [])
+
+        then:
+        afterWrite == 'primary'
+        afterWindow == 'replica1'
+    }
+
+    def 'test that the write marker is cleared after the window'() {
+        given:
+        def provider = RoutingConnectionProvider.builder(primary)
+                .replica('replica1', replica1, 1)
+                .stickyAfterWrite(Duration.ofSeconds(2))
+                .clock({ now })
+                .build()
+        def zql = new Zql(provider)
+
+        when:
+        zql.executeUpdate('UPDATE whoami SET name = name')
+
+        then:
+        provider.@lastWrite.get() == 0L
+
+        when:
+        now = TimeUnit.SECONDS.toNanos(2)
+        zql.one(String, 'SELECT name FROM whoami', [])
+
+        then:
+        provider.@lastWrite.get() == null
+    }
+
+    def 'test that reads stick to the primary after a write on another thread'() {
+        given:
+        def provider = RoutingConnectionProvider.builder(primary)
+                .replica('replica1', replica1, 1)
+                .stickyAfterWrite(Duration.ofSeconds(2))
+                .clock({ now })
+                .build()
+        def zql = new Zql(provider)
+        def executor = Executors.newSingleThreadExecutor()
+
+        when:
+        zql.executeUpdate('UPDATE whoami SET name = name')
+        def read = executor.submit({ zql.one(String, 'SELECT name FROM whoami', []) } as Callable).get()
+
+        then:
+        read == 'primary'
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def 'test that reads in a session stick to the primary on other threads'() {
+        given:
+        def provider = RoutingConnectionProvider.builder(primary)
+                .replica('replica1', replica1, 1)
+                .stickyAfterWrite(Duration.ofSeconds(2))
+                .clock({ now })
+                .build()
+        def session = new Zql(provider.session())
+        def executor = Executors.newSingleThreadExecutor()
+
+        when:
+        session.executeUpdate('UPDATE whoami SET name = name')
+        def inSession = executor.submit({ session.one(String, 'SELECT name FROM whoami', []) } as Callable).get()
+        def outside = executor.submit({ new Zql(provider).one(String, 'SELECT name FROM whoami', []) } as Callable).get()
+
+        then:
+        inSession == 'primary'
+        outside == 'replica1'
+        provider.stats()[0].checkouts == 2
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def 'test that failing replicas are ejected'() {
+        given:
+        def broken = Mock(DataSource) {
+            getConnection() >> { throw new SQLException('down') }
+        }
+        def provider = RoutingConnectionProvider.builder(primary)
+                .replica('broken', broken, 1)
+                .ejectFor(Duration.ofSeconds(30))
+                .clock({ now })
+                .build()
+        def zql = new Zql(provider)
+
+        when:
+        def first = zql.one(String, 'SELECT name FROM whoami', [])
+        def second = zql.one(String, 'SELECT name FROM whoami', [])
+
+        then:
+        first == 'primary'
+        second == 'primary'
+        with(provider.stats()[1]) {
+            failures == 1
+            !healthy
+        }
+
+        when:
+        now = TimeUnit.SECONDS.toNanos(30)
+
+        then:
+        provider.stats()[1].healthy
+    }
+
+    def 'test that read-only transactions use a replica'() {
+        given:
+        def provider = RoutingConnectionProvider.builder(primary)
+                .replica('replica1', replica1, 1)
+                .build()
+
+        when:
+        def name = new Zql(provider).inTransaction(TxOptions.readOnly()) { zql ->
+            zql.one(String, 'SELECT name FROM whoami', [])
+        }
+
+        then:
+        name == 'replica1'
+    }
+
+    private static DataSource h2(String name) {
+        def ds = new JdbcDataSource()
+        ds.setURL("jdbc:h2:mem:routing_$name;DB_CLOSE_DELAY=-1")
+        ds.setUser('sa')
+        def zql = new Zql(ConnectionProvider.of(ds))
+        zql.executeUpdate('DROP TABLE IF EXISTS whoami')
+        zql.executeUpdate('CREATE TABLE whoami (name VARCHAR(50))')
+        zql.executeUpdate('INSERT INTO whoami (name) VALUES (?)', name)
+        return ds
+    }
+}
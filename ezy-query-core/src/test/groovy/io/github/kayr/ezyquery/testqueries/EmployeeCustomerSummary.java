@@ -190,8 +190,11 @@ public class EmployeeCustomerSummary implements EzyQueryWithResult<EmployeeCusto
 
     private final List<Field<?>> fields = new ArrayList<>();
 
+    private final NamedCriteriaParam criteriaParam;
+
     public CustomerSummary() {
       init();
+      criteriaParam = NamedCriteriaParam.of("_ezy_customerSummary", fields);
     }
 
     private void init() {
@@ -201,7 +204,7 @@ public class EmployeeCustomerSummary implements EzyQueryWithResult<EmployeeCusto
 
     @Override
     public NamedCriteriaParam getName() {
-      return NamedCriteriaParam.of("_ezy_customerSummary", fields);
+      return criteriaParam;
     }
   }
 }
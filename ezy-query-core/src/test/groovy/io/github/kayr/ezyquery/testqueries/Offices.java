@@ -7,6 +7,7 @@ import io.github.kayr.ezyquery.api.SqlBuilder;
 import io.github.kayr.ezyquery.parser.QueryAndParams;
 import io.github.kayr.ezyquery.parser.SqlParts;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -67,6 +68,11 @@ public class Offices implements EzyQueryWithResult<Offices.Result> {
     return Result.class;
   }
 
+  @Override
+  public List<String> tables() {
+    return Arrays.asList("offices");
+  }
+
   public static class Result {
     private Object code;
 
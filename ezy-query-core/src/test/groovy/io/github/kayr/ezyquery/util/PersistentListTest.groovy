@@ -0,0 +1,78 @@
+package io.github.kayr.ezyquery.util
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class PersistentListTest extends Specification {
+
+    def 'appending returns a new list and leaves the old one as is'() {
+        given:
+        def empty = PersistentList.<String> empty()
+
+        when:
+        def one = empty.append('a')
+        def three = one.append('b', 'c')
+        def four = three.append(['d'])
+
+        then:
+        empty == []
+        one == ['a']
+        three == ['a', 'b', 'c']
+        four == ['a', 'b', 'c', 'd']
+    }
+
+    def 'appending to an older version does not change newer ones'() {
+        given:
+        def base = PersistentList.<String> empty().append('a', 'b')
+
+        when:
+        def left = base.append('left')
+        def right = base.append('right')
+
+        then:
+        base == ['a', 'b']
+        left == ['a', 'b', 'left']
+        right == ['a', 'b', 'right']
+    }
+
+    def 'lists can not be modified'() {
+        given:
+        def list = PersistentList.from(['a'])
+
+        when:
+        list.add('b')
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def 'from returns persistent lists as they are'() {
+        given:
+        def list = PersistentList.from(['a', 'b'])
+
+        expect:
+        PersistentList.from(list).is(list)
+        PersistentList.from(null) == []
+        PersistentList.from([]) == []
+    }
+
+    def 'concurrent appends to the same version each get their own list'() {
+        given:
+        def base = PersistentList.<Integer> empty().append(0)
+        def pool = Executors.newFixedThreadPool(8)
+
+        when:
+        def results = (1..200).collect { n ->
+            pool.submit({ base.append(n, n) } as Callable)
+        }.collect { it.get() }
+
+        then:
+        results.eachWithIndex { list, i -> assert list == [0, i + 1, i + 1] }
+        base == [0]
+
+        cleanup:
+        pool.shutdown()
+    }
+}
@@ -58,4 +58,48 @@ class ReflectionUtilTest extends Specification {
 
 
     }
-}
\ No newline at end of file
+
+    static class Parent {
+        private def parentField
+        private def shadowed
+    }
+
+    static class Child extends Parent {
+        private def childField
+        private def shadowed
+    }
+
+    def "GetField finds inherited fields"() {
+        expect:
+        ReflectionUtil.getField(Child, "parentField")?.declaringClass == Parent
+        ReflectionUtil.getField(Child, "childField")?.declaringClass == Child
+        ReflectionUtil.getField(Child, "shadowed")?.declaringClass == Child
+        ReflectionUtil.getField(Child, "missing") == null
+    }
+
+    def "Meta is built once and lists fields of subclasses first"() {
+        when:
+        def meta = ReflectionUtil.meta(Child)
+
+        then:
+        meta.is(ReflectionUtil.meta(Child))
+        meta.fields.findAll { !it.synthetic }*.name == ["childField", "shadowed", "parentField", "shadowed"]
+        meta.newInstance() instanceof Child
+    }
+
+    def "Meta is safe to build concurrently"() {
+        given:
+        def pool = java.util.concurrent.Executors.newFixedThreadPool(8)
+        def classes = [UnderTest, Parent, Child]
+
+        when:
+        def metas = (1..64).collect { i -> pool.submit({ ReflectionUtil.meta(classes[i % 3]) } as java.util.concurrent.Callable) }*.get()
+
+        then:
+        metas.groupBy { it.type }.every { type, list -> list.every { it.is(list[0]) } }
+        ReflectionUtil.meta(UnderTest).fields.findAll { !it.synthetic }.size() == 5
+
+        cleanup:
+        pool.shutdown()
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.kayr.ezyquery.util
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class SingleFlightTest extends Specification {
+
+    def 'test that waiting callers get the same exception'() {
+        given:
+        def flight = new SingleFlight<String, String>()
+        def calls = new AtomicInteger()
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def pool = Executors.newFixedThreadPool(3)
+
+        when:
+        def futures = (1..3).collect {
+            pool.submit({
+                flight.execute('key') {
+                    calls.incrementAndGet()
+                    started.countDown()
+                    release.await()
+                    throw new IllegalStateException('boom')
+                }
+            } as Callable)
+        }
+        started.await()
+        Thread.sleep(200)
+        release.countDown()
+        def errors = futures.collect {
+            try {
+                it.get()
+                null
+            } catch (ExecutionException e) {
+                e.cause
+            }
+        }
+
+        then:
+        calls.get() == 1
+        errors.every { it instanceof IllegalStateException && it.message == 'boom' }
+        flight.inFlight() == 0
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def 'test that completed calls are not kept'() {
+        given:
+        def flight = new SingleFlight<String, Integer>()
+        def calls = new AtomicInteger()
+
+        when:
+        flight.execute('key') { calls.incrementAndGet() }
+        flight.execute('key') { calls.incrementAndGet() }
+
+        then:
+        calls.get() == 2
+    }
+}
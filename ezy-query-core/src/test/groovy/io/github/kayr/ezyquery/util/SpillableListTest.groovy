@@ -0,0 +1,143 @@
+package io.github.kayr.ezyquery.util
+
+import io.github.kayr.ezyquery.sql.RowCodec
+import io.github.kayr.ezyquery.testqueries.Offices
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.time.LocalDate
+
+class SpillableListTest extends Specification {
+
+    def 'test that rows within the limit stay on the heap'() {
+        when:
+        def list = SpillableList.builder(5, RowCodec.forMap())
+                .add([id: 1])
+                .add([id: 2])
+                .build()
+
+        then:
+        !list.isSpilled()
+        list.size() == 2
+        list == [[id: 1], [id: 2]]
+    }
+
+    def 'test that spilled rows are read from any block'() {
+        given:
+        def builder = SpillableList.builder(10, RowCodec.forMap())
+        (0..<1000).each { builder.add([id: it, name: "row $it".toString()]) }
+
+        when:
+        def list = builder.build()
+
+        then:
+        list.isSpilled()
+        list.size() == 1000
+        [0, 9, 10, 41, 42, 500, 999].every { list.get(it) == [id: it, name: "row $it".toString()] }
+        list.collect { it.id } == (0..<1000).toList()
+
+        cleanup:
+        list?.close()
+    }
+
+    def 'test that value types survive a spill'() {
+        given:
+        def row = [
+                decimal: new BigDecimal('12.340'),
+                date   : LocalDate.of(2024, 2, 29),
+                nothing: null,
+                text   : 'héllo',
+                bytes  : [1, 2, 3] as byte[],
+                long   : 5L,
+                flag   : true,
+                list   : ['a', 'b'] as ArrayList
+        ]
+
+        when:
+        def list = SpillableList.builder(0, RowCodec.forMap()).add(row).build()
+        def read = list.get(0)
+
+        then:
+        read.decimal == new BigDecimal('12.340')
+        read.decimal.scale() == 3
+        read.date == LocalDate.of(2024, 2, 29)
+        read.containsKey('nothing') && read.nothing == null
+        read.text == 'héllo'
+        read.bytes == [1, 2, 3] as byte[]
+        read.long == 5L
+        read.flag == true
+        read.list == ['a', 'b']
+        read.keySet().toList() == row.keySet().toList()
+
+        cleanup:
+        list?.close()
+    }
+
+    def 'test that class rows are written field by field'() {
+        given:
+        def office = new Offices.Result()
+        office.code = '1'
+        office.country = null
+        office.addressLine = 42
+
+        when:
+        def list = SpillableList.builder(0, RowCodec.forClass(Offices.Result)).add(office).build()
+        def read = list.get(0)
+
+        then:
+        read.code == '1'
+        read.country == null
+        read.addressLine == 42
+        !read.is(office)
+
+        cleanup:
+        list?.close()
+    }
+
+    def 'test that close deletes the spill file'() {
+        given:
+        def list = SpillableList.builder(1, RowCodec.forMap()).add([id: 1]).add([id: 2]).build()
+        def file = list.@file
+
+        expect:
+        Files.exists(file)
+
+        when:
+        list.close()
+
+        then:
+        !Files.exists(file)
+        list.get(0) == [id: 1]
+
+        when:
+        list.get(1)
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def 'test that reading outside the list fails'() {
+        given:
+        def list = SpillableList.builder(1, RowCodec.forMap()).add([id: 1]).add([id: 2]).build()
+
+        when:
+        list.get(2)
+
+        then:
+        thrown(IndexOutOfBoundsException)
+
+        cleanup:
+        list?.close()
+    }
+
+    def 'test that values which can not be written fail'() {
+        given:
+        def builder = SpillableList.builder(0, RowCodec.forMap())
+
+        when:
+        builder.add([value: new Object()])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
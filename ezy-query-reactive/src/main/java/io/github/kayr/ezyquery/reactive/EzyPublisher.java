@@ -0,0 +1,214 @@
+package io.github.kayr.ezyquery.reactive;
+
+import io.github.kayr.ezyquery.EzySql;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Publishes the rows of a query as they are requested. Each subscriber gets its own query which is
+ * run on the executor once the subscriber requests the first row; the rows are then read from the
+ * open cursor only as fast as the subscriber asks for them.
+ *
+ * <p>The driver fetches rows in batches the size of the first request, at most {@value
+ * #MAX_FETCH_SIZE}, so it does not buffer the whole result ahead of demand. On PostgreSQL the rows
+ * are read in a read-only transaction since its driver only uses a cursor with auto-commit off.
+ *
+ * <p>JDBC is blocking, so the executor thread and the connection are held until the rows are all
+ * published, the subscription is cancelled or the query fails. Do not use an event loop as the
+ * executor.
+ *
+ * <pre>{@code
+ * Publisher<Orders.Result> orders =
+ *     EzyPublisher.of(ezySql.from(Orders.QUERY).where(Orders.STATUS.eq("PAID")).noLimit());
+ *
+ * Flux.from(orders).subscribe(...); // or FlowAdapters.toFlowPublisher(orders) on java 9+
+ * }</pre>
+ */
+public class EzyPublisher<T> implements Publisher<T> {
+
+  static final int MAX_FETCH_SIZE = 1_000;
+
+  private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+  /** Shared by publishers that are not given an executor, threads are created as needed. */
+  private static final ExecutorService DEFAULT_EXECUTOR =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "ezy-publisher-" + THREAD_IDS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final EzySql.CriteriaBuilder<T> rows;
+  private final Executor executor;
+
+  private EzyPublisher(EzySql.CriteriaBuilder<T> rows, Executor executor) {
+    this.rows = rows;
+    this.executor = executor;
+  }
+
+  public static <T> EzyPublisher<T> of(@NonNull EzySql.CriteriaBuilder<T> rows) {
+    return new EzyPublisher<>(rows, DEFAULT_EXECUTOR);
+  }
+
+  /** The executor should be dedicated to blocking work, each subscription holds one thread. */
+  public static <T> EzyPublisher<T> of(
+      @NonNull EzySql.CriteriaBuilder<T> rows, @NonNull Executor executor) {
+    return new EzyPublisher<>(rows, executor);
+  }
+
+  /** Fetches what was asked for, bounded so that an unbounded request does not read everything. */
+  static int fetchSize(long demand) {
+    return (int) Math.max(1, Math.min(demand, MAX_FETCH_SIZE));
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super T> subscriber) {
+    if (subscriber == null) throw new NullPointerException("subscriber is null");
+    RowSubscription<T> subscription = new RowSubscription<>(rows, executor, subscriber);
+    subscriber.onSubscribe(subscription);
+  }
+
+  /**
+   * All signals to the subscriber are sent from the thread that reads the rows, so they are never
+   * concurrent. Waiting for demand uses a lock rather than {@code wait()} so that a virtual thread
+   * executor is not pinned.
+   */
+  private static class RowSubscription<T> implements Subscription {
+    private final EzySql.CriteriaBuilder<T> rows;
+    private final Executor executor;
+    private final Subscriber<? super T> subscriber;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition demanded = lock.newCondition();
+
+    private long demand = 0;
+    private boolean started = false;
+    private boolean cancelled = false;
+    private Throwable invalidRequest = null;
+
+    private RowSubscription(
+        EzySql.CriteriaBuilder<T> rows, Executor executor, Subscriber<? super T> subscriber) {
+      this.rows = rows;
+      this.executor = executor;
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      lock.lock();
+      try {
+        if (cancelled) return;
+        if (n <= 0) {
+          invalidRequest =
+              new IllegalArgumentException("requested rows must be greater than 0 but was " + n);
+        } else {
+          // the demand is capped at Long.MAX_VALUE which means unbounded
+          demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+        demanded.signalAll();
+        if (started) return;
+        started = true;
+      } finally {
+        lock.unlock();
+      }
+      start();
+    }
+
+    @Override
+    public void cancel() {
+      lock.lock();
+      try {
+        cancelled = true;
+        demanded.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void start() {
+      try {
+        executor.execute(this::publish);
+      } catch (Throwable e) {
+        cancel();
+        subscriber.onError(e);
+      }
+    }
+
+    private void publish() {
+      try {
+        boolean completed = rows.withRows(fetchSize(currentDemand()), this::publishRows);
+        if (completed) subscriber.onComplete();
+      } catch (Throwable e) {
+        if (!isCancelled()) {
+          cancel();
+          subscriber.onError(e);
+        }
+      }
+    }
+
+    /**
+     * Returns false when the subscription ended before all rows were read. The next row is read
+     * before it is requested so that the end of the rows is signalled without waiting for demand.
+     */
+    private boolean publishRows(Iterator<T> iterator) throws InterruptedException {
+      while (iterator.hasNext()) {
+        if (!awaitDemand()) return false;
+        T row = iterator.next();
+        lock.lock();
+        try {
+          if (demand != Long.MAX_VALUE) demand--;
+        } finally {
+          lock.unlock();
+        }
+        subscriber.onNext(row);
+      }
+      return !isCancelled();
+    }
+
+    /** Blocks until a row is requested, returns false if the subscription has ended. */
+    private boolean awaitDemand() throws InterruptedException {
+      Throwable error;
+      lock.lock();
+      try {
+        while (demand == 0 && !cancelled && invalidRequest == null) {
+          demanded.await();
+        }
+        if (cancelled) return false;
+        if (invalidRequest == null) return true;
+        error = invalidRequest;
+        cancelled = true;
+      } finally {
+        lock.unlock();
+      }
+      subscriber.onError(error);
+      return false;
+    }
+
+    private long currentDemand() {
+      lock.lock();
+      try {
+        return demand;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private boolean isCancelled() {
+      lock.lock();
+      try {
+        return cancelled;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package io.github.kayr.ezyquery.reactive
+
+import io.github.kayr.ezyquery.EzyQueryWithResult
+import io.github.kayr.ezyquery.EzySql
+import io.github.kayr.ezyquery.api.EzyCriteria
+import io.github.kayr.ezyquery.api.Field
+import io.github.kayr.ezyquery.api.SqlBuilder
+import io.github.kayr.ezyquery.parser.QueryAndParams
+import io.github.kayr.ezyquery.parser.SqlParts
+import io.github.kayr.ezyquery.sql.Mappers
+import org.h2.jdbcx.JdbcDataSource
+import org.reactivestreams.Subscriber
+import org.reactivestreams.Subscription
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class EzyPublisherTest extends Specification {
+
+    static Field<Integer> ID = Field.of('id', 'id', Integer)
+
+    static EzyQueryWithResult<Map> NUMBERS = new EzyQueryWithResult<Map>() {
+        QueryAndParams query(EzyCriteria criteria) { SqlBuilder.buildSql(this, criteria) }
+
+        List<Field<?>> fields() { [ID] }
+
+        SqlParts schema() { SqlParts.of('numbers') }
+
+        Class<Map> resultClass() { Map }
+    }
+
+    @Shared
+    EzySql ezySql
+
+    void setupSpec() {
+        def ds = new JdbcDataSource()
+        ds.setURL('jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1')
+        ezySql = EzySql.withDataSource(ds)
+        ezySql.zql.executeUpdate('CREATE TABLE numbers (id INT)')
+        (1..10).each { ezySql.zql.executeUpdate('INSERT INTO numbers (id) VALUES (?)', it) }
+    }
+
+    void cleanupSpec() {
+        ezySql.zql.executeUpdate('DROP TABLE numbers')
+    }
+
+    def rows() {
+        ezySql.from(NUMBERS).mapTo(Mappers.toMap()).orderBy(ID.asc())
+    }
+
+    def 'test rows are only read as they are requested'() {
+        given:
+        def subscriber = new TestSubscriber(2)
+
+        when:
+        EzyPublisher.of(rows()).subscribe(subscriber)
+        subscriber.awaitRows(2)
+
+        then:
+        subscriber.ids() == [1, 2]
+        !subscriber.done.await(100, TimeUnit.MILLISECONDS)
+
+        when:
+        subscriber.subscription.request(100)
+
+        then:
+        subscriber.done.await(5, TimeUnit.SECONDS)
+        subscriber.ids() == (1..10).toList()
+        subscriber.completed
+        subscriber.error == null
+    }
+
+    def 'test the fetch size follows the demand'() {
+        expect:
+        EzyPublisher.fetchSize(demand) == fetchSize
+
+        where:
+        demand         | fetchSize
+        1              | 1
+        2              | 2
+        5_000          | 1_000
+        Long.MAX_VALUE | 1_000
+    }
+
+    def 'test cancel stops the rows'() {
+        given:
+        def subscriber = new TestSubscriber(3)
+
+        when:
+        EzyPublisher.of(rows()).subscribe(subscriber)
+        subscriber.awaitRows(3)
+        subscriber.subscription.cancel()
+        subscriber.subscription.request(5)
+
+        then:
+        !subscriber.done.await(100, TimeUnit.MILLISECONDS)
+        subscriber.ids() == [1, 2, 3]
+    }
+
+    def 'test an invalid request is signalled as an error'() {
+        given:
+        def subscriber = new TestSubscriber(0)
+
+        when:
+        EzyPublisher.of(rows()).subscribe(subscriber)
+        subscriber.subscription.request(0)
+
+        then:
+        subscriber.done.await(5, TimeUnit.SECONDS)
+        subscriber.error instanceof IllegalArgumentException
+        subscriber.ids() == []
+    }
+
+    def 'test query failures are signalled as an error'() {
+        given:
+        def subscriber = new TestSubscriber(Long.MAX_VALUE)
+
+        when:
+        EzyPublisher.of(rows().orderBy('unknown')).subscribe(subscriber)
+
+        then:
+        subscriber.done.await(5, TimeUnit.SECONDS)
+        subscriber.error != null
+        !subscriber.completed
+    }
+
+    def 'test an empty result completes'() {
+        given:
+        def subscriber = new TestSubscriber(1)
+
+        when:
+        EzyPublisher.of(rows().where(ID.gt(100))).subscribe(subscriber)
+
+        then:
+        subscriber.done.await(5, TimeUnit.SECONDS)
+        subscriber.completed
+        subscriber.ids() == []
+    }
+
+    static class TestSubscriber implements Subscriber<Map> {
+        final long initialRequest
+        final List<Map> rows = new CopyOnWriteArrayList<>()
+        final CountDownLatch done = new CountDownLatch(1)
+        Subscription subscription
+        volatile boolean completed = false
+        volatile Throwable error
+
+        TestSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest
+        }
+
+        void onSubscribe(Subscription subscription) {
+            this.subscription = subscription
+            if (initialRequest > 0) subscription.request(initialRequest)
+        }
+
+        void onNext(Map row) {
+            rows.add(row)
+        }
+
+        void onError(Throwable error) {
+            this.error = error
+            done.countDown()
+        }
+
+        void onComplete() {
+            completed = true
+            done.countDown()
+        }
+
+        void awaitRows(int count) {
+            def deadline = System.currentTimeMillis() + 5000
+            while (rows.size() < count && System.currentTimeMillis() < deadline) Thread.sleep(10)
+        }
+
+        List<Integer> ids() {
+            rows.collect { it.id as Integer }
+        }
+    }
+}